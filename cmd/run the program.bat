@@ -1,5 +1,5 @@
 mvn clean package -DskipTests=true
 
-java -jar ./target/codechunker-0.0.1-SNAPSHOT.jar --project=D:\Learning\Git\sftp\src\main\java --per-class --output=D:\Learning\Git\sftp\output4
+java -jar ./target/codechunker-0.0.1-SNAPSHOT-exec.jar --project=D:\Learning\Git\sftp\src\main\java --per-class --output=D:\Learning\Git\sftp\output4
 
-java -jar ./target/codechunker-0.0.1-SNAPSHOT.jar --project=D:\Learning\Git\sftp\src\main\java --per-class --method --output=D:\Learning\Git\sftp\output9
\ No newline at end of file
+java -jar ./target/codechunker-0.0.1-SNAPSHOT-exec.jar --project=D:\Learning\Git\sftp\src\main\java --per-class --method --output=D:\Learning\Git\sftp\output9
\ No newline at end of file
@@ -13,11 +13,24 @@ public class ApplicationProperties {
     private ChunkConfig chunk = new ChunkConfig();
     private FilterConfig filter = new FilterConfig();
     private OutputConfig output = new OutputConfig();
+    private WatchConfig watch = new WatchConfig();
+    private BatchConfig batch = new BatchConfig();
+    private FaultToleranceConfig faultTolerance = new FaultToleranceConfig();
+    private LexicalConfig lexical = new LexicalConfig();
+    private ParserConfig parser = new ParserConfig();
+    private DiscoveryConfig discovery = new DiscoveryConfig();
+    private DatabaseConfig database = new DatabaseConfig();
+    private LoggingConfig logging = new LoggingConfig();
 
     public static class ChunkConfig {
         private String defaultLevel = "CLASS";
         private int maxSnippetLength = 200;
         private boolean includeCodeSnippets = true;
+        private boolean stripComments = false; // line and block comments, Javadoc excluded
+        private boolean stripJavadoc = false;
+        private boolean collapseWhitespace = false; // trim lines, drop blank lines, single spaces
+        private boolean dropAccessorBodies = false; // trivial getters and setters print as signatures
+        private boolean stubMemberBodies = false; // class and file chunks: members print as signatures
 
         public String getDefaultLevel() { return defaultLevel; }
         public void setDefaultLevel(String defaultLevel) { this.defaultLevel = defaultLevel; }
@@ -27,6 +40,21 @@ public class ApplicationProperties {
 
         public boolean isIncludeCodeSnippets() { return includeCodeSnippets; }
         public void setIncludeCodeSnippets(boolean includeCodeSnippets) { this.includeCodeSnippets = includeCodeSnippets; }
+
+        public boolean isStripComments() { return stripComments; }
+        public void setStripComments(boolean stripComments) { this.stripComments = stripComments; }
+
+        public boolean isStripJavadoc() { return stripJavadoc; }
+        public void setStripJavadoc(boolean stripJavadoc) { this.stripJavadoc = stripJavadoc; }
+
+        public boolean isCollapseWhitespace() { return collapseWhitespace; }
+        public void setCollapseWhitespace(boolean collapseWhitespace) { this.collapseWhitespace = collapseWhitespace; }
+
+        public boolean isDropAccessorBodies() { return dropAccessorBodies; }
+        public void setDropAccessorBodies(boolean dropAccessorBodies) { this.dropAccessorBodies = dropAccessorBodies; }
+
+        public boolean isStubMemberBodies() { return stubMemberBodies; }
+        public void setStubMemberBodies(boolean stubMemberBodies) { this.stubMemberBodies = stubMemberBodies; }
     }
 
     public static class FilterConfig {
@@ -46,6 +74,10 @@ public class ApplicationProperties {
         private String defaultFormat = "json";
         private boolean prettyPrint = true;
         private String dateFormat = "yyyy-MM-dd'T'HH:mm:ss";
+        private String layout = "flat"; // flat, package or hash subdirectories
+        private int hashLevels = 1; // hash layout: directory levels of 256 entries each
+        private boolean skipUnchanged = true; // leave outputs holding identical bytes untouched
+        private boolean changeSet = false; // write change-set.json against the previous run's chunk-manifest.json
 
         public String getDefaultFormat() { return defaultFormat; }
         public void setDefaultFormat(String defaultFormat) { this.defaultFormat = defaultFormat; }
@@ -55,6 +87,146 @@ public class ApplicationProperties {
 
         public String getDateFormat() { return dateFormat; }
         public void setDateFormat(String dateFormat) { this.dateFormat = dateFormat; }
+
+        public String getLayout() { return layout; }
+        public void setLayout(String layout) { this.layout = layout; }
+
+        public int getHashLevels() { return hashLevels; }
+        public void setHashLevels(int hashLevels) { this.hashLevels = hashLevels; }
+
+        public boolean isSkipUnchanged() { return skipUnchanged; }
+        public void setSkipUnchanged(boolean skipUnchanged) { this.skipUnchanged = skipUnchanged; }
+
+        public boolean isChangeSet() { return changeSet; }
+        public void setChangeSet(boolean changeSet) { this.changeSet = changeSet; }
+    }
+
+    public static class WatchConfig {
+        private long debounceMillis = 300;
+        private long maxBatchDelayMillis = 1000;
+
+        public long getDebounceMillis() { return debounceMillis; }
+        public void setDebounceMillis(long debounceMillis) { this.debounceMillis = debounceMillis; }
+
+        public long getMaxBatchDelayMillis() { return maxBatchDelayMillis; }
+        public void setMaxBatchDelayMillis(long maxBatchDelayMillis) { this.maxBatchDelayMillis = maxBatchDelayMillis; }
+    }
+
+    public static class BatchConfig {
+        private int threads = 0; // 0 = number of available processors
+        private int maxConcurrencyPerProject = 0; // 0 = no cap below the pool size
+        private boolean longestFirst = true; // each project hands out its largest files first, false = path order
+        private int splitLines = 5000; // files this long extract their types as parallel subtasks, 0 = never split
+
+        public int getThreads() { return threads; }
+        public void setThreads(int threads) { this.threads = threads; }
+
+        public int getMaxConcurrencyPerProject() { return maxConcurrencyPerProject; }
+        public void setMaxConcurrencyPerProject(int maxConcurrencyPerProject) { this.maxConcurrencyPerProject = maxConcurrencyPerProject; }
+
+        public boolean isLongestFirst() { return longestFirst; }
+        public void setLongestFirst(boolean longestFirst) { this.longestFirst = longestFirst; }
+
+        public int getSplitLines() { return splitLines; }
+        public void setSplitLines(int splitLines) { this.splitLines = splitLines; }
+    }
+
+    public static class FaultToleranceConfig {
+        private long parseTimeoutMillis = 60000; // 0 = no limit
+        private int quarantineThreshold = 2;
+        private int checkpointIntervalSeconds = 30;
+
+        public long getParseTimeoutMillis() { return parseTimeoutMillis; }
+        public void setParseTimeoutMillis(long parseTimeoutMillis) { this.parseTimeoutMillis = parseTimeoutMillis; }
+
+        public int getQuarantineThreshold() { return quarantineThreshold; }
+        public void setQuarantineThreshold(int quarantineThreshold) { this.quarantineThreshold = quarantineThreshold; }
+
+        public int getCheckpointIntervalSeconds() { return checkpointIntervalSeconds; }
+        public void setCheckpointIntervalSeconds(int checkpointIntervalSeconds) { this.checkpointIntervalSeconds = checkpointIntervalSeconds; }
+    }
+
+    public static class LexicalConfig {
+        private boolean fallbackEnabled = true;
+        private long maxParseBytes = 4194304; // larger files skip the parser, 0 = always parse
+
+        public boolean isFallbackEnabled() { return fallbackEnabled; }
+        public void setFallbackEnabled(boolean fallbackEnabled) { this.fallbackEnabled = fallbackEnabled; }
+
+        public long getMaxParseBytes() { return maxParseBytes; }
+        public void setMaxParseBytes(long maxParseBytes) { this.maxParseBytes = maxParseBytes; }
+    }
+
+    public static class ParserConfig {
+        private String profile = "auto"; // auto, full or lean
+        private String languageLevel = "JAVA_17"; // RAW = no validation
+        private Boolean storeTokens; // null = as the profile decides
+        private Boolean attributeComments; // null = as the profile decides
+        private boolean lexicalPreservation = false;
+
+        public String getProfile() { return profile; }
+        public void setProfile(String profile) { this.profile = profile; }
+
+        public String getLanguageLevel() { return languageLevel; }
+        public void setLanguageLevel(String languageLevel) { this.languageLevel = languageLevel; }
+
+        public Boolean getStoreTokens() { return storeTokens; }
+        public void setStoreTokens(Boolean storeTokens) { this.storeTokens = storeTokens; }
+
+        public Boolean getAttributeComments() { return attributeComments; }
+        public void setAttributeComments(Boolean attributeComments) { this.attributeComments = attributeComments; }
+
+        public boolean isLexicalPreservation() { return lexicalPreservation; }
+        public void setLexicalPreservation(boolean lexicalPreservation) { this.lexicalPreservation = lexicalPreservation; }
+    }
+
+    public static class DiscoveryConfig {
+        private boolean buildAware = true; // scan only module source roots of pom.xml / settings.gradle builds
+        private boolean includeTestSources = false;
+        private boolean scanArchives = true; // read .java entries of *.jar / *.zip files found in the tree in place
+
+        public boolean isBuildAware() { return buildAware; }
+        public void setBuildAware(boolean buildAware) { this.buildAware = buildAware; }
+
+        public boolean isIncludeTestSources() { return includeTestSources; }
+        public void setIncludeTestSources(boolean includeTestSources) { this.includeTestSources = includeTestSources; }
+
+        public boolean isScanArchives() { return scanArchives; }
+        public void setScanArchives(boolean scanArchives) { this.scanArchives = scanArchives; }
+    }
+
+    public static class DatabaseConfig {
+        private String url = ""; // JDBC URL of the --db sink, e.g. jdbc:h2:file:./chunks
+        private String user = "sa";
+        private String password = "";
+        private int commitSize = 500; // upserts per batch and transaction
+
+        public String getUrl() { return url; }
+        public void setUrl(String url) { this.url = url; }
+
+        public String getUser() { return user; }
+        public void setUser(String user) { this.user = user; }
+
+        public String getPassword() { return password; }
+        public void setPassword(String password) { this.password = password; }
+
+        public int getCommitSize() { return commitSize; }
+        public void setCommitSize(int commitSize) { this.commitSize = commitSize; }
+    }
+
+    public static class LoggingConfig {
+        private String eventLog = ""; // JSONL file of per-file events (--event-log), empty for none
+        private int eventQueueSize = 8192; // events waiting for the writer thread; more are dropped
+        private boolean quiet = false; // warnings and errors only on the console (--quiet)
+
+        public String getEventLog() { return eventLog; }
+        public void setEventLog(String eventLog) { this.eventLog = eventLog; }
+
+        public int getEventQueueSize() { return eventQueueSize; }
+        public void setEventQueueSize(int eventQueueSize) { this.eventQueueSize = eventQueueSize; }
+
+        public boolean isQuiet() { return quiet; }
+        public void setQuiet(boolean quiet) { this.quiet = quiet; }
     }
 
     public ChunkConfig getChunk() { return chunk; }
@@ -65,4 +237,28 @@ public class ApplicationProperties {
 
     public OutputConfig getOutput() { return output; }
     public void setOutput(OutputConfig output) { this.output = output; }
-}
\ No newline at end of file
+
+    public WatchConfig getWatch() { return watch; }
+    public void setWatch(WatchConfig watch) { this.watch = watch; }
+
+    public BatchConfig getBatch() { return batch; }
+    public void setBatch(BatchConfig batch) { this.batch = batch; }
+
+    public FaultToleranceConfig getFaultTolerance() { return faultTolerance; }
+    public void setFaultTolerance(FaultToleranceConfig faultTolerance) { this.faultTolerance = faultTolerance; }
+
+    public LexicalConfig getLexical() { return lexical; }
+    public void setLexical(LexicalConfig lexical) { this.lexical = lexical; }
+
+    public ParserConfig getParser() { return parser; }
+    public void setParser(ParserConfig parser) { this.parser = parser; }
+
+    public DiscoveryConfig getDiscovery() { return discovery; }
+    public void setDiscovery(DiscoveryConfig discovery) { this.discovery = discovery; }
+
+    public DatabaseConfig getDatabase() { return database; }
+    public void setDatabase(DatabaseConfig database) { this.database = database; }
+
+    public LoggingConfig getLogging() { return logging; }
+    public void setLogging(LoggingConfig logging) { this.logging = logging; }
+}
@@ -0,0 +1,19 @@
+package jp.co.jri.codechunker.config;
+
+import jp.co.jri.codechunker.engine.ChunkExtractor;
+import jp.co.jri.codechunker.util.MetricsCalculator;
+import jp.co.jri.codechunker.util.ParserProfile;
+import jp.co.jri.codechunker.util.SourceArchives;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class EngineConfig {
+
+    // The extractor is plain Java so ChunkingEngine can use it without a Spring context
+    @Bean
+    public ChunkExtractor chunkExtractor(ApplicationProperties properties, MetricsCalculator metricsCalculator,
+                                         ParserProfile parserProfile, SourceArchives sourceArchives) {
+        return new ChunkExtractor(properties, metricsCalculator, parserProfile, sourceArchives);
+    }
+}
@@ -0,0 +1,964 @@
+package jp.co.jri.codechunker.engine;
+
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.ParseResult;
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.body.*;
+import com.github.javaparser.ast.nodeTypes.NodeWithExtends;
+import com.github.javaparser.ast.nodeTypes.NodeWithImplements;
+import com.github.javaparser.ast.visitor.VoidVisitorAdapter;
+import com.github.javaparser.printer.lexicalpreservation.LexicalPreservingPrinter;
+import jp.co.jri.codechunker.config.ApplicationProperties;
+import jp.co.jri.codechunker.jfr.FileReadEvent;
+import jp.co.jri.codechunker.jfr.ParseEvent;
+import jp.co.jri.codechunker.model.chunk.ChunkData;
+import jp.co.jri.codechunker.model.chunk.ChunkLevel;
+import jp.co.jri.codechunker.model.chunk.data.Kind;
+import jp.co.jri.codechunker.model.chunk.data.Location;
+import jp.co.jri.codechunker.model.chunk.data.Metrics;
+import jp.co.jri.codechunker.model.chunk.data.Notes;
+import jp.co.jri.codechunker.model.chunk.data.ParentRef;
+import jp.co.jri.codechunker.model.chunk.data.Symbols;
+import jp.co.jri.codechunker.model.chunk.method.ClassInfo;
+import jp.co.jri.codechunker.util.CodeNormalizer;
+import jp.co.jri.codechunker.util.LexicalChunker;
+import jp.co.jri.codechunker.util.MetricsCalculator;
+import jp.co.jri.codechunker.util.ParserProfile;
+import jp.co.jri.codechunker.util.SignatureExtractor;
+import jp.co.jri.codechunker.util.SourceArchives;
+import jp.co.jri.codechunker.util.SymbolsExtractor;
+import jp.co.jri.codechunker.util.TimedParser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeoutException;
+import java.util.function.IntFunction;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Turns one Java source into file, class and method chunks: parsing (with the lexical
+ * fallback) and extraction, without any output handling. Plain Java and thread-safe (one
+ * parser per thread); the CLI services and the embeddable ChunkingEngine both build on it.
+ */
+public class ChunkExtractor {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChunkExtractor.class);
+    // JavaParser is not thread-safe; files may be chunked on many threads
+    private final ThreadLocal<JavaParser> javaParser = ThreadLocal.withInitial(this::newParser);
+    private final TimedParser timedParser = new TimedParser(javaParser::get);
+    private final ApplicationProperties properties;
+    private final MetricsCalculator metricsCalculator;
+    private final ParserProfile parserProfile;
+    private final SourceArchives sourceArchives;
+
+    public ChunkExtractor(ApplicationProperties properties, MetricsCalculator metricsCalculator,
+                          ParserProfile parserProfile, SourceArchives sourceArchives) {
+        this.properties = properties;
+        this.metricsCalculator = metricsCalculator;
+        this.parserProfile = parserProfile;
+        this.sourceArchives = sourceArchives;
+    }
+
+    /**
+     * Every chunk of a parsed source at the given level, in file, class, method order. At
+     * ALL_LEVELS classes point to their file chunk and methods to their class chunk
+     * through parentChunkId.
+     */
+    public List<ChunkData> extract(ParsedSource source, Path filePath, ChunkLevel level) {
+        List<ChunkData> chunks = new ArrayList<>();
+        boolean linked = level == ChunkLevel.ALL_LEVELS;
+
+        String fileChunkId = null;
+        if (linked) {
+            ChunkData fileChunk = createFileChunk(source, filePath);
+            fileChunkId = fileChunk.getChunkId();
+            chunks.add(fileChunk);
+        }
+        if (level.includesClasses()) {
+            for (ChunkData classChunk : extractClassChunks(source, filePath)) {
+                classChunk.setParentChunkId(fileChunkId);
+                chunks.add(classChunk);
+            }
+        }
+        if (level.includesMethods()) {
+            for (ClassInfo classMethods : extractMethods(source, filePath)) {
+                for (ChunkData method : classMethods.getMethods()) {
+                    if (linked) {
+                        method.setParentChunkId(classMethods.getFullyQualifiedName());
+                    }
+                    chunks.add(method);
+                }
+            }
+        }
+        return chunks;
+    }
+
+    /**
+     * Creates the parser of one thread, configured by the parser profile
+     */
+    private JavaParser newParser() {
+        return new JavaParser(parserProfile.createConfiguration());
+    }
+
+    /**
+     * Parses a file, or outlines it with the lexical chunker when it is larger than the
+     * configured limit, quarantined (skipParser) or could not be parsed. The result is not
+     * chunkable when parsing failed and the lexical fallback is disabled.
+     */
+    public ParsedSource parseFile(Path javaFile, boolean skipParser) throws IOException {
+        ParseEvent event = new ParseEvent();
+        event.begin();
+        ParsedSource source = parseOrOutline(javaFile, skipParser);
+        if (event.shouldCommit()) {
+            event.file = javaFile.toString();
+            event.size = SourceArchives.size(javaFile);
+            event.outcome = source.outcome();
+            event.commit();
+        }
+        return source;
+    }
+
+    private ParsedSource parseOrOutline(Path javaFile, boolean skipParser) throws IOException {
+        ApplicationProperties.LexicalConfig lexicalConfig = properties.getLexical();
+        long timeoutMillis = properties.getFaultTolerance().getParseTimeoutMillis();
+
+        if (skipParser) {
+            return outline(readSource(javaFile), javaFile, null, "quarantined after repeated parse failures");
+        }
+        if (lexicalConfig.getMaxParseBytes() > 0 && Files.size(javaFile) > lexicalConfig.getMaxParseBytes()) {
+            return outline(readSource(javaFile), javaFile, null,
+                    "larger than " + lexicalConfig.getMaxParseBytes() + " bytes, parser skipped");
+        }
+
+        try {
+            ParseResult<CompilationUnit> parseResult = timedParser.parse(javaFile, timeoutMillis);
+            if (parseResult.isSuccessful() && parseResult.getResult().isPresent()) {
+                return new ParsedSource(parseResult.getResult().get());
+            }
+            logger.warn("Failed to parse file: {}", javaFile);
+            return fallback(javaFile, "PARSE_ERROR", "parse failed", () -> readSource(javaFile));
+        } catch (TimeoutException e) {
+            logger.warn("Parse of {} exceeded {} ms, cancelled", javaFile, timeoutMillis);
+            return fallback(javaFile, "TIMEOUT", "parse exceeded " + timeoutMillis + " ms", () -> readSource(javaFile));
+        }
+    }
+
+    /**
+     * Parses source text held in memory (a git blob, or a source handed to the engine),
+     * falling back to the lexical chunker like parseFile. name identifies it in logs.
+     */
+    public ParsedSource parseSource(String source, String name) throws IOException {
+        ApplicationProperties.LexicalConfig lexicalConfig = properties.getLexical();
+        long timeoutMillis = properties.getFaultTolerance().getParseTimeoutMillis();
+        Path blob = Paths.get(name);
+
+        if (lexicalConfig.getMaxParseBytes() > 0 && source.length() > lexicalConfig.getMaxParseBytes()) {
+            return outline(source, blob, null, "larger than " + lexicalConfig.getMaxParseBytes() + " bytes, parser skipped");
+        }
+
+        try {
+            ParseResult<CompilationUnit> parseResult = timedParser.parse(source, timeoutMillis);
+            if (parseResult.isSuccessful() && parseResult.getResult().isPresent()) {
+                return new ParsedSource(parseResult.getResult().get());
+            }
+            return fallback(blob, "PARSE_ERROR", "parse failed", () -> source);
+        } catch (TimeoutException e) {
+            logger.warn("Parse of {} exceeded {} ms, cancelled", name, timeoutMillis);
+            return fallback(blob, "TIMEOUT", "parse exceeded " + timeoutMillis + " ms", () -> source);
+        }
+    }
+
+    private ParsedSource fallback(Path file, String failure, String reason, SourceReader reader) throws IOException {
+        if (!properties.getLexical().isFallbackEnabled()) {
+            ParsedSource failed = new ParsedSource(null);
+            failed.failure = failure;
+            return failed;
+        }
+        return outline(reader.read(), file, failure, reason);
+    }
+
+    private ParsedSource outline(String source, Path file, String failure, String reason) {
+        logger.info("Chunking {} lexically: {}", file, reason);
+        ParsedSource outlined = new ParsedSource(null);
+        outlined.outline = LexicalChunker.scan(source);
+        outlined.source = source;
+        outlined.failure = failure;
+        outlined.lexicalReason = reason;
+        return outlined;
+    }
+
+    private static String readSource(Path javaFile) throws IOException {
+        FileReadEvent event = new FileReadEvent();
+        event.begin();
+        // Malformed bytes are replaced rather than failing: this path must accept any file
+        byte[] bytes = Files.readAllBytes(javaFile);
+        if (event.shouldCommit()) {
+            event.file = javaFile.toString();
+            event.size = bytes.length;
+            event.commit();
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @FunctionalInterface
+    private interface SourceReader {
+        String read() throws IOException;
+    }
+
+    /**
+     * A parsed file: its syntax tree, or the lexical outline when the parser was skipped or
+     * failed. failure is PARSE_ERROR or TIMEOUT when the parser was tried and failed.
+     */
+    public static class ParsedSource {
+        private final CompilationUnit cu;
+        private LexicalChunker.SourceOutline outline;
+        private String source;
+        private String lexicalReason;
+        private String failure;
+
+        ParsedSource(CompilationUnit cu) {
+            this.cu = cu;
+        }
+
+        public boolean isChunkable() {
+            return cu != null || outline != null;
+        }
+
+        /**
+         * True when the syntax tree is available, false when outlined lexically or failed
+         */
+        public boolean isParsed() {
+            return cu != null;
+        }
+
+        public String getFailure() {
+            return failure;
+        }
+
+        /**
+         * PARSED, LEXICAL, or the failure when the file could not be chunked
+         */
+        public String outcome() {
+            return cu != null ? "PARSED" : outline != null ? "LEXICAL" : failure;
+        }
+    }
+
+    public List<ChunkData> extractClassChunks(ParsedSource source, Path filePath) {
+        return source.cu != null ? extractClassChunksFromFile(source.cu, filePath)
+                : extractLexicalClassChunks(source, filePath);
+    }
+
+    public List<ClassInfo> extractMethods(ParsedSource source, Path filePath) {
+        return source.cu != null ? extractMethodsFromFile(source.cu, filePath)
+                : extractLexicalMethods(source, filePath);
+    }
+
+    /**
+     * Extracts class chunks from a file
+     */
+    private List<ChunkData> extractClassChunksFromFile(CompilationUnit cu, Path filePath) {
+        String packageName = cu.getPackageDeclaration()
+                .map(p -> p.getNameAsString())
+                .orElse("");
+        logger.debug("Package: {}", packageName);
+
+        List<TypeDeclaration<?>> types = new ArrayList<>();
+        List<String> typeNames = new ArrayList<>();
+        cu.accept(new VoidVisitorAdapter<Void>() {
+            @Override
+            public void visit(ClassOrInterfaceDeclaration n, Void arg) {
+                types.add(n);
+                typeNames.add(n.isInterface() ? "INTERFACE" : "CLASS");
+                super.visit(n, arg);
+            }
+
+            @Override
+            public void visit(EnumDeclaration n, Void arg) {
+                types.add(n);
+                typeNames.add("ENUM");
+                super.visit(n, arg);
+            }
+
+            @Override
+            public void visit(AnnotationDeclaration n, Void arg) {
+                types.add(n);
+                typeNames.add("ANNOTATION");
+                super.visit(n, arg);
+            }
+
+            @Override
+            public void visit(RecordDeclaration n, Void arg) {
+                types.add(n);
+                typeNames.add("RECORD");
+                super.visit(n, arg);
+            }
+        }, null);
+
+        List<ChunkData> classChunks = split(cu, types.size(),
+                i -> createClassChunk(types.get(i), filePath, packageName, typeNames.get(i)));
+
+        // Local classes of different members may share a name; their files must not collide
+        Map<TypeDeclaration<?>, String> classChunkIds = classChunkIds(cu, packageName);
+        for (int i = 0; i < classChunks.size(); i++) {
+            ChunkData chunk = classChunks.get(i);
+            chunk.setChunkId(classChunkIds.get(types.get(i)));
+            chunk.setFullyQualifiedName(chunk.getChunkId());
+        }
+
+        if (!classChunks.isEmpty()) {
+            SymbolsExtractor.getClassSymbols(cu, classChunks.get(0).getSymbols());
+        }
+
+        return classChunks;
+    }
+
+    /**
+     * Extracts methods from a file, grouped by class
+     */
+    private List<ClassInfo> extractMethodsFromFile(CompilationUnit cu, Path filePath) {
+        List<ClassInfo> classMethodsList = new ArrayList<>();
+        String packageName = cu.getPackageDeclaration()
+                .map(p -> p.getNameAsString())
+                .orElse("");
+
+        Map<String, Integer> chunkIds = new HashMap<>();
+
+        // Members of every type in the file, nested types included. Methods of anonymous
+        // classes are not members of a type: they stay in the code of the enclosing member.
+        List<TypeDeclaration<?>> owners = new ArrayList<>();
+        List<BodyDeclaration<?>> members = new ArrayList<>();
+        for (TypeDeclaration<?> typeDecl : cu.findAll(TypeDeclaration.class)) {
+            for (BodyDeclaration<?> member : typeDecl.getMembers()) {
+                if (member instanceof MethodDeclaration || member instanceof ConstructorDeclaration) {
+                    owners.add(typeDecl);
+                    members.add(member);
+                }
+            }
+        }
+
+        // Create method chunks
+        List<ChunkData> methodChunks = split(cu, members.size(), i -> {
+            ChunkData chunkData = createMethodChunkData(members.get(i), filePath, packageName);
+            SymbolsExtractor.getClassSymbols(cu, chunkData.getSymbols());
+            return chunkData;
+        });
+
+        // Ids and grouping in source order, whichever thread created the chunks. Methods are
+        // grouped under the class chunk id of their type, as parentChunkId points to it
+        Map<TypeDeclaration<?>, String> classChunkIds = classChunkIds(cu, packageName);
+        for (int i = 0; i < members.size(); i++) {
+            TypeDeclaration<?> typeDecl = owners.get(i);
+            ClassInfo classMethods = findOrCreateClassMethods(classMethodsList, classChunkIds.get(typeDecl),
+                    typeDecl.getNameAsString(), packageName, typeKind(typeDecl), filePath);
+            ChunkData chunkData = methodChunks.get(i);
+            chunkData.setChunkId(uniqueChunkId(chunkIds, chunkData.getChunkId()));
+            classMethods.getMethods().add(chunkData);
+        }
+
+        return classMethodsList;
+    }
+
+    /**
+     * Creates the chunks of a file, one task per type or member. In a long file
+     * (code-chunker.batch.split-lines) on a fork/join worker (batch runs, parallel engine
+     * streams) the tasks are forked, so idle workers steal them instead of waiting for one
+     * thread to finish the file. The results keep the order of the tasks.
+     */
+    private List<ChunkData> split(CompilationUnit cu, int count, IntFunction<ChunkData> task) {
+        int splitLines = properties.getBatch().getSplitLines();
+        boolean forked = splitLines > 0 && count > 1 && ForkJoinTask.inForkJoinPool()
+                && cu.getRange().map(range -> range.end.line >= splitLines).orElse(false);
+
+        List<ChunkData> chunks = new ArrayList<>(count);
+        if (!forked) {
+            for (int i = 0; i < count; i++) {
+                chunks.add(task.apply(i));
+            }
+            return chunks;
+        }
+        List<ForkJoinTask<ChunkData>> subtasks = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int index = i;
+            subtasks.add(ForkJoinTask.adapt(() -> task.apply(index)));
+        }
+        ForkJoinTask.invokeAll(subtasks);
+        for (ForkJoinTask<ChunkData> subtask : subtasks) {
+            chunks.add(subtask.join());
+        }
+        return chunks;
+    }
+
+    /**
+     * Class chunks of a file outlined by the lexical chunker, one per type
+     */
+    private List<ChunkData> extractLexicalClassChunks(ParsedSource source, Path filePath) {
+        List<ChunkData> classChunks = new ArrayList<>();
+        LexicalChunker.SourceOutline outline = source.outline;
+
+        for (LexicalChunker.TypeBlock type : outline.getTypes()) {
+            ChunkData chunk = createLexicalChunk(source, filePath, type, type.getName(), Kind.CLASS,
+                    type.getSignature(), type.getModifiers(),
+                    type.getStartLine(), type.getEndLine(), type.getStartOffset(), type.getEndOffset());
+            chunk.setFullyQualifiedName(chunk.getChunkId());
+            classChunks.add(chunk);
+        }
+        return classChunks;
+    }
+
+    /**
+     * Methods of a file outlined by the lexical chunker, grouped by their enclosing type
+     */
+    private List<ClassInfo> extractLexicalMethods(ParsedSource source, Path filePath) {
+        List<ClassInfo> classMethodsList = new ArrayList<>();
+        String packageName = source.outline.getPackageName();
+        Map<String, Integer> chunkIds = new HashMap<>();
+
+        for (LexicalChunker.TypeBlock type : source.outline.getTypes()) {
+            if (type.getMembers().isEmpty()) {
+                continue;
+            }
+            String fullyQualifiedName = packageName.isEmpty() ? type.getName() : packageName + "." + type.getName();
+            String typeName = switch (type.getKeyword()) {
+                case "interface" -> "INTERFACE";
+                case "enum" -> "ENUM";
+                case "record" -> "RECORD";
+                default -> "CLASS";
+            };
+            ClassInfo classMethods = findOrCreateClassMethods(
+                    classMethodsList, fullyQualifiedName, type.getName(), packageName, typeName, filePath);
+
+            for (LexicalChunker.MemberBlock member : type.getMembers()) {
+                ChunkData chunk = createLexicalChunk(source, filePath, type, member.getName(), Kind.METHOD,
+                        member.getSignature(), member.getModifiers(),
+                        member.getStartLine(), member.getEndLine(), member.getStartOffset(), member.getEndOffset());
+                chunk.setFullyQualifiedName(fullyQualifiedName + "." + member.getName());
+                chunk.setChunkId(uniqueChunkId(chunkIds, memberChunkId(fullyQualifiedName, member.getName(),
+                        SignatureExtractor.getErasedParameters(member.getSignature()))));
+                classMethods.getMethods().add(chunk);
+            }
+        }
+        return classMethodsList;
+    }
+
+    /**
+     * Creates a chunk from lexical boundaries: the code is the original source text, and
+     * symbols and complexity metrics are not available
+     */
+    private ChunkData createLexicalChunk(ParsedSource source, Path filePath, LexicalChunker.TypeBlock type,
+                                         String name, Kind kind, String signature, List<String> modifiers,
+                                         int startLine, int endLine, int startOffset, int endOffset) {
+        String packageName = source.outline.getPackageName();
+        ChunkData.ChunkDataBuilder builder = ChunkData.builder();
+
+        builder.language("java");
+        builder.filePath(sourceArchives.describe(filePath));
+        builder.chunkId(packageName.isEmpty() ? type.getName() : packageName + "." + type.getName());
+        builder.kind(kind.ordinal());
+        builder.name(name);
+        builder.parent(new ParentRef(packageName, Stream.concat(type.getExtendedTypes().stream(),
+                type.getImplementedTypes().stream()).collect(Collectors.toList())));
+        builder.signature(signature);
+        builder.location(new Location(startLine, endLine));
+        builder.imports(new ArrayList<>(source.outline.getImports()));
+        builder.modifiers(modifiers);
+
+        Symbols.SymbolsBuilder symbolsBuilder = Symbols.builder();
+        symbolsBuilder.classes(new ArrayList<>());
+        symbolsBuilder.methods(new ArrayList<>());
+        symbolsBuilder.fields(new ArrayList<>());
+        symbolsBuilder.variables(new ArrayList<>());
+        builder.symbols(symbolsBuilder.build());
+
+        builder.metrics(Metrics.builder().loc(endLine - startLine + 1).build());
+        if (properties.getChunk().isIncludeCodeSnippets()) {
+            builder.code(normalizeText(source.source.substring(startOffset, endOffset), builder));
+        }
+
+        Notes.NotesBuilder notesBuilder = Notes.builder();
+        notesBuilder.missingData(new ArrayList<>(List.of("symbols", "complexity metrics")));
+        notesBuilder.extractionWarnings(new ArrayList<>(List.of("lexical", "chunked without a syntax tree: " + source.lexicalReason)));
+        builder.notes(notesBuilder.build());
+
+        return builder.build();
+    }
+
+    /**
+     * Finds or creates a ClassMethods entry
+     */
+    private ClassInfo findOrCreateClassMethods(List<ClassInfo> classMethodsList,
+                                               String fullyQualifiedName,
+                                               String className,
+                                               String packageName,
+                                               String type,
+                                               Path filePath) {
+        for (ClassInfo cm : classMethodsList) {
+            if (cm.getFullyQualifiedName().equals(fullyQualifiedName)) {
+                return cm;
+            }
+        }
+
+        ClassInfo newClassMethods = ClassInfo.builder()
+                .fullyQualifiedName(fullyQualifiedName)
+                .className(className)
+                .packageName(packageName)
+                .type(type)
+                .sourceFile(sourceArchives.describe(filePath))
+                .methods(new ArrayList<>())
+                .build();
+
+        classMethodsList.add(newClassMethods);
+        return newClassMethods;
+    }
+
+    /**
+     * Creates the chunk of a whole source file. Its chunkId is the package path and file
+     * name, so it never collides with the chunkId of the class the file declares.
+     */
+    public ChunkData createFileChunk(ParsedSource source, Path filePath) {
+        String fileName = filePath.getFileName().toString();
+        String baseName = fileName.endsWith(".java") ? fileName.substring(0, fileName.length() - 5) : fileName;
+        String packageName = source.cu != null
+                ? source.cu.getPackageDeclaration().map(p -> p.getNameAsString()).orElse("")
+                : source.outline.getPackageName();
+
+        ChunkData.ChunkDataBuilder builder = ChunkData.builder();
+
+        builder.fullyQualifiedName(packageName.isEmpty() ? baseName : packageName + "." + baseName);
+
+        // #1.language - value["java"]
+        builder.language("java");
+
+        // #2.filePath - full path to the analyzed java file, archive!/entry inside a source archive
+        builder.filePath(sourceArchives.describe(filePath));
+
+        // #3.chunkId - package path and name of the analyzed java file
+        builder.chunkId(packageName.isEmpty() ? fileName : packageName.replace('.', '/') + "/" + fileName);
+
+        // #4.kind - value["FILE"]
+        builder.kind(Kind.FILE.ordinal());
+
+        // #5.name - file name
+        builder.name(fileName);
+
+        // #6.parent - only the package: a file has no enclosing declaration
+        builder.parent(new ParentRef(packageName, new ArrayList<>()));
+
+        // #8.location, #9.imports, #11.symbols - declared types, methods and fields of the file
+        Symbols.SymbolsBuilder symbolsBuilder = Symbols.builder();
+        symbolsBuilder.classes(new ArrayList<>());
+        symbolsBuilder.methods(new ArrayList<>());
+        symbolsBuilder.fields(new ArrayList<>());
+        symbolsBuilder.variables(new ArrayList<>());
+        Symbols symbols = symbolsBuilder.build();
+
+        if (source.cu != null) {
+            CompilationUnit cu = source.cu;
+            cu.getRange().ifPresent(range -> builder.location(new Location(range.begin.line, range.end.line)));
+
+            List<String> dependencies = new ArrayList<>();
+            for (com.github.javaparser.ast.ImportDeclaration imp : cu.getImports()) {
+                dependencies.add(imp.getNameAsString());
+            }
+            builder.imports(dependencies);
+
+            for (TypeDeclaration<?> typeDecl : cu.findAll(TypeDeclaration.class)) {
+                symbols.getClasses().add(typeDecl.getNameAsString());
+            }
+            SymbolsExtractor.getClassSymbols(cu, symbols);
+            builder.symbols(symbols);
+
+            // #12.metrics - complexity and size of the whole file
+            builder.metrics(metricsCalculator.calculate(cu));
+
+            // #13.code - the whole file
+            builder.code(printCode(cu, builder));
+        } else {
+            int lines = (int) source.source.chars().filter(c -> c == '\n').count()
+                    + (source.source.endsWith("\n") ? 0 : 1);
+            builder.location(new Location(1, lines));
+            builder.imports(new ArrayList<>(source.outline.getImports()));
+
+            for (LexicalChunker.TypeBlock type : source.outline.getTypes()) {
+                symbols.getClasses().add(type.getName());
+            }
+            builder.symbols(symbols);
+
+            builder.metrics(Metrics.builder().loc(lines).build());
+            if (properties.getChunk().isIncludeCodeSnippets()) {
+                builder.code(normalizeText(source.source, builder));
+            }
+
+            Notes.NotesBuilder notesBuilder = Notes.builder();
+            notesBuilder.missingData(new ArrayList<>(List.of("symbols", "complexity metrics")));
+            notesBuilder.extractionWarnings(new ArrayList<>(List.of("lexical", "chunked without a syntax tree: " + source.lexicalReason)));
+            builder.notes(notesBuilder.build());
+        }
+
+        return builder.build();
+    }
+
+    /**
+     * Creates a ClassChunk from TypeDeclaration
+     */
+    private ChunkData createClassChunk(TypeDeclaration<?> typeDecl,
+                                       Path filePath,
+                                       String packageName,
+                                       String type) {
+        String className = typeDecl.getNameAsString();
+        String canonicalName = canonicalName(typeDecl, packageName);
+
+        ChunkData.ChunkDataBuilder builder = ChunkData.builder();
+
+        builder.fullyQualifiedName(canonicalName);
+
+        // #1.language - value["java"]
+        builder.language("java");
+
+        // #2.filePath - full path to the analyzed java class file
+        builder.filePath(sourceArchives.describe(filePath));
+
+        // #3.chunkId - canonical name of the class: package, enclosing types and class name
+        builder.chunkId(canonicalName);
+
+        // #4.kind - value["CLASS"]
+        builder.kind(Kind.CLASS.ordinal());
+
+        // #5.name - get class name of the java class
+        builder.name(className);
+
+        // #6.parent - to extract parent classes and interfaces
+        if (typeDecl instanceof ClassOrInterfaceDeclaration) {
+            ClassOrInterfaceDeclaration classDecl = (ClassOrInterfaceDeclaration) typeDecl;
+            List<String> extendedClasses = new ArrayList<>();
+            for (com.github.javaparser.ast.type.ClassOrInterfaceType ext : classDecl.getExtendedTypes()) {
+                extendedClasses.add(ext.getNameAsString());
+            }
+
+            List<String> implementedInterfaces = new ArrayList<>();
+            for (com.github.javaparser.ast.type.ClassOrInterfaceType imp : classDecl.getImplementedTypes()) {
+                implementedInterfaces.add(imp.getNameAsString());
+            }
+
+            builder.parent(new ParentRef(packageName, Stream.concat(extendedClasses.stream(), implementedInterfaces.stream()).collect(Collectors.toList())));
+        }
+
+        // #7.signature - class, interface, enum, record or annotation header
+        builder.signature(SignatureExtractor.getTypeSignature(typeDecl));
+
+        // #8.location - to get the start line and end line of the class
+        typeDecl.getRange().ifPresent(range -> {
+            builder.location(new Location(range.begin.line, range.end.line));
+        });
+
+        // #9.imports - to get all the import statements of the java class
+        List<String> dependencies = new ArrayList<>();
+
+        typeDecl.findCompilationUnit().ifPresent(cu -> {
+            for (com.github.javaparser.ast.ImportDeclaration imp : cu.getImports()) {
+                dependencies.add(imp.getNameAsString());
+            }
+        });
+
+        builder.imports(dependencies);
+
+        // #10.modifiers - to get the modifider of the class
+        builder.modifiers(SignatureExtractor.getModifiers(typeDecl.getModifiers()));
+
+        // #11.symbols - to be enhanced (no direct way to extract those info
+        Symbols.SymbolsBuilder symbolsBuilder = Symbols.builder();
+        symbolsBuilder.classes(new ArrayList<>());
+        symbolsBuilder.methods(new ArrayList<>());
+        symbolsBuilder.fields(new ArrayList<>());
+        symbolsBuilder.variables(new ArrayList<>());
+
+        builder.symbols(symbolsBuilder.build());
+
+        // #12.metrics - complexity and size of the whole type
+        builder.metrics(metricsCalculator.calculate(typeDecl));
+
+        // #13.code - to extract the code of the java class
+        String code = printCode(typeDecl, builder);
+
+        builder.code(code);
+
+        // #14.notes - to add the notes
+        Notes.NotesBuilder notesBuilder = Notes.builder();
+        notesBuilder.missingData(null);
+        notesBuilder.extractionWarnings(new ArrayList<>(List.of("local variables won't be included in the analysis")));
+
+        builder.notes(notesBuilder.build());
+
+        return builder.build();
+    }
+
+    /**
+     * Creates a MethodChunk from MethodDeclaration
+     */
+    private ChunkData createMethodChunkData(Node node, Path filePath, String packageName) {
+        ChunkData.ChunkDataBuilder builder = ChunkData.builder();
+
+        if(node instanceof MethodDeclaration){
+            MethodDeclaration methodDeclaration = (MethodDeclaration) node;
+            String methodName = methodDeclaration.getNameAsString();
+
+            // Find containing type
+            TypeDeclaration<?> containingType = methodDeclaration.findAncestor(TypeDeclaration.class).get();
+            String ownerName = canonicalName(containingType, packageName);
+
+            builder.fullyQualifiedName(ownerName + "." + methodName);
+
+            // #1.language - value["java"]
+            builder.language("java");
+
+            // #2.filePath - full path to the analyzed java class file
+            builder.filePath(sourceArchives.describe(filePath));
+
+            // #3.chunkId - owning type, name and erased parameter types, e.g. pkg.Type#name(String,int[])
+            builder.chunkId(memberChunkId(ownerName, methodName, SignatureExtractor.getErasedParameters(methodDeclaration)));
+
+            // #4.kind - value["METHOD"]
+            builder.kind(Kind.METHOD.ordinal());
+
+            // #5.name - get class name of the java class
+            builder.name(methodName);
+
+            // #6.parent - to extract parent classes and interfaces
+            builder.parent(new ParentRef(packageName, parentTypes(containingType)));
+
+            // #7.signature - to be enhanced (no direct way to extract class signature
+            builder.signature(SignatureExtractor.getMethodSignature(methodDeclaration));
+
+            // #8.location - to get the start line and end line of the class
+            methodDeclaration.getRange().ifPresent(range -> {
+                builder.location(new Location(range.begin.line, range.end.line));
+            });
+
+            // #9.imports - to get all the import statements of the java class
+            List<String> dependencies = new ArrayList<>();
+
+            methodDeclaration.findCompilationUnit().ifPresent(cu -> {
+                for (com.github.javaparser.ast.ImportDeclaration imp : cu.getImports()) {
+                    dependencies.add(imp.getNameAsString());
+                }
+            });
+
+            builder.imports(dependencies);
+
+            // #10.modifiers - to get the modifider of the class
+            builder.modifiers(SignatureExtractor.getModifiers(methodDeclaration.getModifiers()));
+
+            // #11.symbols - to be enhanced (no direct way to extract those info
+            Symbols.SymbolsBuilder symbolsBuilder = Symbols.builder();
+            symbolsBuilder.classes(new ArrayList<>());
+            symbolsBuilder.methods(new ArrayList<>());
+            symbolsBuilder.fields(new ArrayList<>());
+            symbolsBuilder.variables(new ArrayList<>());
+
+            builder.symbols(symbolsBuilder.build());
+
+            // #12.metrics - complexity and size of the member
+            builder.metrics(metricsCalculator.calculate(methodDeclaration));
+
+            // #13.code - to extract the code of the java class
+            String code = printCode(methodDeclaration, builder);
+
+            builder.code(code);
+
+            // #14.notes - to add the notes
+            Notes.NotesBuilder notesBuilder = Notes.builder();
+            notesBuilder.missingData(null);
+            notesBuilder.extractionWarnings(new ArrayList<>(List.of("local variables won't be included in the analysis")));
+
+            builder.notes(notesBuilder.build());
+        }  else if(node instanceof ConstructorDeclaration){
+            ConstructorDeclaration constructorDeclaration = (ConstructorDeclaration) node;
+            String methodName = constructorDeclaration.getNameAsString();
+
+            // Find containing type
+            TypeDeclaration<?> containingType = constructorDeclaration.findAncestor(TypeDeclaration.class).get();
+            String className = containingType.getNameAsString();
+            String ownerName = canonicalName(containingType, packageName);
+
+            builder.fullyQualifiedName(ownerName + "." + methodName);
+
+            // #1.language - value["java"]
+            builder.language("java");
+
+            // #2.filePath - full path to the analyzed java class file
+            builder.filePath(sourceArchives.describe(filePath));
+
+            // #3.chunkId - owning type, name and erased parameter types, e.g. pkg.Type#Type(int)
+            builder.chunkId(memberChunkId(ownerName, methodName, SignatureExtractor.getErasedParameters(constructorDeclaration)));
+
+            // #4.kind - value["METHOD"]
+            builder.kind(Kind.METHOD.ordinal());
+
+            // #5.name - get class name of the java class
+            builder.name(className);
+
+            // #6.parent - to extract parent classes and interfaces
+            builder.parent(new ParentRef(packageName, parentTypes(containingType)));
+
+            // #7.signature - to be enhanced (no direct way to extract class signature
+            builder.signature(SignatureExtractor.getConstructorSignature(constructorDeclaration));
+
+            // #8.location - to get the start line and end line of the class
+            constructorDeclaration.getRange().ifPresent(range -> {
+                builder.location(new Location(range.begin.line, range.end.line));
+            });
+
+            // #9.imports - to get all the import statements of the java class
+            List<String> dependencies = new ArrayList<>();
+
+            constructorDeclaration.findCompilationUnit().ifPresent(cu -> {
+                for (com.github.javaparser.ast.ImportDeclaration imp : cu.getImports()) {
+                    dependencies.add(imp.getNameAsString());
+                }
+            });
+
+            builder.imports(dependencies);
+
+            // #10.modifiers - to get the modifider of the class
+            builder.modifiers(SignatureExtractor.getModifiers(constructorDeclaration.getModifiers()));
+
+            // #11.symbols - to be enhanced (no direct way to extract those info
+            Symbols.SymbolsBuilder symbolsBuilder = Symbols.builder();
+            symbolsBuilder.classes(new ArrayList<>());
+            symbolsBuilder.methods(new ArrayList<>());
+            symbolsBuilder.fields(new ArrayList<>());
+            symbolsBuilder.variables(new ArrayList<>());
+
+            builder.symbols(symbolsBuilder.build());
+
+            // #12.metrics - complexity and size of the member
+            builder.metrics(metricsCalculator.calculate(constructorDeclaration));
+
+            // #13.code - to extract the code of the java class
+            String code = printCode(constructorDeclaration, builder);
+
+            builder.code(code);
+
+            // #14.notes - to add the notes
+            Notes.NotesBuilder notesBuilder = Notes.builder();
+            notesBuilder.missingData(null);
+            notesBuilder.extractionWarnings(new ArrayList<>(List.of("local variables won't be included in the analysis")));
+
+            builder.notes(notesBuilder.build());
+        }
+
+        return builder.build();
+    }
+
+    /**
+     * Code of a declaration: the original text when lexical preservation is enabled,
+     * otherwise pretty printed, then normalized as configured; null when code snippets are
+     * disabled. Stubbed bodies are always pretty printed. Sets the chunk's code size.
+     */
+    private String printCode(Node node, ChunkData.ChunkDataBuilder builder) {
+        if (!properties.getChunk().isIncludeCodeSnippets()) {
+            return null;
+        }
+        String raw = properties.getParser().isLexicalPreservation()
+                ? LexicalPreservingPrinter.print(node)
+                : node.toString();
+        Node stubbed = CodeNormalizer.stub(node, properties.getChunk());
+        String code = CodeNormalizer.normalize(stubbed == node ? raw : stubbed.toString(), properties.getChunk());
+        builder.codeSize(CodeNormalizer.measure(raw, code));
+        return code;
+    }
+
+    /**
+     * Source text of a lexical chunk, normalized as configured (bodies are not stubbed
+     * without a syntax tree). Sets the chunk's code size.
+     */
+    private String normalizeText(String raw, ChunkData.ChunkDataBuilder builder) {
+        String code = CodeNormalizer.normalize(raw, properties.getChunk());
+        builder.codeSize(CodeNormalizer.measure(raw, code));
+        return code;
+    }
+
+    /**
+     * The class chunk id of every type of a file: its canonical name, with ~n appended to
+     * the later types of the same name in source order
+     */
+    private static Map<TypeDeclaration<?>, String> classChunkIds(CompilationUnit cu, String packageName) {
+        Map<String, Integer> chunkIds = new HashMap<>();
+        Map<TypeDeclaration<?>, String> classChunkIds = new IdentityHashMap<>();
+        for (TypeDeclaration<?> typeDecl : cu.findAll(TypeDeclaration.class)) {
+            classChunkIds.put(typeDecl, uniqueChunkId(chunkIds, canonicalName(typeDecl, packageName)));
+        }
+        return classChunkIds;
+    }
+
+    /**
+     * Canonical name of a type declaration: package, enclosing types and name, e.g. pkg.Outer.Inner
+     */
+    private static String canonicalName(TypeDeclaration<?> typeDecl, String packageName) {
+        StringBuilder name = new StringBuilder(typeDecl.getNameAsString());
+        for (Node node = typeDecl.getParentNode().orElse(null); node != null; node = node.getParentNode().orElse(null)) {
+            if (node instanceof TypeDeclaration<?> enclosing) {
+                name.insert(0, enclosing.getNameAsString() + ".");
+            }
+        }
+        return packageName.isEmpty() ? name.toString() : packageName + "." + name;
+    }
+
+    private static String typeKind(TypeDeclaration<?> typeDecl) {
+        if (typeDecl instanceof ClassOrInterfaceDeclaration classDecl) {
+            return classDecl.isInterface() ? "INTERFACE" : "CLASS";
+        }
+        if (typeDecl instanceof EnumDeclaration) {
+            return "ENUM";
+        }
+        return typeDecl instanceof RecordDeclaration ? "RECORD" : "ANNOTATION";
+    }
+
+    /**
+     * Extended classes and implemented interfaces of a type, by simple name
+     */
+    private static List<String> parentTypes(TypeDeclaration<?> typeDecl) {
+        List<String> parents = new ArrayList<>();
+        if (typeDecl instanceof NodeWithExtends<?> withExtends) {
+            for (com.github.javaparser.ast.type.ClassOrInterfaceType ext : withExtends.getExtendedTypes()) {
+                parents.add(ext.getNameAsString());
+            }
+        }
+        if (typeDecl instanceof NodeWithImplements<?> withImplements) {
+            for (com.github.javaparser.ast.type.ClassOrInterfaceType imp : withImplements.getImplementedTypes()) {
+                parents.add(imp.getNameAsString());
+            }
+        }
+        return parents;
+    }
+
+    /**
+     * Chunk id of a method or constructor. It depends only on the declaration, not on the
+     * run or the position in the file, so overloads get distinct ids and an unchanged
+     * member keeps its id.
+     */
+    private static String memberChunkId(String ownerName, String memberName, String erasedParameters) {
+        return ownerName + "#" + memberName + "(" + erasedParameters + ")";
+    }
+
+    /**
+     * The id itself the first time it occurs in a file, id~2, id~3... after that. Only
+     * declarations Java would reject, or same-named local classes, repeat an id.
+     */
+    private static String uniqueChunkId(Map<String, Integer> chunkIds, String chunkId) {
+        int occurrence = chunkIds.merge(chunkId, 1, Integer::sum);
+        return occurrence == 1 ? chunkId : chunkId + "~" + occurrence;
+    }
+}
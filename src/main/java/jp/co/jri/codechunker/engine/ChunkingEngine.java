@@ -0,0 +1,136 @@
+package jp.co.jri.codechunker.engine;
+
+import jp.co.jri.codechunker.config.ApplicationProperties;
+import jp.co.jri.codechunker.config.JacksonConfig;
+import jp.co.jri.codechunker.engine.ChunkExtractor.ParsedSource;
+import jp.co.jri.codechunker.model.chunk.ChunkData;
+import jp.co.jri.codechunker.model.chunk.ChunkLevel;
+import jp.co.jri.codechunker.util.BuildModuleResolver;
+import jp.co.jri.codechunker.util.ChunkDataSerializer;
+import jp.co.jri.codechunker.util.FileFinder;
+import jp.co.jri.codechunker.util.MetricsCalculator;
+import jp.co.jri.codechunker.util.ParserProfile;
+import jp.co.jri.codechunker.util.SourceArchives;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * In-process chunking without Spring, an output directory or JSON files: sources go in,
+ * a lazy Stream of ChunkData comes out, with chunk ids, parent links and content hashes
+ * exactly as the CLI writes them. Files are parsed one at a time as the stream is consumed.
+ * The engine is thread-safe; close it to release the source archives it opened.
+ *
+ * <pre>
+ * try (ChunkingEngine engine = new ChunkingEngine(ChunkLevel.ALL_LEVELS);
+ *      Stream&lt;ChunkData&gt; chunks = engine.chunk(Paths.get("src/main/java"))) {
+ *     chunks.forEach(index::add);
+ * }
+ * </pre>
+ */
+public class ChunkingEngine implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChunkingEngine.class);
+
+    private final ApplicationProperties properties;
+    private final ChunkLevel level;
+    private final SourceArchives sourceArchives = new SourceArchives();
+    private final FileFinder fileFinder;
+    private final ChunkExtractor chunkExtractor;
+    private final ChunkDataSerializer chunkDataSerializer = new ChunkDataSerializer(new JacksonConfig().objectMapper());
+
+    public ChunkingEngine(ChunkLevel level) {
+        this(new ApplicationProperties(), level);
+    }
+
+    /**
+     * properties carries the same settings as code-chunker.* in application.yml (parser,
+     * lexical fallback, discovery and filters); the output settings are not used
+     */
+    public ChunkingEngine(ApplicationProperties properties, ChunkLevel level) {
+        this.properties = properties;
+        this.level = level;
+        this.fileFinder = new FileFinder(properties, new BuildModuleResolver(properties), sourceArchives);
+        this.chunkExtractor = new ChunkExtractor(properties, new MetricsCalculator(),
+                new ParserProfile(properties), sourceArchives);
+    }
+
+    /**
+     * Chunks a Java file, a project directory (discovered like the CLI does) or a source
+     * archive. Files that cannot be chunked are logged and skipped.
+     */
+    public Stream<ChunkData> chunk(Path path) throws IOException {
+        List<Path> javaFiles;
+        if (path.toString().endsWith(".java")) {
+            javaFiles = List.of(path);
+        } else {
+            javaFiles = fileFinder.findJavaFiles(path.toString(), new ArrayList<>(),
+                    properties.getFilter().getExcludePatterns());
+        }
+        return javaFiles.stream().flatMap(this::chunkFile);
+    }
+
+    /**
+     * Chunks one source held in memory; name becomes the filePath of its chunks
+     */
+    public Stream<ChunkData> chunk(String name, String source) {
+        return chunkSource(new SourceFile(name, source));
+    }
+
+    /**
+     * Chunks sources held in memory, reading the iterable lazily
+     */
+    public Stream<ChunkData> chunkSources(Iterable<SourceFile> sources) {
+        return StreamSupport.stream(sources.spliterator(), false).flatMap(this::chunkSource);
+    }
+
+    private Stream<ChunkData> chunkFile(Path javaFile) {
+        try {
+            ParsedSource source = chunkExtractor.parseFile(javaFile, false);
+            if (!source.isChunkable()) {
+                logger.warn("Skipping {}: {}", sourceArchives.describe(javaFile), source.getFailure());
+                return Stream.empty();
+            }
+            return finish(chunkExtractor.extract(source, javaFile, level), null);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not chunk " + javaFile, e);
+        }
+    }
+
+    private Stream<ChunkData> chunkSource(SourceFile sourceFile) {
+        try {
+            ParsedSource source = chunkExtractor.parseSource(sourceFile.getContent(), sourceFile.getName());
+            if (!source.isChunkable()) {
+                logger.warn("Skipping {}: {}", sourceFile.getName(), source.getFailure());
+                return Stream.empty();
+            }
+            return finish(chunkExtractor.extract(source, Paths.get(sourceFile.getName()), level),
+                    sourceFile.getName());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not chunk " + sourceFile.getName(), e);
+        }
+    }
+
+    private Stream<ChunkData> finish(List<ChunkData> chunks, String filePath) throws IOException {
+        for (ChunkData chunk : chunks) {
+            if (filePath != null) {
+                chunk.setFilePath(filePath);
+            }
+            chunk.setContentHash(chunkDataSerializer.contentHash(chunk));
+        }
+        return chunks.stream();
+    }
+
+    @Override
+    public void close() {
+        sourceArchives.close();
+    }
+}
@@ -0,0 +1,14 @@
+package jp.co.jri.codechunker.engine;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * A Java source held in memory; name identifies it in the chunks' filePath
+ */
+@Data
+@AllArgsConstructor
+public class SourceFile {
+    private String name;
+    private String content;
+}
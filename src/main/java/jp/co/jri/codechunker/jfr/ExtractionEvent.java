@@ -0,0 +1,31 @@
+package jp.co.jri.codechunker.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Extraction of the chunks of one level from a parsed file
+ */
+@Name("jp.co.jri.codechunker.Extraction")
+@Label("Extraction")
+@Category({"Code Chunker"})
+@Description("Extraction of the chunks of one level from a parsed file")
+@StackTrace(false)
+public class ExtractionEvent extends Event {
+    @Label("File")
+    public String file;
+
+    @Label("Level")
+    @Description("FILE, CLASS or METHOD")
+    public String level;
+
+    @Label("Chunk Count")
+    public int chunkCount;
+
+    @Label("Lexical")
+    public boolean lexical;
+}
@@ -0,0 +1,33 @@
+package jp.co.jri.codechunker.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Processing of one source file from parse to the last output file
+ */
+@Name("jp.co.jri.codechunker.File")
+@Label("File")
+@Category({"Code Chunker"})
+@Description("Processing of one source file from parse to the last output file")
+@StackTrace(false)
+public class FileEvent extends Event {
+    @Label("File")
+    public String file;
+
+    @Label("Size")
+    @DataAmount
+    public long size;
+
+    @Label("Chunk Count")
+    public int chunkCount;
+
+    @Label("Outcome")
+    @Description("The progress status: PROCESSED, LEXICAL, TIMEOUT, QUARANTINED or ERROR")
+    public String outcome;
+}
@@ -0,0 +1,26 @@
+package jp.co.jri.codechunker.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Read of a source file that bypasses the parser (lexical chunking)
+ */
+@Name("jp.co.jri.codechunker.FileRead")
+@Label("File Read")
+@Category({"Code Chunker"})
+@Description("Read of a source file that bypasses the parser (lexical chunking)")
+@StackTrace(false)
+public class FileReadEvent extends Event {
+    @Label("File")
+    public String file;
+
+    @Label("Size")
+    @DataAmount
+    public long size;
+}
@@ -0,0 +1,42 @@
+package jp.co.jri.codechunker.jfr;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Event;
+import jdk.jfr.Recording;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.util.List;
+
+/**
+ * Starts the JFR recording of --jfr: the JDK "profile" settings plus the chunker events.
+ * The recording is written to its destination when the JVM exits, so every exit path of
+ * the runner (including System.exit on errors) produces a complete file.
+ */
+public final class FlightRecording {
+
+    private static final Logger logger = LoggerFactory.getLogger(FlightRecording.class);
+
+    private static final List<Class<? extends Event>> EVENTS = List.of(
+            FileEvent.class, FileReadEvent.class, ParseEvent.class, ExtractionEvent.class,
+            SymbolsEvent.class, SerializationEvent.class);
+
+    private FlightRecording() {
+    }
+
+    public static Recording start(Path destination) throws IOException, ParseException {
+        Recording recording = new Recording(Configuration.getConfiguration("profile"));
+        recording.setName("codechunker");
+        for (Class<? extends Event> event : EVENTS) {
+            recording.enable(event).withoutThreshold();
+        }
+        recording.setDestination(destination);
+        recording.setDumpOnExit(true);
+        recording.start();
+        logger.info("Flight recording started, written to {} on exit", destination.toAbsolutePath());
+        return recording;
+    }
+}
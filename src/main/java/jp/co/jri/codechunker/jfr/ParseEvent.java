@@ -0,0 +1,30 @@
+package jp.co.jri.codechunker.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Parse of one source file or git blob, including a lexical fallback
+ */
+@Name("jp.co.jri.codechunker.Parse")
+@Label("Parse")
+@Category({"Code Chunker"})
+@Description("Parse of one source file or git blob, including a lexical fallback")
+@StackTrace(false)
+public class ParseEvent extends Event {
+    @Label("File")
+    public String file;
+
+    @Label("Size")
+    @DataAmount
+    public long size;
+
+    @Label("Outcome")
+    @Description("PARSED, LEXICAL, PARSE_ERROR or TIMEOUT")
+    public String outcome;
+}
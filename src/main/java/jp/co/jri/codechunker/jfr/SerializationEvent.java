@@ -0,0 +1,30 @@
+package jp.co.jri.codechunker.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Serialization of one output file, including the unchanged-output check and the write
+ */
+@Name("jp.co.jri.codechunker.Serialization")
+@Label("Serialization")
+@Category({"Code Chunker"})
+@Description("Serialization of one output file, including the unchanged-output check and the write")
+@StackTrace(false)
+public class SerializationEvent extends Event {
+    @Label("Output File")
+    public String file;
+
+    @Label("Size")
+    @DataAmount
+    public long size;
+
+    @Label("Outcome")
+    @Description("WRITTEN or UNCHANGED")
+    public String outcome;
+}
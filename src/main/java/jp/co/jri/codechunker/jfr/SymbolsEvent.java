@@ -0,0 +1,24 @@
+package jp.co.jri.codechunker.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Symbol extraction over a compilation unit
+ */
+@Name("jp.co.jri.codechunker.Symbols")
+@Label("Symbol Extraction")
+@Category({"Code Chunker"})
+@Description("Symbol extraction over a compilation unit")
+@StackTrace(false)
+public class SymbolsEvent extends Event {
+    @Label("File")
+    public String file;
+
+    @Label("Symbol Count")
+    public int symbolCount;
+}
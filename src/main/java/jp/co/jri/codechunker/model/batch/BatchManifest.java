@@ -0,0 +1,16 @@
+package jp.co.jri.codechunker.model.batch;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Batch mode manifest: the projects to chunk in one JVM run
+ */
+@Data
+public class BatchManifest {
+    private Integer threads; // shared worker pool size, overrides code-chunker.batch.threads
+    private Integer maxConcurrencyPerProject; // default cap of files in flight per project
+    private List<BatchProject> projects = new ArrayList<>();
+}
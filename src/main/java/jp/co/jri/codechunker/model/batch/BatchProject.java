@@ -0,0 +1,21 @@
+package jp.co.jri.codechunker.model.batch;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One project entry of a batch manifest
+ */
+@Data
+public class BatchProject {
+    private String name;
+    private String projectPath; // directory or source jar/zip
+    private String outputDir;
+    private String level; // CLASS, METHOD or ALL, defaults to code-chunker.chunk.default-level
+    private List<String> includePatterns = new ArrayList<>();
+    private List<String> excludePatterns = new ArrayList<>();
+    private List<String> sourceRoots = new ArrayList<>(); // scan only these directories, e.g. one build module
+    private Integer maxConcurrency; // overrides the manifest default for this project
+}
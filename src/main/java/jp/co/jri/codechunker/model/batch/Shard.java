@@ -0,0 +1,55 @@
+package jp.co.jri.codechunker.model.batch;
+
+import lombok.Data;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * One of count processes that split the files of a project, numbered from 1 ("2/4")
+ */
+@Data
+public class Shard {
+    private static final Pattern SPEC = Pattern.compile("(\\d+)/(\\d+)");
+    private static final Pattern FILE_SUFFIX = Pattern.compile("\\.shard-(\\d+)-of-(\\d+)(\\.[^.]+)$");
+
+    private final int index;
+    private final int count;
+
+    public static Shard parse(String spec) {
+        Matcher matcher = SPEC.matcher(spec.trim());
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException("Shard must be i/N, e.g. 1/4: " + spec);
+        }
+        Shard shard = new Shard(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2)));
+        if (shard.count < 1 || shard.index < 1 || shard.index > shard.count) {
+            throw new IllegalArgumentException("Shard index must be between 1 and " + shard.count + ": " + spec);
+        }
+        return shard;
+    }
+
+    /**
+     * Name of a run file (summary, manifest, journal) of this shard, e.g.
+     * project-summary.shard-2-of-4.json; the name itself without a shard
+     */
+    public static String fileName(Shard shard, String name) {
+        if (shard == null) {
+            return name;
+        }
+        int dot = name.lastIndexOf('.');
+        return name.substring(0, dot) + ".shard-" + shard.index + "-of-" + shard.count + name.substring(dot);
+    }
+
+    /**
+     * The shard a run file belongs to, null when the name has no shard suffix
+     */
+    public static Shard ofFileName(String name) {
+        Matcher matcher = FILE_SUFFIX.matcher(name);
+        return matcher.find() ? new Shard(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2))) : null;
+    }
+
+    @Override
+    public String toString() {
+        return index + "/" + count;
+    }
+}
@@ -0,0 +1,15 @@
+package jp.co.jri.codechunker.model.checkpoint;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * First line of a progress journal; a resumed run must match it
+ */
+@Data
+public class CheckpointHeader {
+    private String projectPath;
+    private String analysisType;
+    private LocalDateTime startedAt;
+}
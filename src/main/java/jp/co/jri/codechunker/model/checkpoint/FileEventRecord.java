@@ -0,0 +1,18 @@
+package jp.co.jri.codechunker.model.checkpoint;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * One line of the per-file event log (--event-log)
+ */
+@Data
+public class FileEventRecord {
+    private LocalDateTime timestamp;
+    private String file;
+    private long bytes;
+    private int chunks;
+    private long parseMillis;
+    private String status; // as in ProgressRecord
+}
@@ -0,0 +1,20 @@
+package jp.co.jri.codechunker.model.checkpoint;
+
+import jp.co.jri.codechunker.model.summary.ChunkRef;
+import jp.co.jri.codechunker.model.summary.CodeSize;
+import jp.co.jri.codechunker.model.summary.OutputFileInfo;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * One finished file in the progress journal
+ */
+@Data
+public class ProgressRecord {
+    private String file;
+    private String status; // "PROCESSED", "LEXICAL", "ERROR", "TIMEOUT" or "QUARANTINED"
+    private List<OutputFileInfo> outputs;
+    private List<ChunkRef> chunks; // rebuilds the chunk manifest when resuming
+    private CodeSize codeSize;
+}
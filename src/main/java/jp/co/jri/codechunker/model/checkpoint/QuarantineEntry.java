@@ -0,0 +1,17 @@
+package jp.co.jri.codechunker.model.checkpoint;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * Failure history of a file; the size and modification time detect when it has been edited
+ */
+@Data
+public class QuarantineEntry {
+    private int failures;
+    private String lastReason;
+    private LocalDateTime lastFailure;
+    private long fileSize;
+    private long lastModified;
+}
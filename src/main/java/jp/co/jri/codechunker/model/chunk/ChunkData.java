@@ -5,6 +5,7 @@ import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonPropertyOrder;
 import jp.co.jri.codechunker.model.chunk.data.*;
+import jp.co.jri.codechunker.model.summary.CodeSize;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -18,13 +19,17 @@ import java.util.List;
 @AllArgsConstructor
 @JsonInclude(JsonInclude.Include.NON_NULL)
 @JsonPropertyOrder({
-        "language", "filePath", "chunkId", "kind", "name", "parent", "signature",
-        "location", "imports", "modifiers", "symbols", "code", "notes"
+        "language", "filePath", "chunkId", "parentChunkId", "contentHash", "kind", "name", "parent", "signature",
+        "location", "imports", "modifiers", "symbols", "metrics", "code", "notes"
 })
 public class ChunkData {
     @JsonIgnore
     private String fullyQualifiedName;
 
+    // Bytes and tokens of the code before and after normalization, summed into the summary
+    @JsonIgnore
+    private CodeSize codeSize;
+
     @JsonProperty("language")
     private String language;
 
@@ -34,6 +39,14 @@ public class ChunkData {
     @JsonProperty("chunkId")
     private String chunkId;
 
+    // Only set in all-levels mode: the file chunk of a class, the class chunk of a method
+    @JsonProperty("parentChunkId")
+    private String parentChunkId;
+
+    // SHA-256 of the chunk's content (every field but filePath), changes only when the chunk does
+    @JsonProperty("contentHash")
+    private String contentHash;
+
     @JsonProperty("kind")
     private Integer kind;
 
@@ -58,6 +71,9 @@ public class ChunkData {
     @JsonProperty("symbols")
     private Symbols symbols;
 
+    @JsonProperty("metrics")
+    private Metrics metrics;
+
     @JsonProperty("code")
     private String code;
 
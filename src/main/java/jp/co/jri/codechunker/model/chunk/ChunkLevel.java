@@ -1,24 +1,53 @@
 package jp.co.jri.codechunker.model.chunk;
 
 public enum ChunkLevel {
-    CLASS_LEVEL("CLASS"),
-    METHOD_LEVEL("METHOD");
+    CLASS_LEVEL("CLASS", "CLASS_ONLY"),
+    METHOD_LEVEL("METHOD", "METHODS_ONLY"),
+    // File, class and method chunks from one parse, linked by parentChunkId
+    ALL_LEVELS("ALL", "ALL_LEVELS");
 
     private final String value;
+    private final String analysisType;
 
-    ChunkLevel(String value) {
+    ChunkLevel(String value, String analysisType) {
         this.value = value;
+        this.analysisType = analysisType;
     }
 
     public String getValue() {
         return value;
     }
 
+    /**
+     * Analysis type recorded in the project summary and the checkpoint header
+     */
+    public String getAnalysisType() {
+        return analysisType;
+    }
+
+    public boolean includesClasses() {
+        return this != METHOD_LEVEL;
+    }
+
+    public boolean includesMethods() {
+        return this != CLASS_LEVEL;
+    }
+
     public static ChunkLevel fromString(String value) {
         return switch (value.toUpperCase()) {
             case "CLASS" -> CLASS_LEVEL;
             case "METHOD" -> METHOD_LEVEL;
+            case "ALL" -> ALL_LEVELS;
             default -> throw new IllegalArgumentException("Unknown chunk level: " + value);
         };
     }
-}
\ No newline at end of file
+
+    public static ChunkLevel fromAnalysisType(String analysisType) {
+        for (ChunkLevel level : values()) {
+            if (level.analysisType.equals(analysisType)) {
+                return level;
+            }
+        }
+        throw new IllegalArgumentException("Unknown analysis type: " + analysisType);
+    }
+}
@@ -0,0 +1,25 @@
+package jp.co.jri.codechunker.model.chunk.data;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@JsonPropertyOrder({
+        "cyclomaticComplexity", "cognitiveComplexity", "loc", "ncloc", "maxNestingDepth", "parameterCount"
+})
+public class Metrics {
+    private Integer cyclomaticComplexity;
+    private Integer cognitiveComplexity;
+    private Integer loc;
+    private Integer ncloc;
+    private Integer maxNestingDepth;
+    private Integer parameterCount;
+}
@@ -4,11 +4,11 @@ import jp.co.jri.codechunker.model.chunk.ChunkData;
 import lombok.Builder;
 import lombok.Data;
 
-import java.time.LocalDateTime;
 import java.util.List;
 
 /**
- * Inner class for methods grouped by class
+ * Inner class for methods grouped by class. Holds no run metadata such as timestamps:
+ * chunk output must be byte-reproducible, the run timestamp lives in the summary only.
  */
 @Data
 @Builder
@@ -18,6 +18,5 @@ public class ClassInfo {
     private String packageName;
     private String type;
     private String sourceFile;
-    private LocalDateTime timestamp;
     private List<ChunkData> methods;
 }
\ No newline at end of file
@@ -1,5 +1,7 @@
 package jp.co.jri.codechunker.model.summary;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+import jp.co.jri.codechunker.model.chunk.ChunkLevel;
 import lombok.Data;
 
 import java.time.LocalDateTime;
@@ -9,7 +11,7 @@ import java.util.List;
 @Data
 public class AnalysisSummary {
     private String projectPath;
-    private String analysisType; // CLASS_ONLY or METHODS_ONLY
+    private String analysisType; // CLASS_ONLY, METHODS_ONLY or ALL_LEVELS
     private String outputDirectory;
     private LocalDateTime timestamp;
     private Integer totalFiles;
@@ -19,6 +21,38 @@ public class AnalysisSummary {
     private Integer errorFiles;
     private List<OutputFileInfo> outputFiles;
 
+    // Only set when some files were skipped or cancelled
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private List<String> quarantinedFiles;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Integer timedOutFiles;
+
+    // Only set when some files were chunked by the lexical scanner instead of the parser
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Integer lexicalFiles;
+
+    // Bytes and estimated tokens of the emitted code before and after normalization
+    // (code-chunker.chunk); not set when code snippets are disabled
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private CodeSize codeSize;
+
+    // Only set in git changed-file mode
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String baseCommit;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String headCommit;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private List<Tombstone> tombstones;
+
+    // Only set in the partial summary of a shard (--shard i/N): the files of the whole
+    // project and a fingerprint of their paths and sizes, which every shard must agree on
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String shard;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Integer discoveredFiles;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String discoveryFingerprint;
+
     public AnalysisSummary() {
         this.outputFiles = new ArrayList<>();
         this.timestamp = LocalDateTime.now();
@@ -34,4 +68,42 @@ public class AnalysisSummary {
         info.setFileType(fileType);
         this.outputFiles.add(info);
     }
+
+    /**
+     * Sets totalClasses and totalMethods from the output files. At method level a class
+     * counts once per methods entry, as only classes with methods produce output.
+     */
+    public void countOutputs(ChunkLevel level) {
+        int classes = 0;
+        int methods = 0;
+        for (OutputFileInfo info : outputFiles) {
+            if ("CLASS".equals(info.getFileType())) {
+                classes++;
+            } else if ("METHODS".equals(info.getFileType())) {
+                methods += info.getCount();
+                if (level == ChunkLevel.METHOD_LEVEL) {
+                    classes++;
+                }
+            }
+        }
+        this.totalClasses = classes;
+        this.totalMethods = level.includesMethods() ? methods : null;
+    }
+
+    public void addCodeSize(CodeSize size) {
+        if (size == null) {
+            return;
+        }
+        if (this.codeSize == null) {
+            this.codeSize = new CodeSize();
+        }
+        this.codeSize.add(size);
+    }
+
+    public void addTombstone(Tombstone tombstone) {
+        if (this.tombstones == null) {
+            this.tombstones = new ArrayList<>();
+        }
+        this.tombstones.add(tombstone);
+    }
 }
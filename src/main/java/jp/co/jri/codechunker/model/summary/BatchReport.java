@@ -0,0 +1,30 @@
+package jp.co.jri.codechunker.model.summary;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Aggregate report of a batch run
+ */
+@Data
+public class BatchReport {
+    private LocalDateTime timestamp;
+    private Integer threads;
+    private Integer totalProjects;
+    private Integer failedProjects;
+    private Integer totalFiles;
+    private Integer processedFiles;
+    private Integer errorFiles;
+    private Integer totalClasses;
+    private Integer totalMethods;
+    private Long elapsedMillis;
+    private List<ProjectReport> projects;
+
+    public BatchReport() {
+        this.projects = new ArrayList<>();
+        this.timestamp = LocalDateTime.now();
+    }
+}
@@ -0,0 +1,17 @@
+package jp.co.jri.codechunker.model.summary;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Every chunk of a full run, sorted by chunk id; the next run's change set is computed against it
+ */
+@Data
+public class ChunkManifest {
+    private String analysisType;
+    private LocalDateTime timestamp;
+    private List<ChunkRef> chunks = new ArrayList<>();
+}
@@ -0,0 +1,18 @@
+package jp.co.jri.codechunker.model.summary;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A chunk written by a run: its id, content hash, output file and the source file it came from
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChunkRef {
+    private String chunkId;
+    private String contentHash;
+    private String fileName;
+    private String sourceFile; // as in ProgressRecord.file; null in manifests of older runs
+}
@@ -0,0 +1,25 @@
+package jp.co.jri.codechunker.model.summary;
+
+import lombok.Data;
+
+/**
+ * Size of the emitted code fields as printed (raw) and after normalization
+ * (code-chunker.chunk.*), in UTF-8 bytes and estimated tokens
+ */
+@Data
+public class CodeSize {
+    private long rawBytes;
+    private long bytes;
+    private long rawTokens;
+    private long tokens;
+
+    public void add(CodeSize other) {
+        if (other == null) {
+            return;
+        }
+        rawBytes += other.rawBytes;
+        bytes += other.bytes;
+        rawTokens += other.rawTokens;
+        tokens += other.tokens;
+    }
+}
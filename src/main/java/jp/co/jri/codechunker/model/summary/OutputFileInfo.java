@@ -8,5 +8,5 @@ public class OutputFileInfo {
     private String fullyQualifiedName;
     private String type;
     private Integer count;
-    private String fileType; // "CLASS" or "METHODS"
+    private String fileType; // "FILE", "CLASS" or "METHODS"
 }
\ No newline at end of file
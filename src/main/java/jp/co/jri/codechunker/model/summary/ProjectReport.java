@@ -0,0 +1,21 @@
+package jp.co.jri.codechunker.model.summary;
+
+import lombok.Data;
+
+/**
+ * Per-project line of a batch report
+ */
+@Data
+public class ProjectReport {
+    private String name;
+    private String projectPath;
+    private String outputDirectory;
+    private String status; // "COMPLETED" or "FAILED"
+    private String error;
+    private Integer totalFiles;
+    private Integer processedFiles;
+    private Integer errorFiles;
+    private Integer totalClasses;
+    private Integer totalMethods;
+    private Long elapsedMillis;
+}
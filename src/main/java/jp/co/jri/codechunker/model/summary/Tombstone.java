@@ -0,0 +1,16 @@
+package jp.co.jri.codechunker.model.summary;
+
+import lombok.Data;
+
+/**
+ * A chunk that existed at the base commit but no longer exists at the head commit
+ */
+@Data
+public class Tombstone {
+    private String chunkId;
+    private String fullyQualifiedName;
+    private String fileName;
+    private String sourceFile;
+    private String fileType; // "CLASS" or "METHODS"
+    private String changeType; // "DELETED", "MODIFIED" or "RENAMED" (change of the source file)
+}
@@ -1,16 +1,29 @@
 package jp.co.jri.codechunker.runner;
 
 import jp.co.jri.codechunker.config.ApplicationProperties;
+import jp.co.jri.codechunker.jfr.FlightRecording;
 import jp.co.jri.codechunker.model.chunk.ChunkLevel;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import jp.co.jri.codechunker.model.batch.BatchManifest;
+import jp.co.jri.codechunker.model.batch.Shard;
 import jp.co.jri.codechunker.model.summary.AnalysisSummary;
+import jp.co.jri.codechunker.model.summary.BatchReport;
+import jp.co.jri.codechunker.model.summary.CodeSize;
 import jp.co.jri.codechunker.model.summary.OutputFileInfo;
+import jp.co.jri.codechunker.model.summary.ProjectReport;
+import jp.co.jri.codechunker.service.BatchChunkerService;
+import jp.co.jri.codechunker.service.DatabaseSinkService;
 import jp.co.jri.codechunker.service.JavaCodeChunkerService;
+import jp.co.jri.codechunker.service.ProjectWatcher;
+import jp.co.jri.codechunker.service.ShardMergeService;
+import jp.co.jri.codechunker.util.FileEventLog;
 import lombok.RequiredArgsConstructor;
 import org.apache.commons.cli.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.logging.LogLevel;
+import org.springframework.boot.logging.LoggingSystem;
 import org.springframework.stereotype.Component;
 
 import java.nio.file.Paths;
@@ -22,6 +35,11 @@ import java.util.List;
 public class CommandLineRunnerImpl implements CommandLineRunner {
     private static final Logger logger = LoggerFactory.getLogger(CommandLineRunnerImpl.class);
     private final JavaCodeChunkerService javaCodeChunkerService;
+    private final ProjectWatcher projectWatcher;
+    private final BatchChunkerService batchChunkerService;
+    private final ShardMergeService shardMergeService;
+    private final DatabaseSinkService databaseSinkService;
+    private final FileEventLog fileEventLog;
     private final ApplicationProperties properties;
     private final ObjectMapper objectMapper;
 
@@ -39,6 +57,46 @@ public class CommandLineRunnerImpl implements CommandLineRunner {
                 return;
             }
 
+            if (cmd.hasOption("quiet") || properties.getLogging().isQuiet()) {
+                // High-throughput mode - only warnings and errors, no per-file console output
+                LoggingSystem.get(getClass().getClassLoader()).setLogLevel("jp.co.jri.codechunker", LogLevel.WARN);
+            }
+
+            String eventLog = cmd.getOptionValue("event-log", properties.getLogging().getEventLog());
+            if (eventLog != null && !eventLog.isBlank()) {
+                fileEventLog.open(Paths.get(eventLog));
+            }
+
+            if (cmd.hasOption("jfr")) {
+                FlightRecording.start(Paths.get(cmd.getOptionValue("jfr")));
+            }
+
+            if (cmd.hasOption("layout")) {
+                properties.getOutput().setLayout(cmd.getOptionValue("layout"));
+            }
+
+            if (cmd.hasOption("change-set")) {
+                properties.getOutput().setChangeSet(true);
+            }
+
+            if (cmd.hasOption("batch")) {
+                // Batch mode - many projects in one JVM on a shared worker pool
+                Integer threads = cmd.hasOption("threads") ? Integer.valueOf(cmd.getOptionValue("threads")) : null;
+                BatchManifest manifest = batchChunkerService.readManifest(cmd.getOptionValue("batch"));
+                BatchReport report = batchChunkerService.runBatch(
+                        manifest, threads, cmd.getOptionValue("output", "output"));
+                printBatchReport(report);
+                return;
+            }
+
+            if (cmd.hasOption("merge")) {
+                // Merge mode - combine the partial summaries and manifests of a sharded run
+                AnalysisSummary summary = shardMergeService.mergeShards(
+                        List.of(cmd.getOptionValues("merge")), cmd.getOptionValue("output", "output"));
+                printPerClassSummary(summary, ChunkLevel.fromAnalysisType(summary.getAnalysisType()));
+                return;
+            }
+
             // Get required arguments
             String projectPath = cmd.getOptionValue("project");
 
@@ -55,8 +113,8 @@ public class CommandLineRunnerImpl implements CommandLineRunner {
             }
 
             // Configure analysis
-            ChunkLevel level = cmd.hasOption("method") ?
-                    ChunkLevel.METHOD_LEVEL :
+            ChunkLevel level = cmd.hasOption("all-levels") ? ChunkLevel.ALL_LEVELS :
+                    cmd.hasOption("method") ? ChunkLevel.METHOD_LEVEL :
                     ChunkLevel.fromString(properties.getChunk().getDefaultLevel());
 
             List<String> includePatterns = new ArrayList<>();
@@ -75,6 +133,19 @@ public class CommandLineRunnerImpl implements CommandLineRunner {
             logger.info("  Include patterns: {}", includePatterns.isEmpty() ? "none" : includePatterns);
             logger.info("  Exclude patterns: {}", excludePatterns.isEmpty() ? "none" : excludePatterns);
 
+            if (cmd.hasOption("db")) {
+                // Database mode - upsert the chunks into an embedded database instead of JSON files
+                String database = cmd.getOptionValue("db", properties.getDatabase().getUrl());
+                if (database == null || database.isBlank()) {
+                    throw new IllegalArgumentException("--db needs a JDBC URL or database file, or code-chunker.database.url");
+                }
+                AnalysisSummary summary = databaseSinkService.writeDatabase(projectPath, level,
+                        includePatterns, excludePatterns, DatabaseSinkService.jdbcUrl(database));
+                printPerClassSummary(summary, level);
+                logger.info("Analysis completed successfully!");
+                return;
+            }
+
             // Check output mode
             String outputPath = cmd.getOptionValue("output");
             boolean perClassMode = cmd.hasOption("per-class");
@@ -83,24 +154,52 @@ public class CommandLineRunnerImpl implements CommandLineRunner {
                 // Per-class output mode - one JSON file per class
                 if (outputPath == null) {
                     // Use default output directory based on analysis type
-                    String defaultDir = level == ChunkLevel.METHOD_LEVEL ?
-                            "output/methods-per-class" : "output/classes-per-class";
+                    String defaultDir = switch (level) {
+                        case METHOD_LEVEL -> "output/methods-per-class";
+                        case CLASS_LEVEL -> "output/classes-per-class";
+                        case ALL_LEVELS -> "output/all-levels";
+                    };
                     outputPath = defaultDir;
                 }
 
                 logger.info("  Output mode: One JSON file per class");
                 logger.info("  Output directory: {}", outputPath);
 
+                Shard shard = cmd.hasOption("shard") ? Shard.parse(cmd.getOptionValue("shard")) : null;
+                if (shard != null && (cmd.hasOption("watch") || cmd.hasOption("modules") || cmd.hasOption("git-base"))) {
+                    throw new IllegalArgumentException("--shard only applies to a full run, not to --watch, --modules or --git-base");
+                }
+
+                if (cmd.hasOption("watch")) {
+                    // Watch mode - keep the output up to date until interrupted (Ctrl+C)
+                    logger.info("  Watch mode: re-chunking changed files on save");
+                    projectWatcher.watch(projectPath, level, includePatterns, excludePatterns, outputPath);
+                    return;
+                }
+
+                if (cmd.hasOption("modules")) {
+                    // Module mode - each build module is a batch project with its own output subdirectory
+                    Integer threads = cmd.hasOption("threads") ? Integer.valueOf(cmd.getOptionValue("threads")) : null;
+                    List<String> extraExcludes = cmd.hasOption("exclude") ? List.of(cmd.getOptionValues("exclude")) : List.of();
+                    BatchManifest manifest = batchChunkerService.moduleManifest(
+                            projectPath, level, includePatterns, extraExcludes, outputPath);
+                    printBatchReport(batchChunkerService.runBatch(manifest, threads, outputPath));
+                    return;
+                }
+
                 AnalysisSummary summary;
 
-                if (level == ChunkLevel.CLASS_LEVEL) {
-                    // Generate class-only files
-                    summary = javaCodeChunkerService.generateClassFiles(
-                            projectPath, includePatterns, excludePatterns, outputPath);
+                if (cmd.hasOption("git-base")) {
+                    // Changed-file mode - only files changed between two commits
+                    String headRevision = cmd.getOptionValue("git-head", "HEAD");
+                    logger.info("  Git diff: {}..{}", cmd.getOptionValue("git-base"), headRevision);
+                    summary = javaCodeChunkerService.generateChangedFiles(
+                            projectPath, cmd.getOptionValue("git-base"), headRevision, level,
+                            includePatterns, excludePatterns, outputPath);
                 } else {
-                    // Generate method-only files
-                    summary = javaCodeChunkerService.generateMethodFiles(
-                            projectPath, includePatterns, excludePatterns, outputPath);
+                    // Generate class-only or method-only files, optionally continuing an interrupted run
+                    summary = javaCodeChunkerService.generateFiles(
+                            level, projectPath, includePatterns, excludePatterns, outputPath, cmd.hasOption("resume"), shard);
                 }
 
                 printPerClassSummary(summary, level);
@@ -118,6 +217,8 @@ public class CommandLineRunnerImpl implements CommandLineRunner {
         } catch (Exception e) {
             logger.error("Error during analysis: {}", e.getMessage(), e);
             System.exit(1);
+        } finally {
+            fileEventLog.close();
         }
     }
 
@@ -128,8 +229,7 @@ public class CommandLineRunnerImpl implements CommandLineRunner {
                 .longOpt("project")
                 .hasArg()
                 .argName("PATH")
-                .desc("Path to Java project directory (required)")
-                .required()
+                .desc("Path to Java project directory or source jar/zip (required unless --batch is used)")
                 .build());
 
         options.addOption(Option.builder("o")
@@ -144,18 +244,23 @@ public class CommandLineRunnerImpl implements CommandLineRunner {
                 .desc("Analyze at method level (default: class level)")
                 .build());
 
+        options.addOption(Option.builder("a")
+                .longOpt("all-levels")
+                .desc("Emit file, class and method chunks from one parse, linked by parent chunk ids")
+                .build());
+
         options.addOption(Option.builder("i")
                 .longOpt("include")
                 .hasArg()
                 .argName("PATTERN")
-                .desc("Include files matching regex pattern (can be used multiple times)")
+                .desc("Include files whose path in the project (e.g. /src/main/java/a/A.java) matches regex pattern (can be used multiple times)")
                 .build());
 
         options.addOption(Option.builder("e")
                 .longOpt("exclude")
                 .hasArg()
                 .argName("PATTERN")
-                .desc("Exclude files matching regex pattern (can be used multiple times)")
+                .desc("Exclude files whose path in the project (e.g. /src/main/java/a/A.java) matches regex pattern (can be used multiple times)")
                 .build());
 
         options.addOption(Option.builder("pc")
@@ -163,6 +268,102 @@ public class CommandLineRunnerImpl implements CommandLineRunner {
                 .desc("Generate one JSON file per class")
                 .build());
 
+        options.addOption(Option.builder("gb")
+                .longOpt("git-base")
+                .hasArg()
+                .argName("REV")
+                .desc("Only analyze Java files changed since this commit (enables git changed-file mode)")
+                .build());
+
+        options.addOption(Option.builder("gh")
+                .longOpt("git-head")
+                .hasArg()
+                .argName("REV")
+                .desc("Head commit for git changed-file mode (default: HEAD)")
+                .build());
+
+        options.addOption(Option.builder("w")
+                .longOpt("watch")
+                .desc("Keep watching the project and re-chunk files as they change")
+                .build());
+
+        options.addOption(Option.builder("b")
+                .longOpt("batch")
+                .hasArg()
+                .argName("MANIFEST")
+                .desc("Chunk all projects listed in a JSON manifest in one run (report goes to --output)")
+                .build());
+
+        options.addOption(Option.builder()
+                .longOpt("modules")
+                .desc("Chunk each Maven/Gradle module in parallel into its own output subdirectory (per-class mode)")
+                .build());
+
+        options.addOption(Option.builder("t")
+                .longOpt("threads")
+                .hasArg()
+                .argName("N")
+                .desc("Worker threads for batch mode (default: number of processors)")
+                .build());
+
+        options.addOption(Option.builder("l")
+                .longOpt("layout")
+                .hasArg()
+                .argName("LAYOUT")
+                .desc("Output layout: flat, package or hash subdirectories with a chunk index (default: flat)")
+                .build());
+
+        options.addOption(Option.builder()
+                .longOpt("change-set")
+                .desc("Write change-set.json with the chunks added, modified and deleted since the previous run")
+                .build());
+
+        options.addOption(Option.builder()
+                .longOpt("shard")
+                .hasArg()
+                .argName("I/N")
+                .desc("Chunk only shard I of N (e.g. 2/4) and save a partial summary; run all N, then --merge")
+                .build());
+
+        options.addOption(Option.builder()
+                .longOpt("merge")
+                .hasArg()
+                .argName("DIR")
+                .desc("Merge the shard summaries and manifests found in DIR into --output (can be used multiple times)")
+                .build());
+
+        options.addOption(Option.builder()
+                .longOpt("db")
+                .hasArg()
+                .optionalArg(true)
+                .argName("URL|FILE")
+                .desc("Upsert chunks and the summary into an H2 database instead of JSON files (default: code-chunker.database.url)")
+                .build());
+
+        options.addOption(Option.builder("r")
+                .longOpt("resume")
+                .desc("Continue an interrupted run from its last checkpoint in the output directory")
+                .build());
+
+        options.addOption(Option.builder()
+                .longOpt("jfr")
+                .hasArg()
+                .argName("FILE")
+                .desc("Record a JDK Flight Recorder file with per-file parse, extraction and serialization events")
+                .build());
+
+        options.addOption(Option.builder()
+                .longOpt("event-log")
+                .hasArg()
+                .argName("FILE")
+                .desc("Append one JSON line per processed file (path, bytes, chunks, parse ms, status) to FILE")
+                .build());
+
+        options.addOption(Option.builder("q")
+                .longOpt("quiet")
+                .desc("Log only warnings and errors, for high-throughput runs; the summary is still printed")
+                .build());
+
         options.addOption(Option.builder("h")
                 .longOpt("help")
                 .desc("Show this help message")
@@ -171,6 +372,30 @@ public class CommandLineRunnerImpl implements CommandLineRunner {
         return options;
     }
 
+    private void printBatchReport(BatchReport report) {
+        String separator = "=".repeat(60);
+
+        System.out.println(separator);
+        System.out.println("BATCH COMPLETED");
+        System.out.println(separator);
+
+        System.out.printf("  Projects: %d (%d failed)%n", report.getTotalProjects(), report.getFailedProjects());
+        System.out.printf("  Worker Threads: %d%n", report.getThreads());
+        System.out.printf("  Total Files Scanned: %d%n", report.getTotalFiles());
+        System.out.printf("  Processed Files: %d%n", report.getProcessedFiles());
+        System.out.printf("  Files with Errors: %d%n", report.getErrorFiles());
+        System.out.printf("  Elapsed: %d ms%n", report.getElapsedMillis());
+
+        System.out.println("\nProjects:");
+        for (ProjectReport project : report.getProjects()) {
+            System.out.printf("  - %s [%s] %s%n", project.getName(), project.getStatus(),
+                    project.getError() != null ? project.getError() :
+                            String.format("%d files, %d ms -> %s",
+                                    project.getProcessedFiles(), project.getElapsedMillis(), project.getOutputDirectory()));
+        }
+        System.out.println(separator);
+    }
+
     private void printPerClassSummary(AnalysisSummary summary, ChunkLevel level) {
         String separator = "=".repeat(60);
 
@@ -186,19 +411,41 @@ public class CommandLineRunnerImpl implements CommandLineRunner {
         System.out.printf("  Total Files Scanned: %d%n", summary.getTotalFiles());
         System.out.printf("  Processed Files: %d%n", summary.getProcessedFiles());
         System.out.printf("  Files with Errors: %d%n", summary.getErrorFiles());
-        System.out.printf("  Total Output Files: %d%n", summary.getTotalClasses());
+        if (summary.getTimedOutFiles() != null) {
+            System.out.printf("  Timed Out Files: %d%n", summary.getTimedOutFiles());
+        }
+        if (summary.getQuarantinedFiles() != null) {
+            System.out.printf("  Quarantined Files: %d%n", summary.getQuarantinedFiles().size());
+        }
+        System.out.printf("  Total Output Files: %d%n", summary.getOutputFiles().size());
 
-        if (level == ChunkLevel.METHOD_LEVEL) {
+        if (level == ChunkLevel.ALL_LEVELS) {
+            System.out.printf("  Total Classes: %d%n", summary.getTotalClasses());
+        }
+        if (level.includesMethods()) {
             System.out.printf("  Total Methods: %d%n", summary.getTotalMethods());
         }
+        if (summary.getCodeSize() != null) {
+            CodeSize size = summary.getCodeSize();
+            System.out.printf("  Code Bytes: %d -> %d%n", size.getRawBytes(), size.getBytes());
+            System.out.printf("  Code Tokens (est.): %d -> %d%n", size.getRawTokens(), size.getTokens());
+        }
+
+        if (summary.getBaseCommit() != null) {
+            System.out.printf("  Base Commit: %s%n", summary.getBaseCommit());
+            System.out.printf("  Head Commit: %s%n", summary.getHeadCommit());
+            System.out.printf("  Tombstones: %d%n", summary.getTombstones().size());
+        }
 
         System.out.println("\nGenerated JSON Files:");
         int count = 0;
         for (OutputFileInfo fileInfo : summary.getOutputFiles()) {
             if (count < 10) { // Show first 10 files
-                String countInfo = level == ChunkLevel.METHOD_LEVEL ?
-                        String.format(" (%d methods)", fileInfo.getCount()) :
-                        String.format(" (class)");
+                String countInfo = switch (fileInfo.getFileType()) {
+                    case "METHODS" -> String.format(" (%d methods)", fileInfo.getCount());
+                    case "FILE" -> String.format(" (file, %d types)", fileInfo.getCount());
+                    default -> " (class)";
+                };
                 System.out.printf("  - %s -> %s [%s]%s%n",
                         fileInfo.getFileName(),
                         fileInfo.getFullyQualifiedName(),
@@ -0,0 +1,443 @@
+package jp.co.jri.codechunker.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jp.co.jri.codechunker.config.ApplicationProperties;
+import jp.co.jri.codechunker.model.batch.BatchManifest;
+import jp.co.jri.codechunker.model.batch.BatchProject;
+import jp.co.jri.codechunker.model.chunk.ChunkLevel;
+import jp.co.jri.codechunker.model.summary.AnalysisSummary;
+import jp.co.jri.codechunker.model.summary.BatchReport;
+import jp.co.jri.codechunker.model.summary.CodeSize;
+import jp.co.jri.codechunker.model.summary.OutputFileInfo;
+import jp.co.jri.codechunker.model.summary.ProjectReport;
+import jp.co.jri.codechunker.util.BuildModuleResolver;
+import jp.co.jri.codechunker.util.FileFinder;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Chunks many projects in one JVM on a shared worker pool.
+ * Files are handed out round-robin across projects, and within each project largest first
+ * (code-chunker.batch.longest-first), so the run does not end with a few huge files on one
+ * thread while the other cores idle. Each project also has a cap on the number of its files
+ * in flight, so one large repository cannot starve the others. The pool is a fork/join pool: workers that run out of
+ * files steal the per-type subtasks of long files still being chunked.
+ */
+@Service
+@RequiredArgsConstructor
+public class BatchChunkerService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BatchChunkerService.class);
+    private final JavaCodeChunkerService javaCodeChunkerService;
+    private final FileFinder fileFinder;
+    private final ObjectMapper objectMapper;
+    private final ApplicationProperties properties;
+    private final BuildModuleResolver buildModuleResolver;
+
+    /**
+     * Reads a JSON batch manifest
+     */
+    public BatchManifest readManifest(String manifestPath) throws IOException {
+        return objectMapper.readValue(new File(manifestPath), BatchManifest.class);
+    }
+
+    /**
+     * Builds a manifest with one project per module of a Maven or Gradle build. Each module
+     * scans only its source roots and writes to its own subdirectory of outputDir (the root
+     * module to _root), so modules are scheduled and partitioned independently.
+     */
+    public BatchManifest moduleManifest(String projectPath, ChunkLevel level, List<String> includePatterns,
+                                        List<String> excludePatterns, String outputDir) {
+        List<BuildModuleResolver.SourceModule> modules = buildModuleResolver.resolve(Paths.get(projectPath));
+        if (modules == null) {
+            throw new IllegalArgumentException("No pom.xml or settings.gradle found in " + projectPath);
+        }
+        if (modules.isEmpty()) {
+            throw new IllegalArgumentException("No module with a standard source root found in " + projectPath
+                    + ": run without --modules to search the whole directory");
+        }
+
+        BatchManifest manifest = new BatchManifest();
+        for (BuildModuleResolver.SourceModule module : modules) {
+            BatchProject project = new BatchProject();
+            project.setName(module.getName());
+            project.setProjectPath(module.getDirectory().toString());
+            project.setOutputDir(Paths.get(outputDir, ".".equals(module.getName()) ? "_root" : module.getName()).toString());
+            project.setLevel(level.getValue());
+            project.setIncludePatterns(new ArrayList<>(includePatterns));
+            project.setExcludePatterns(new ArrayList<>(excludePatterns));
+            for (Path sourceRoot : module.getSourceRoots()) {
+                project.getSourceRoots().add(sourceRoot.toString());
+            }
+            manifest.getProjects().add(project);
+        }
+        return manifest;
+    }
+
+    /**
+     * Runs every project of the manifest, writes each project's summary to its output
+     * directory and the aggregate report to batch-report.json in reportDir
+     */
+    public BatchReport runBatch(BatchManifest manifest, Integer threadsOverride, String reportDir)
+            throws IOException, InterruptedException {
+        int threads = resolveThreads(manifest, threadsOverride);
+        long start = System.currentTimeMillis();
+
+        logger.info("Starting batch of {} projects on {} worker threads", manifest.getProjects().size(), threads);
+
+        List<ProjectRun> runs = new ArrayList<>();
+        for (BatchProject project : manifest.getProjects()) {
+            runs.add(prepare(project, manifest, threads));
+        }
+
+        Scheduler scheduler = new Scheduler(runs);
+        for (ProjectRun run : runs) {
+            if (run.failure == null && run.files.isEmpty()) {
+                finish(run);
+            }
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            for (int i = 0; i < threads; i++) {
+                pool.submit(() -> work(scheduler));
+            }
+            pool.shutdown();
+            while (!pool.awaitTermination(1, TimeUnit.MINUTES)) {
+                logger.info("Batch in progress: {}", scheduler.progress());
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        BatchReport report = new BatchReport();
+        report.setThreads(threads);
+        report.setTotalProjects(runs.size());
+        int failed = 0, totalFiles = 0, processed = 0, errors = 0, classes = 0, methods = 0;
+        for (ProjectRun run : runs) {
+            ProjectReport projectReport = run.toReport();
+            report.getProjects().add(projectReport);
+            if (run.failure != null) {
+                failed++;
+                continue;
+            }
+            totalFiles += projectReport.getTotalFiles();
+            processed += projectReport.getProcessedFiles();
+            errors += projectReport.getErrorFiles();
+            classes += projectReport.getTotalClasses();
+            methods += projectReport.getTotalMethods() != null ? projectReport.getTotalMethods() : 0;
+        }
+        report.setFailedProjects(failed);
+        report.setTotalFiles(totalFiles);
+        report.setProcessedFiles(processed);
+        report.setErrorFiles(errors);
+        report.setTotalClasses(classes);
+        report.setTotalMethods(methods);
+        report.setElapsedMillis(System.currentTimeMillis() - start);
+
+        File reportDirectory = new File(reportDir);
+        if (!reportDirectory.exists() && reportDirectory.mkdirs()) {
+            logger.info("Created output directory: {}", reportDir);
+        }
+        File reportFile = new File(reportDirectory, "batch-report.json");
+        objectMapper.writerWithDefaultPrettyPrinter().writeValue(reportFile, report);
+        logger.info("Saved batch report to: {}", reportFile.getAbsolutePath());
+
+        return report;
+    }
+
+    private int resolveThreads(BatchManifest manifest, Integer threadsOverride) {
+        int threads = threadsOverride != null ? threadsOverride
+                : manifest.getThreads() != null ? manifest.getThreads()
+                : properties.getBatch().getThreads();
+        return threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Resolves the configuration of a project and discovers its files
+     */
+    private ProjectRun prepare(BatchProject project, BatchManifest manifest, int threads) {
+        ProjectRun run = new ProjectRun(project);
+
+        int cap = project.getMaxConcurrency() != null ? project.getMaxConcurrency()
+                : manifest.getMaxConcurrencyPerProject() != null ? manifest.getMaxConcurrencyPerProject()
+                : properties.getBatch().getMaxConcurrencyPerProject();
+        run.cap = cap > 0 ? Math.min(cap, threads) : threads;
+
+        try {
+            if (project.getProjectPath() == null || project.getOutputDir() == null) {
+                throw new IllegalArgumentException("projectPath and outputDir are required");
+            }
+            run.level = project.getLevel() != null ? ChunkLevel.fromString(project.getLevel())
+                    : ChunkLevel.fromString(properties.getChunk().getDefaultLevel());
+
+            List<String> excludePatterns = new ArrayList<>(properties.getFilter().getExcludePatterns());
+            excludePatterns.addAll(project.getExcludePatterns());
+
+            File outputDirectory = new File(project.getOutputDir());
+            if (!outputDirectory.exists() && outputDirectory.mkdirs()) {
+                logger.info("Created output directory: {}", project.getOutputDir());
+            }
+
+            Map<Path, Long> sizes = new HashMap<>();
+            if (project.getSourceRoots().isEmpty()) {
+                run.files = fileFinder.findJavaFiles(project.getProjectPath(), project.getIncludePatterns(),
+                        excludePatterns, sizes);
+            } else {
+                run.files = fileFinder.findJavaFiles(Paths.get(project.getProjectPath()),
+                        project.getSourceRoots().stream().map(Paths::get).toList(),
+                        project.getIncludePatterns(), excludePatterns, sizes);
+            }
+            run.results = new FileResult[run.files.size()];
+            run.sizes = run.files.stream().mapToLong(file -> sizes.getOrDefault(file, 0L)).toArray();
+            IntStream order = IntStream.range(0, run.files.size());
+            if (properties.getBatch().isLongestFirst()) {
+                order = order.boxed().sorted(Comparator.comparingLong((Integer i) -> run.sizes[i]).reversed())
+                        .mapToInt(Integer::intValue);
+            }
+            run.order = order.toArray();
+            logger.info("Project {}: {} files, max {} in flight", run.name, run.files.size(), run.cap);
+        } catch (Exception e) {
+            logger.error("Project {} failed: {}", run.name, e.getMessage());
+            run.failure = e.getMessage();
+            run.files = List.of();
+            run.order = new int[0];
+        }
+        run.start = System.currentTimeMillis();
+        return run;
+    }
+
+    private void work(Scheduler scheduler) {
+        try {
+            Task task;
+            while ((task = scheduler.next()) != null) {
+                ProjectRun run = task.run;
+                Path javaFile = run.files.get(task.index);
+                FileResult result = new FileResult();
+                try {
+                    AnalysisSummary fileSummary = new AnalysisSummary();
+                    result.fileNames = javaCodeChunkerService.chunkFile(
+                            javaFile, run.level, run.project.getOutputDir(), fileSummary);
+                    result.outputs = fileSummary.getOutputFiles();
+                    result.codeSize = fileSummary.getCodeSize();
+                } catch (Exception e) {
+                    logger.error("Error parsing file: {} - {}", javaFile, e.getMessage(), e);
+                }
+                run.results[task.index] = result;
+
+                if (scheduler.complete(run)) {
+                    finish(run);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Writes the project summary once all of its files are done
+     */
+    private void finish(ProjectRun run) {
+        AnalysisSummary summary = new AnalysisSummary();
+        summary.setProjectPath(run.project.getProjectPath());
+        summary.setAnalysisType(run.level.getAnalysisType());
+        summary.setOutputDirectory(run.project.getOutputDir());
+        summary.setTimestamp(LocalDateTime.now());
+        summary.setTotalFiles(run.files.size());
+
+        int processed = 0, errors = 0;
+        for (FileResult result : run.results) {
+            if (result.fileNames == null) {
+                errors++;
+                continue;
+            }
+            processed++;
+            summary.getOutputFiles().addAll(result.outputs);
+            summary.addCodeSize(result.codeSize);
+        }
+        summary.setProcessedFiles(processed);
+        summary.setErrorFiles(errors);
+        summary.countOutputs(run.level);
+        run.elapsedMillis = System.currentTimeMillis() - run.start;
+        run.summary = summary;
+
+        try {
+            javaCodeChunkerService.saveProjectSummary(summary, run.project.getOutputDir());
+        } catch (IOException e) {
+            logger.error("Project {}: could not save summary: {}", run.name, e.getMessage());
+            run.failure = e.getMessage();
+        }
+        logger.info("Project {} completed in {} ms ({} files, {} errors)",
+                run.name, run.elapsedMillis, processed, errors);
+    }
+
+    /**
+     * Hands out files round-robin across projects, honoring each project's in-flight cap;
+     * each project's own files come in its hand-out order
+     */
+    private static class Scheduler {
+        private final List<ProjectRun> runs;
+        private int cursor;
+
+        Scheduler(List<ProjectRun> runs) {
+            this.runs = runs;
+        }
+
+        /**
+         * The next file, or null when none are left. While every project with files left is
+         * at its cap this waits through ForkJoinPool.managedBlock: the pool can start a spare
+         * worker meanwhile, so the subtasks forked for long files are still stolen.
+         */
+        Task next() throws InterruptedException {
+            Claim claim = new Claim();
+            ForkJoinPool.managedBlock(claim);
+            return claim.task;
+        }
+
+        private class Claim implements ForkJoinPool.ManagedBlocker {
+            private Task task;
+            private boolean done;
+
+            @Override
+            public boolean isReleasable() {
+                synchronized (Scheduler.this) {
+                    return tryClaim();
+                }
+            }
+
+            @Override
+            public boolean block() throws InterruptedException {
+                synchronized (Scheduler.this) {
+                    while (!tryClaim()) {
+                        // Every project with files left is at its cap
+                        Scheduler.this.wait();
+                    }
+                }
+                return true;
+            }
+
+            /**
+             * Takes the next file if one may start; true once a file is taken or none are left
+             */
+            private boolean tryClaim() {
+                if (done) {
+                    return true;
+                }
+                boolean remaining = false;
+                int chosen = -1;
+                for (int i = 0; i < runs.size(); i++) {
+                    int idx = (cursor + i) % runs.size();
+                    ProjectRun run = runs.get(idx);
+                    if (run.next >= run.files.size()) {
+                        continue;
+                    }
+                    remaining = true;
+                    if (run.inFlight < run.cap) {
+                        chosen = idx;
+                        break;
+                    }
+                }
+                if (chosen >= 0) {
+                    ProjectRun run = runs.get(chosen);
+                    cursor = chosen + 1;
+                    run.inFlight++;
+                    task = new Task(run, run.order[run.next++]);
+                }
+                done = chosen >= 0 || !remaining;
+                return done;
+            }
+        }
+
+        /**
+         * Returns true when this was the last file of the project
+         */
+        synchronized boolean complete(ProjectRun run) {
+            run.inFlight--;
+            run.done++;
+            notifyAll();
+            return run.done == run.files.size();
+        }
+
+        synchronized String progress() {
+            int done = 0, total = 0;
+            for (ProjectRun run : runs) {
+                done += run.done;
+                total += run.files.size();
+            }
+            return done + "/" + total + " files";
+        }
+    }
+
+    private static class Task {
+        private final ProjectRun run;
+        private final int index;
+
+        Task(ProjectRun run, int index) {
+            this.run = run;
+            this.index = index;
+        }
+    }
+
+    private static class FileResult {
+        private List<String> fileNames; // null when the file could not be parsed
+        private List<OutputFileInfo> outputs;
+        private CodeSize codeSize;
+    }
+
+    private static class ProjectRun {
+        private final BatchProject project;
+        private final String name;
+        private ChunkLevel level;
+        private List<Path> files;
+        private long[] sizes; // bytes, from discovery
+        private int[] order; // indexes of files in the order they are handed out
+        private FileResult[] results;
+        private int cap;
+        private int next;
+        private int inFlight;
+        private int done;
+        private long start;
+        private long elapsedMillis;
+        private String failure;
+        private AnalysisSummary summary;
+
+        ProjectRun(BatchProject project) {
+            this.project = project;
+            this.name = project.getName() != null ? project.getName() : project.getProjectPath();
+        }
+
+        ProjectReport toReport() {
+            ProjectReport report = new ProjectReport();
+            report.setName(name);
+            report.setProjectPath(project.getProjectPath());
+            report.setOutputDirectory(project.getOutputDir());
+            report.setStatus(failure == null ? "COMPLETED" : "FAILED");
+            report.setError(failure);
+            report.setElapsedMillis(elapsedMillis);
+            if (summary != null) {
+                report.setTotalFiles(summary.getTotalFiles());
+                report.setProcessedFiles(summary.getProcessedFiles());
+                report.setErrorFiles(summary.getErrorFiles());
+                report.setTotalClasses(summary.getTotalClasses());
+                report.setTotalMethods(summary.getTotalMethods());
+            }
+            return report;
+        }
+    }
+}
@@ -0,0 +1,292 @@
+package jp.co.jri.codechunker.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jp.co.jri.codechunker.config.ApplicationProperties;
+import jp.co.jri.codechunker.engine.ChunkExtractor;
+import jp.co.jri.codechunker.engine.ChunkExtractor.ParsedSource;
+import jp.co.jri.codechunker.model.chunk.ChunkData;
+import jp.co.jri.codechunker.model.chunk.ChunkLevel;
+import jp.co.jri.codechunker.model.chunk.data.Kind;
+import jp.co.jri.codechunker.model.summary.AnalysisSummary;
+import jp.co.jri.codechunker.util.ChunkDataSerializer;
+import jp.co.jri.codechunker.util.FileFinder;
+import jp.co.jri.codechunker.util.SourceArchives;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Writes the chunks of a project into an embedded H2 database instead of JSON files. Rows
+ * are keyed by project and chunk id and upserted in batches, one transaction per batch;
+ * chunks whose content hash did not change are not written again, and chunks the project
+ * no longer produces are deleted, so re-runs update the database in place. Rows of files
+ * that fail to parse in a run are kept as they are: a transient error or timeout does not
+ * delete what an earlier run stored. Each run also stores its summary in the RUNS table.
+ */
+@Service
+@RequiredArgsConstructor
+public class DatabaseSinkService {
+
+    private static final Logger logger = LoggerFactory.getLogger(DatabaseSinkService.class);
+
+    private static final String[] SCHEMA = {
+            "CREATE TABLE IF NOT EXISTS CHUNKS ("
+                    + "PROJECT_PATH VARCHAR NOT NULL, CHUNK_ID VARCHAR NOT NULL, "
+                    + "FULLY_QUALIFIED_NAME VARCHAR, PARENT_CHUNK_ID VARCHAR, KIND VARCHAR(16), NAME VARCHAR, "
+                    + "FILE_PATH VARCHAR, START_LINE INT, END_LINE INT, CONTENT_HASH CHAR(64), "
+                    + "CODE CLOB, CHUNK_JSON CLOB, UPDATED_AT TIMESTAMP, "
+                    + "PRIMARY KEY (PROJECT_PATH, CHUNK_ID))",
+            "CREATE INDEX IF NOT EXISTS CHUNKS_NAME ON CHUNKS (NAME)",
+            "CREATE INDEX IF NOT EXISTS CHUNKS_FQN ON CHUNKS (FULLY_QUALIFIED_NAME)",
+            "CREATE INDEX IF NOT EXISTS CHUNKS_FILE ON CHUNKS (FILE_PATH)",
+            "CREATE TABLE IF NOT EXISTS RUNS ("
+                    + "RUN_ID BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, "
+                    + "PROJECT_PATH VARCHAR NOT NULL, ANALYSIS_TYPE VARCHAR(16), FINISHED_AT TIMESTAMP, "
+                    + "SUMMARY_JSON CLOB)"
+    };
+
+    private static final String UPSERT = "MERGE INTO CHUNKS (PROJECT_PATH, CHUNK_ID, FULLY_QUALIFIED_NAME, "
+            + "PARENT_CHUNK_ID, KIND, NAME, FILE_PATH, START_LINE, END_LINE, CONTENT_HASH, CODE, CHUNK_JSON, UPDATED_AT) "
+            + "KEY (PROJECT_PATH, CHUNK_ID) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final ApplicationProperties properties;
+    private final FileFinder fileFinder;
+    private final ChunkExtractor chunkExtractor;
+    private final ChunkDataSerializer chunkDataSerializer;
+    private final ObjectMapper objectMapper;
+    private final SourceArchives sourceArchives;
+
+    /**
+     * JDBC URL for the --db value: a URL as is, otherwise the path of an H2 database file
+     */
+    public static String jdbcUrl(String database) {
+        if (database.startsWith("jdbc:")) {
+            return database;
+        }
+        return "jdbc:h2:file:" + Paths.get(database).toAbsolutePath().normalize();
+    }
+
+    public AnalysisSummary writeDatabase(String projectPath,
+                                         ChunkLevel level,
+                                         List<String> includePatterns,
+                                         List<String> excludePatterns,
+                                         String jdbcUrl) throws IOException, SQLException {
+        ApplicationProperties.DatabaseConfig config = properties.getDatabase();
+        int commitSize = Math.max(1, config.getCommitSize());
+        String projectKey = Paths.get(projectPath).toAbsolutePath().normalize().toString();
+
+        logger.info("Writing chunks of {} to database: {}", projectPath, jdbcUrl);
+        List<Path> javaFiles = fileFinder.findJavaFiles(projectPath, includePatterns, excludePatterns);
+
+        AnalysisSummary summary = new AnalysisSummary();
+        summary.setProjectPath(projectPath);
+        summary.setAnalysisType(level.getAnalysisType());
+        summary.setOutputDirectory(jdbcUrl);
+        summary.setTotalFiles(javaFiles.size());
+
+        int processedFiles = 0;
+        int errorFiles = 0;
+        int lexicalFiles = 0;
+        int classes = 0;
+        int methods = 0;
+        int written = 0;
+        int unchanged = 0;
+        int pending = 0;
+
+        try (Connection connection = DriverManager.getConnection(jdbcUrl, config.getUser(), config.getPassword())) {
+            connection.setAutoCommit(false);
+            createSchema(connection);
+            Map<String, String> previousFiles = new HashMap<>();
+            Map<String, String> previous = loadHashes(connection, projectKey, previousFiles);
+            Set<String> seen = new HashSet<>();
+            Set<String> failedFiles = new HashSet<>();
+
+            try (PreparedStatement upsert = connection.prepareStatement(UPSERT)) {
+                for (Path javaFile : javaFiles) {
+                    List<ChunkData> chunks;
+                    try {
+                        ParsedSource source = chunkExtractor.parseFile(javaFile, false);
+                        if (!source.isChunkable()) {
+                            errorFiles++;
+                            failedFiles.add(sourceArchives.describe(javaFile));
+                            continue;
+                        }
+                        chunks = chunkExtractor.extract(source, javaFile, level);
+                        processedFiles++;
+                        if (!source.isParsed()) {
+                            lexicalFiles++;
+                        }
+                    } catch (Exception e) {
+                        logger.error("Error parsing file: {} - {}", javaFile, e.getMessage(), e);
+                        errorFiles++;
+                        failedFiles.add(sourceArchives.describe(javaFile));
+                        continue;
+                    }
+
+                    for (ChunkData chunk : chunks) {
+                        Kind kind = Kind.values()[chunk.getKind()];
+                        if (kind == Kind.METHOD || kind == Kind.CONSTRUCTOR) {
+                            methods++;
+                        } else if (kind != Kind.FILE) {
+                            classes++;
+                        }
+                        summary.addCodeSize(chunk.getCodeSize());
+
+                        chunk.setContentHash(chunkDataSerializer.contentHash(chunk));
+                        if (!seen.add(chunk.getChunkId())) {
+                            continue;
+                        }
+                        if (chunk.getContentHash().equals(previous.get(chunk.getChunkId()))) {
+                            unchanged++;
+                            continue;
+                        }
+                        bindChunk(upsert, projectKey, chunk, kind);
+                        upsert.addBatch();
+                        written++;
+                        if (++pending >= commitSize) {
+                            upsert.executeBatch();
+                            connection.commit();
+                            pending = 0;
+                        }
+                    }
+                }
+                if (pending > 0) {
+                    upsert.executeBatch();
+                }
+            }
+
+            int deleted = deleteStale(connection, projectKey, previous, seen, previousFiles, failedFiles, commitSize);
+
+            summary.setProcessedFiles(processedFiles);
+            summary.setErrorFiles(errorFiles);
+            summary.setTotalClasses(classes);
+            summary.setTotalMethods(level.includesMethods() ? methods : null);
+            if (lexicalFiles > 0) {
+                summary.setLexicalFiles(lexicalFiles);
+            }
+            summary.setTimestamp(LocalDateTime.now());
+            saveSummary(connection, projectKey, summary);
+            connection.commit();
+
+            logger.info("Database sink completed: {} chunks written, {} unchanged, {} deleted",
+                    written, unchanged, deleted);
+        }
+        return summary;
+    }
+
+    private static void createSchema(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            for (String sql : SCHEMA) {
+                statement.execute(sql);
+            }
+        }
+        connection.commit();
+    }
+
+    /**
+     * Content hashes of the chunks the project has in the database, by chunk id; their
+     * source files go to files
+     */
+    private static Map<String, String> loadHashes(Connection connection, String projectKey,
+                                                  Map<String, String> files) throws SQLException {
+        Map<String, String> hashes = new HashMap<>();
+        try (PreparedStatement select = connection.prepareStatement(
+                "SELECT CHUNK_ID, CONTENT_HASH, FILE_PATH FROM CHUNKS WHERE PROJECT_PATH = ?")) {
+            select.setString(1, projectKey);
+            try (ResultSet rows = select.executeQuery()) {
+                while (rows.next()) {
+                    hashes.put(rows.getString(1), rows.getString(2));
+                    files.put(rows.getString(1), rows.getString(3));
+                }
+            }
+        }
+        return hashes;
+    }
+
+    private void bindChunk(PreparedStatement upsert, String projectKey, ChunkData chunk, Kind kind)
+            throws SQLException, IOException {
+        upsert.setString(1, projectKey);
+        upsert.setString(2, chunk.getChunkId());
+        upsert.setString(3, chunk.getFullyQualifiedName() != null ? chunk.getFullyQualifiedName() : chunk.getChunkId());
+        upsert.setString(4, chunk.getParentChunkId());
+        upsert.setString(5, kind.name());
+        upsert.setString(6, chunk.getName());
+        upsert.setString(7, chunk.getFilePath());
+        if (chunk.getLocation() != null) {
+            upsert.setInt(8, chunk.getLocation().getStartLine());
+            upsert.setInt(9, chunk.getLocation().getEndLine());
+        } else {
+            upsert.setNull(8, Types.INTEGER);
+            upsert.setNull(9, Types.INTEGER);
+        }
+        upsert.setString(10, chunk.getContentHash());
+        upsert.setString(11, chunk.getCode());
+        // The same JSON the per-class output writes for the chunk
+        upsert.setString(12, new String(chunkDataSerializer.toBytes(chunk), StandardCharsets.UTF_8));
+        upsert.setTimestamp(13, Timestamp.valueOf(LocalDateTime.now()));
+    }
+
+    /**
+     * Deletes the project's chunks this run did not produce, except those of files that
+     * failed in this run; returns how many
+     */
+    private static int deleteStale(Connection connection, String projectKey, Map<String, String> previous,
+                                   Set<String> seen, Map<String, String> previousFiles, Set<String> failedFiles,
+                                   int commitSize) throws SQLException {
+        int deleted = 0;
+        int pending = 0;
+        try (PreparedStatement delete = connection.prepareStatement(
+                "DELETE FROM CHUNKS WHERE PROJECT_PATH = ? AND CHUNK_ID = ?")) {
+            for (String chunkId : previous.keySet()) {
+                if (seen.contains(chunkId) || failedFiles.contains(previousFiles.get(chunkId))) {
+                    continue;
+                }
+                delete.setString(1, projectKey);
+                delete.setString(2, chunkId);
+                delete.addBatch();
+                deleted++;
+                if (++pending >= commitSize) {
+                    delete.executeBatch();
+                    connection.commit();
+                    pending = 0;
+                }
+            }
+            if (pending > 0) {
+                delete.executeBatch();
+            }
+        }
+        return deleted;
+    }
+
+    private void saveSummary(Connection connection, String projectKey, AnalysisSummary summary)
+            throws SQLException, IOException {
+        try (PreparedStatement insert = connection.prepareStatement(
+                "INSERT INTO RUNS (PROJECT_PATH, ANALYSIS_TYPE, FINISHED_AT, SUMMARY_JSON) VALUES (?, ?, ?, ?)")) {
+            insert.setString(1, projectKey);
+            insert.setString(2, summary.getAnalysisType());
+            insert.setTimestamp(3, Timestamp.valueOf(summary.getTimestamp()));
+            insert.setString(4, objectMapper.writeValueAsString(summary));
+            insert.executeUpdate();
+        }
+    }
+}
@@ -1,50 +1,68 @@
 package jp.co.jri.codechunker.service;
 
-import com.github.javaparser.ast.Node;
 import jp.co.jri.codechunker.config.ApplicationProperties;
+import jp.co.jri.codechunker.engine.ChunkExtractor;
+import jp.co.jri.codechunker.engine.ChunkExtractor.ParsedSource;
+import jp.co.jri.codechunker.jfr.ExtractionEvent;
+import jp.co.jri.codechunker.model.batch.Shard;
+import jp.co.jri.codechunker.jfr.FileEvent;
+import jp.co.jri.codechunker.jfr.ParseEvent;
+import jp.co.jri.codechunker.jfr.SerializationEvent;
+import jp.co.jri.codechunker.model.checkpoint.CheckpointHeader;
+import jp.co.jri.codechunker.model.checkpoint.ProgressRecord;
+import jp.co.jri.codechunker.model.checkpoint.QuarantineEntry;
+import jp.co.jri.codechunker.model.chunk.ChunkLevel;
 import jp.co.jri.codechunker.model.summary.AnalysisSummary;
+import jp.co.jri.codechunker.model.summary.ChunkManifest;
+import jp.co.jri.codechunker.model.summary.ChunkRef;
+import jp.co.jri.codechunker.model.summary.Tombstone;
 import jp.co.jri.codechunker.model.chunk.ChunkData;
 import jp.co.jri.codechunker.model.chunk.data.Kind;
-import jp.co.jri.codechunker.model.chunk.data.ParentRef;
-import jp.co.jri.codechunker.model.chunk.data.Location;
-import jp.co.jri.codechunker.model.chunk.data.Notes;
-import jp.co.jri.codechunker.model.chunk.data.Symbols;
 import jp.co.jri.codechunker.model.chunk.method.ClassInfo;
+import jp.co.jri.codechunker.util.ChunkDataSerializer;
+import jp.co.jri.codechunker.util.ChunkManifestStore;
+import jp.co.jri.codechunker.util.FileEventLog;
 import jp.co.jri.codechunker.util.FileFinder;
-import jp.co.jri.codechunker.util.MetricsCalculator;
+import jp.co.jri.codechunker.util.GitRepository;
+import jp.co.jri.codechunker.util.OutputLayout;
+import jp.co.jri.codechunker.util.RunStateStore;
+import jp.co.jri.codechunker.util.ShardPartitioner;
+import jp.co.jri.codechunker.util.SourceArchives;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.github.javaparser.JavaParser;
-import com.github.javaparser.ParseResult;
-import com.github.javaparser.ast.CompilationUnit;
-import com.github.javaparser.ast.body.*;
-import com.github.javaparser.ast.visitor.VoidVisitorAdapter;
-import jp.co.jri.codechunker.util.SignatureExtractor;
-import jp.co.jri.codechunker.util.SymbolsExtractor;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.time.LocalDateTime;
 import java.util.*;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.zip.CRC32;
 
 @Service
 @RequiredArgsConstructor
 public class JavaCodeChunkerService {
 
     private static final Logger logger = LoggerFactory.getLogger(JavaCodeChunkerService.class);
-    private final JavaParser javaParser = new JavaParser();
     private final FileFinder fileFinder;
-    private final MetricsCalculator metricsCalculator;
     private final ObjectMapper objectMapper;
     private final ApplicationProperties properties;
+    private final RunStateStore runStateStore;
+    private final OutputLayout outputLayout;
+    private final ChunkDataSerializer chunkDataSerializer;
+    private final SourceArchives sourceArchives;
+    private final ChunkManifestStore chunkManifestStore;
+    private final ChunkExtractor chunkExtractor;
+    private final ShardPartitioner shardPartitioner;
+    private final FileEventLog fileEventLog;
 
     /**
      * Analyzes project and generates one JSON file per class (class-level analysis)
@@ -54,12 +72,61 @@ public class JavaCodeChunkerService {
                                               List<String> includePatterns,
                                               List<String> excludePatterns,
                                               String outputDir) throws IOException {
+        return generateFiles(ChunkLevel.CLASS_LEVEL, projectPath, includePatterns, excludePatterns, outputDir, false);
+    }
+
+    /**
+     * Analyzes project and generates one JSON file per class (method-level analysis)
+     * Each file contains only method information for that class
+     */
+    public AnalysisSummary generateMethodFiles(String projectPath,
+                                                       List<String> includePatterns,
+                                                       List<String> excludePatterns,
+                                                       String outputDir) throws IOException {
+        return generateFiles(ChunkLevel.METHOD_LEVEL, projectPath, includePatterns, excludePatterns, outputDir, false);
+    }
 
-        logger.info("Generating class files for project: {}", projectPath);
+    /**
+     * Analyzes project at the given level. Progress is journaled to the output directory;
+     * with resume set, files completed by an interrupted run with the same project and
+     * level are skipped. Files that repeatedly fail or exceed the parse timeout are
+     * quarantined and skipped until they change. Every run saves a manifest of its chunk ids
+     * and content hashes; with code-chunker.output.change-set, the chunks added, modified and
+     * deleted since the previous manifest are also written to change-set.json.
+     */
+    public AnalysisSummary generateFiles(ChunkLevel level,
+                                         String projectPath,
+                                         List<String> includePatterns,
+                                         List<String> excludePatterns,
+                                         String outputDir,
+                                         boolean resume) throws IOException {
+        return generateFiles(level, projectPath, includePatterns, excludePatterns, outputDir, resume, null);
+    }
+
+    /**
+     * Analyzes the files of one shard of the project (all files when shard is null). A shard
+     * saves a partial summary and manifest named after it, e.g. project-summary.shard-1-of-4.json,
+     * and its own run state, so shards may share an output directory; ShardMergeService
+     * combines them. Change sets are not written by shards.
+     */
+    public AnalysisSummary generateFiles(ChunkLevel level,
+                                         String projectPath,
+                                         List<String> includePatterns,
+                                         List<String> excludePatterns,
+                                         String outputDir,
+                                         boolean resume,
+                                         Shard shard) throws IOException {
+        String levelName = level.getValue().toLowerCase();
+
+        logger.info("Generating {} files for project: {}", levelName, projectPath);
         logger.info("Include patterns: {}", includePatterns);
         logger.info("Exclude patterns: {}", excludePatterns);
         logger.info("Output directory: {}", outputDir);
-        logger.info("Mode: One JSON file per class (class info only)");
+        logger.info(switch (level) {
+            case METHOD_LEVEL -> "Mode: One JSON file per class (methods only)";
+            case CLASS_LEVEL -> "Mode: One JSON file per class (class info only)";
+            case ALL_LEVELS -> "Mode: File, class and method JSON files from one parse";
+        });
 
         // Create output directory if it doesn't exist
         File outputDirectory = new File(outputDir);
@@ -70,89 +137,291 @@ public class JavaCodeChunkerService {
             }
         }
 
-        List<Path> javaFiles = fileFinder.findJavaFiles(projectPath, includePatterns, excludePatterns);
+        Map<Path, Long> sizes = new HashMap<>();
+        List<Path> javaFiles = fileFinder.findJavaFiles(projectPath, includePatterns, excludePatterns, sizes);
 
         AnalysisSummary summary = new AnalysisSummary();
         summary.setProjectPath(projectPath);
-        summary.setAnalysisType("CLASS_ONLY");
+        summary.setAnalysisType(level.getAnalysisType());
         summary.setOutputDirectory(outputDir);
         summary.setTimestamp(LocalDateTime.now());
+
+        if (shard != null) {
+            Path projectRoot = Paths.get(projectPath);
+            summary.setShard(shard.toString());
+            summary.setDiscoveredFiles(javaFiles.size());
+            summary.setDiscoveryFingerprint(shardPartitioner.fingerprint(projectRoot, javaFiles, sizes));
+            javaFiles = shardPartitioner.select(projectRoot, javaFiles, sizes, shard);
+            logger.info("Shard {}: {} of {} files", shard, javaFiles.size(), summary.getDiscoveredFiles());
+        }
         summary.setTotalFiles(javaFiles.size());
 
-        int processedFiles = 0;
-        int errorFiles = 0;
-        int totalClasses = 0;
+        ApplicationProperties.FaultToleranceConfig faultConfig = properties.getFaultTolerance();
+        Map<String, QuarantineEntry> quarantine = runStateStore.loadQuarantine(outputDir, shard);
+
+        ChunkManifest manifest = new ChunkManifest();
+        manifest.setAnalysisType(summary.getAnalysisType());
+        manifest.setTimestamp(summary.getTimestamp());
+        boolean changeSet = properties.getOutput().isChangeSet();
+        if (changeSet && shard != null) {
+            // Every other shard's chunks would be reported as deleted
+            logger.warn("Change sets are not written by shards: compare the merged manifest instead");
+            changeSet = false;
+        }
+        if (changeSet && resume) {
+            // The interrupted run's change set is gone, so its files must be compared again
+            logger.warn("Resume is ignored when writing a change set: every file is chunked again");
+            resume = false;
+        }
 
-        for (Path javaFile : javaFiles) {
-            logger.debug("Processing file: {}", javaFile);
+        // Chunks of the previous run by source file, kept for files that fail in this one
+        ChunkManifest previousManifest = chunkManifestStore.loadManifest(outputDir, shard);
+        Map<String, List<ChunkRef>> previousChunks = new HashMap<>();
+        if (previousManifest != null) {
+            for (ChunkRef chunk : previousManifest.getChunks()) {
+                if (chunk.getSourceFile() != null) {
+                    previousChunks.computeIfAbsent(chunk.getSourceFile(), file -> new ArrayList<>()).add(chunk);
+                }
+            }
+        }
 
-            try {
-                ParseResult<CompilationUnit> parseResult = javaParser.parse(javaFile);
-
-                if (parseResult.isSuccessful() && parseResult.getResult().isPresent()) {
-                    CompilationUnit cu = parseResult.getResult().get();
-                    List<ChunkData> classChunks = extractClassChunksFromFile(cu, javaFile);
-
-                    // Save each class to individual JSON file
-                    for (ChunkData classChunk : classChunks) {
-                        saveClassChunkToJson(classChunk, outputDir);
-                        totalClasses++;
-
-                        summary.addClassFile(
-                                generateFileName(classChunk.getChunkId(),"class"),
-                                classChunk.getChunkId(),
-                                classChunk.getKind().toString(),
-                                999,
-                                "CLASS"
-                        );
-                    }
+        CheckpointHeader header = new CheckpointHeader();
+        header.setProjectPath(Paths.get(projectPath).toAbsolutePath().normalize().toString());
+        header.setAnalysisType(summary.getAnalysisType());
+        header.setStartedAt(LocalDateTime.now());
 
-                    processedFiles++;
+        List<ProgressRecord> completed = resume ? runStateStore.loadJournal(outputDir, shard, header) : null;
+        if (completed == null) {
+            completed = new ArrayList<>();
+        } else {
+            logger.info("Resuming from checkpoint: {} files already done", completed.size());
+        }
 
-                    if (processedFiles % 10 == 0) {
-                        logger.info("Processed {} files, generated {} class files...",
-                                processedFiles, totalClasses);
-                    }
+        RunCounters counters = new RunCounters();
+        Set<String> done = new HashSet<>();
+        for (ProgressRecord record : completed) {
+            done.add(record.getFile());
+            counters.add(record, summary);
+            if (record.getChunks() != null) {
+                manifest.getChunks().addAll(record.getChunks());
+            }
+        }
+
+        long checkpointMillis = faultConfig.getCheckpointIntervalSeconds() * 1000L;
+        long lastCheckpoint = System.currentTimeMillis();
+
+        try (RunStateStore.ProgressJournal journal = runStateStore.openJournal(outputDir, shard, header, completed);
+             ChunkManifestStore.ChangeSetWriter changes = changeSet ? chunkManifestStore.openChangeSet(
+                     outputDir, summary.getAnalysisType(), previousManifest) : null) {
+            for (Path javaFile : javaFiles) {
+                String key = sourceArchives.describe(javaFile.normalize());
+                if (done.contains(key)) {
+                    continue;
+                }
+                logger.debug("Processing file: {}", javaFile);
+
+                ProgressRecord record = new ProgressRecord();
+                record.setFile(key);
+                FileEvent fileEvent = new FileEvent();
+                fileEvent.begin();
+                int chunkCount = 0;
+                long parseNanos = 0;
+
+                boolean quarantined = isQuarantined(quarantine.get(key), javaFile);
+                if (quarantined && !properties.getLexical().isFallbackEnabled()) {
+                    logger.warn("Skipping quarantined file: {}", javaFile);
+                    record.setStatus("QUARANTINED");
                 } else {
-                    logger.warn("Failed to parse file: {}", javaFile);
-                    errorFiles++;
+                    AnalysisSummary fileSummary = new AnalysisSummary();
+                    try {
+                        long parseStart = System.nanoTime();
+                        ParsedSource source = chunkExtractor.parseFile(javaFile, quarantined);
+                        parseNanos = System.nanoTime() - parseStart;
+
+                        if (source.getFailure() != null) {
+                            recordFailure(quarantine, key, javaFile, source.getFailure());
+                        }
+                        if (source.isChunkable()) {
+                            List<ChunkRef> chunks = new ArrayList<>();
+                            chunkCount = writeChunks(source, javaFile, level, outputDir, fileSummary, (chunk, fileName) -> {
+                                chunks.add(new ChunkRef(chunk.getChunkId(), chunk.getContentHash(), fileName, key));
+                                if (changes != null) {
+                                    changes.record(chunk, fileName);
+                                }
+                            }).size();
+                            record.setStatus(source.isParsed() ? "PROCESSED" : "LEXICAL");
+                            record.setOutputs(fileSummary.getOutputFiles());
+                            record.setChunks(chunks);
+                            record.setCodeSize(fileSummary.getCodeSize());
+                            manifest.getChunks().addAll(chunks);
+                            if (source.isParsed()) {
+                                quarantine.remove(key);
+                            }
+                        } else {
+                            record.setStatus("TIMEOUT".equals(source.getFailure()) ? "TIMEOUT" : "ERROR");
+                        }
+                    } catch (Exception e) {
+                        logger.error("Error parsing file: {} - {}", javaFile, e.getMessage(), e);
+                        record.setStatus("ERROR");
+                        recordFailure(quarantine, key, javaFile, String.valueOf(e.getMessage()));
+                    }
+                }
+
+                List<ChunkRef> kept = record.getChunks() == null ? previousChunks.get(key) : null;
+                if (kept != null) {
+                    // The file failed in this run but its previous output files are still there:
+                    // keep them in the manifest rather than reporting them deleted, then added again
+                    record.setChunks(kept);
+                    manifest.getChunks().addAll(kept);
+                    if (changes != null) {
+                        changes.keep(kept);
+                    }
                 }
-            } catch (Exception e) {
-                logger.error("Error parsing file: {} - {}", javaFile, e.getMessage(), e);
-                errorFiles++;
+
+                commitFileEvent(fileEvent, javaFile, record.getStatus(), chunkCount, parseNanos);
+
+                counters.add(record, summary);
+                journal.append(record);
+
+                if (counters.processedFiles > 0 && record.getOutputs() != null && counters.processedFiles % 10 == 0) {
+                    logger.info("Processed {} files, generated {} {} files...",
+                            counters.processedFiles, summary.getOutputFiles().size(), levelName);
+                }
+
+                // Periodic checkpoint: make the journal and quarantine durable
+                if (System.currentTimeMillis() - lastCheckpoint >= checkpointMillis) {
+                    journal.flush();
+                    runStateStore.saveQuarantine(outputDir, shard, quarantine);
+                    lastCheckpoint = System.currentTimeMillis();
+                    logger.debug("Checkpoint written ({} files done)", counters.seen);
+                }
+            }
+
+            if (changes != null) {
+                changes.complete();
             }
         }
 
-        summary.setProcessedFiles(processedFiles);
-        summary.setErrorFiles(errorFiles);
-        summary.setTotalClasses(totalClasses);
+        summary.setProcessedFiles(counters.processedFiles);
+        summary.setErrorFiles(counters.errorFiles);
+        summary.countOutputs(level);
+        if (!counters.quarantinedFiles.isEmpty()) {
+            summary.setQuarantinedFiles(counters.quarantinedFiles);
+        }
+        if (counters.timedOutFiles > 0) {
+            summary.setTimedOutFiles(counters.timedOutFiles);
+        }
+        if (counters.lexicalFiles > 0) {
+            summary.setLexicalFiles(counters.lexicalFiles);
+        }
 
         // Save project summary
-        saveProjectSummary(summary, outputDir);
-
-        logger.info("Class file generation completed:");
-        logger.info("  Processed files: {}", processedFiles);
-        logger.info("  Error files: {}", errorFiles);
-        logger.info("  Total classes: {}", totalClasses);
+        saveProjectSummary(summary, outputDir, shard);
+        chunkManifestStore.saveManifest(outputDir, shard, manifest);
+        runStateStore.saveQuarantine(outputDir, shard, quarantine);
+        runStateStore.deleteJournal(outputDir, shard);
+
+        logger.info("{} file generation completed:", level.getValue().charAt(0) + levelName.substring(1));
+        logger.info("  Processed files: {}", counters.processedFiles);
+        logger.info("  Error files: {}", counters.errorFiles);
+        logger.info(level == ChunkLevel.METHOD_LEVEL ? "  Total classes with methods: {}" : "  Total classes: {}",
+                summary.getTotalClasses());
+        if (level.includesMethods()) {
+            logger.info("  Total methods: {}", summary.getTotalMethods());
+        }
         logger.info("  Output directory: {}", outputDir);
 
         return summary;
     }
 
     /**
-     * Analyzes project and generates one JSON file per class (method-level analysis)
-     * Each file contains only method information for that class
+     * A quarantined file is skipped until it is edited (size or modification time changed)
      */
-    public AnalysisSummary generateMethodFiles(String projectPath,
-                                                       List<String> includePatterns,
-                                                       List<String> excludePatterns,
-                                                       String outputDir) throws IOException {
+    private boolean isQuarantined(QuarantineEntry entry, Path javaFile) {
+        if (entry == null || entry.getFailures() < properties.getFaultTolerance().getQuarantineThreshold()) {
+            return false;
+        }
+        try {
+            return Files.size(javaFile) == entry.getFileSize()
+                    && Files.getLastModifiedTime(javaFile).toMillis() == entry.getLastModified();
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private void recordFailure(Map<String, QuarantineEntry> quarantine, String key, Path javaFile, String reason) {
+        QuarantineEntry entry = quarantine.computeIfAbsent(key, k -> new QuarantineEntry());
+        try {
+            long size = Files.size(javaFile);
+            long lastModified = Files.getLastModifiedTime(javaFile).toMillis();
+            if (size != entry.getFileSize() || lastModified != entry.getLastModified()) {
+                // Edited since the last failure: start counting again
+                entry.setFailures(0);
+            }
+            entry.setFileSize(size);
+            entry.setLastModified(lastModified);
+        } catch (IOException e) {
+            logger.debug("Could not stat {}: {}", javaFile, e.getMessage());
+        }
+        entry.setFailures(entry.getFailures() + 1);
+        entry.setLastReason(reason);
+        entry.setLastFailure(LocalDateTime.now());
+    }
+
+    /**
+     * Running totals of a project run, rebuilt from the journal when resuming
+     */
+    private static class RunCounters {
+        private int seen;
+        private int processedFiles;
+        private int errorFiles;
+        private int timedOutFiles;
+        private int lexicalFiles;
+        private final List<String> quarantinedFiles = new ArrayList<>();
+
+        void add(ProgressRecord record, AnalysisSummary summary) {
+            seen++;
+            switch (record.getStatus()) {
+                case "PROCESSED", "LEXICAL" -> {
+                    processedFiles++;
+                    if ("LEXICAL".equals(record.getStatus())) {
+                        lexicalFiles++;
+                    }
+                    summary.getOutputFiles().addAll(record.getOutputs());
+                    summary.addCodeSize(record.getCodeSize());
+                }
+                case "TIMEOUT" -> {
+                    timedOutFiles++;
+                    errorFiles++;
+                }
+                case "QUARANTINED" -> {
+                    quarantinedFiles.add(record.getFile());
+                    errorFiles++;
+                }
+                default -> errorFiles++;
+            }
+        }
+    }
 
-        logger.info("Generating method files for project: {}", projectPath);
+    /**
+     * Analyzes only the .java files changed between two commits of the git repository
+     * containing the project. Added, modified and renamed files are chunked from the head
+     * commit content; chunks that no longer exist at the head commit are recorded as
+     * tombstones in the summary.
+     */
+    public AnalysisSummary generateChangedFiles(String projectPath,
+                                                String baseRevision,
+                                                String headRevision,
+                                                ChunkLevel level,
+                                                List<String> includePatterns,
+                                                List<String> excludePatterns,
+                                                String outputDir) throws IOException {
+
+        logger.info("Generating changed files for project: {}", projectPath);
+        logger.info("Base revision: {}", baseRevision);
+        logger.info("Head revision: {}", headRevision);
         logger.info("Output directory: {}", outputDir);
-        logger.info("Mode: One JSON file per class (methods only)");
 
-        // Create output directory if it doesn't exist
         File outputDirectory = new File(outputDir);
         if (!outputDirectory.exists()) {
             boolean created = outputDirectory.mkdirs();
@@ -161,534 +430,348 @@ public class JavaCodeChunkerService {
             }
         }
 
-        List<Path> javaFiles = fileFinder.findJavaFiles(projectPath, includePatterns, excludePatterns);
-
         AnalysisSummary summary = new AnalysisSummary();
         summary.setProjectPath(projectPath);
-        summary.setAnalysisType("METHODS_ONLY");
+        summary.setAnalysisType(level.getAnalysisType());
         summary.setOutputDirectory(outputDir);
         summary.setTimestamp(LocalDateTime.now());
-        summary.setTotalFiles(javaFiles.size());
+        summary.setTombstones(new ArrayList<>());
 
         int processedFiles = 0;
         int errorFiles = 0;
-        int totalClasses = 0;
-        int totalMethods = 0;
-
-        for (Path javaFile : javaFiles) {
-            logger.debug("Processing file: {}", javaFile);
-
-            try {
-                ParseResult<CompilationUnit> parseResult = javaParser.parse(javaFile);
-
-                if (parseResult.isSuccessful() && parseResult.getResult().isPresent()) {
-                    CompilationUnit cu = parseResult.getResult().get();
-                    List<ClassInfo> classMethodsList = extractMethodsFromFile(cu, javaFile);
-
-                    // Save each class's methods to individual JSON file
-                    for (ClassInfo classMethods : classMethodsList) {
-                        if (!classMethods.getMethods().isEmpty()) {
-                            saveMethodsToJson(classMethods, outputDir);
-                            totalClasses++;
-                            totalMethods += classMethods.getMethods().size();
-
-                            summary.addClassFile(
-                                    generateFileName(classMethods.getFullyQualifiedName(), "methods"),
-                                    classMethods.getFullyQualifiedName(),
-                                    classMethods.getType(),
-                                    classMethods.getMethods().size(),
-                                    "METHODS"
-                            );
+        int lexicalFiles = 0;
+
+        try (GitRepository repository = GitRepository.open(Paths.get(projectPath))) {
+            String baseCommit = repository.resolve(baseRevision);
+            String headCommit = repository.resolve(headRevision);
+            summary.setBaseCommit(baseCommit);
+            summary.setHeadCommit(headCommit);
+            logger.info("Diffing {} .. {}", baseCommit, headCommit);
+
+            Path workTree = repository.getWorkTree();
+            Path projectRoot = Paths.get(projectPath).toAbsolutePath().normalize();
+
+            List<GitRepository.DiffEntry> changes = new ArrayList<>();
+            for (GitRepository.DiffEntry entry : repository.diff(baseCommit, headCommit)) {
+                if (isChangedProjectFile(entry.getOldPath(), workTree, projectRoot, includePatterns, excludePatterns)
+                        || isChangedProjectFile(entry.getNewPath(), workTree, projectRoot, includePatterns, excludePatterns)) {
+                    changes.add(entry);
+                }
+            }
+            summary.setTotalFiles(changes.size());
+            logger.info("Found {} changed Java files", changes.size());
+
+            // Output keys present at head, and the chunks that existed at base
+            Set<String> headKeys = new HashSet<>();
+            Map<String, Tombstone> baseChunks = new LinkedHashMap<>();
+
+            for (GitRepository.DiffEntry entry : changes) {
+                if (entry.getOldPath() != null) {
+                    Path oldFile = workTree.resolve(entry.getOldPath());
+                    try {
+                        ParsedSource base = parseBlob(repository, entry.getOldId());
+                        if (base.isChunkable()) {
+                            collectTombstoneCandidates(base, oldFile, level,
+                                    entry.getChangeType().name(), baseChunks);
                         }
+                    } catch (Exception e) {
+                        logger.warn("Could not read base version of {}: {}", oldFile, e.getMessage());
                     }
+                }
 
-                    processedFiles++;
+                if (entry.getNewPath() == null) {
+                    continue;
+                }
 
-                    if (processedFiles % 10 == 0) {
-                        logger.info("Processed {} files, generated {} method files...",
-                                processedFiles, totalClasses);
+                Path newFile = workTree.resolve(entry.getNewPath());
+                logger.debug("Processing changed file: {} ({})", newFile, entry.getChangeType());
+
+                try {
+                    ParsedSource source = parseBlob(repository, entry.getNewId());
+                    if (!source.isChunkable()) {
+                        logger.warn("Failed to parse file: {}", newFile);
+                        errorFiles++;
+                        continue;
                     }
-                } else {
-                    logger.warn("Failed to parse file: {}", javaFile);
+                    if (!source.isParsed()) {
+                        lexicalFiles++;
+                    }
+
+                    headKeys.addAll(writeChunks(source, newFile, level, outputDir, summary));
+                    processedFiles++;
+                } catch (Exception e) {
+                    logger.error("Error parsing file: {} - {}", newFile, e.getMessage(), e);
                     errorFiles++;
                 }
-            } catch (Exception e) {
-                logger.error("Error parsing file: {} - {}", javaFile, e.getMessage(), e);
-                errorFiles++;
+            }
+
+            // A chunk is only gone if no changed file still produces it (e.g. a class moved between files)
+            for (Map.Entry<String, Tombstone> baseChunk : baseChunks.entrySet()) {
+                if (!headKeys.contains(baseChunk.getKey())) {
+                    summary.addTombstone(baseChunk.getValue());
+                }
             }
         }
 
         summary.setProcessedFiles(processedFiles);
         summary.setErrorFiles(errorFiles);
-        summary.setTotalClasses(totalClasses);
-        summary.setTotalMethods(totalMethods);
+        summary.countOutputs(level);
+        if (lexicalFiles > 0) {
+            summary.setLexicalFiles(lexicalFiles);
+        }
 
-        // Save project summary
         saveProjectSummary(summary, outputDir);
 
-        logger.info("Method file generation completed:");
+        logger.info("Changed file generation completed:");
         logger.info("  Processed files: {}", processedFiles);
         logger.info("  Error files: {}", errorFiles);
-        logger.info("  Total classes with methods: {}", totalClasses);
-        logger.info("  Total methods: {}", totalMethods);
+        logger.info("  Tombstones: {}", summary.getTombstones().size());
         logger.info("  Output directory: {}", outputDir);
 
         return summary;
     }
 
     /**
-     * Extracts class chunks from a file
+     * Re-runs extraction for a single file, saves its output files and records them in the
+     * given per-file summary. Returns the names of the files written, or null when the file
+     * could not be parsed.
      */
-    private List<ChunkData> extractClassChunksFromFile(CompilationUnit cu, Path filePath) {
-        List<ChunkData> classChunks = new ArrayList<>();
-        String packageName = cu.getPackageDeclaration()
-                .map(p -> p.getNameAsString())
-                .orElse("");
-        logger.info("***packageName: {}", packageName);
-
-        cu.accept(new VoidVisitorAdapter<Void>() {
-            @Override
-            public void visit(ClassOrInterfaceDeclaration n, Void arg) {
-                ChunkData chunk = createClassChunk(n, filePath, packageName,
-                        n.isInterface() ? "INTERFACE" : "CLASS");
-                classChunks.add(chunk);
-                super.visit(n, arg);
-            }
-
-            @Override
-            public void visit(EnumDeclaration n, Void arg) {
-                ChunkData chunk = createClassChunk(n, filePath, packageName, "ENUM");
-                classChunks.add(chunk);
-                super.visit(n, arg);
-            }
-
-            @Override
-            public void visit(AnnotationDeclaration n, Void arg) {
-                ChunkData chunk = createClassChunk(n, filePath, packageName, "ANNOTATION");
-                classChunks.add(chunk);
-                super.visit(n, arg);
-            }
-        }, null);
-
-        SymbolsExtractor.getClassSymbols(cu, classChunks.get(0).getSymbols());
-
-        return classChunks;
+    List<String> chunkFile(Path javaFile, ChunkLevel level, String outputDir,
+                           AnalysisSummary fileSummary) throws IOException {
+        FileEvent fileEvent = new FileEvent();
+        fileEvent.begin();
+        long parseStart = System.nanoTime();
+        ParsedSource source = chunkExtractor.parseFile(javaFile, false);
+        long parseNanos = System.nanoTime() - parseStart;
+        if (!source.isChunkable()) {
+            commitFileEvent(fileEvent, javaFile, "ERROR", 0, parseNanos);
+            return null;
+        }
+        List<String> fileNames = writeChunks(source, javaFile, level, outputDir, fileSummary);
+        commitFileEvent(fileEvent, javaFile, source.isParsed() ? "PROCESSED" : "LEXICAL", fileNames.size(), parseNanos);
+        return fileNames;
     }
 
     /**
-     * Extracts methods from a file, grouped by class
+     * Reports the outcome of a file to JFR and the event log (--event-log), when enabled
      */
-    private List<ClassInfo> extractMethodsFromFile(CompilationUnit cu, Path filePath) {
-        List<ClassInfo> classMethodsList = new ArrayList<>();
-        String packageName = cu.getPackageDeclaration()
-                .map(p -> p.getNameAsString())
-                .orElse("");
-
-        Map<String, List<ChunkData>> methodsByClass = new HashMap<>();
-
-        // Find all methods and group them by containing class
-        List<MethodDeclaration> allMethods = cu.findAll(MethodDeclaration.class);
-        for (MethodDeclaration method : allMethods) {
-            // Find containing class
-            Optional<ClassOrInterfaceDeclaration> containingClass =
-                    method.findAncestor(ClassOrInterfaceDeclaration.class);
-
-            String className = containingClass.map(ClassOrInterfaceDeclaration::getNameAsString).orElse("");
-            String fullyQualifiedName = packageName.isEmpty() ?
-                    className : packageName + "." + className;
-
-            String type = "CLASS";
-            if (containingClass.isPresent()) {
-                type = containingClass.get().isInterface() ? "INTERFACE" : "CLASS";
-            }
-
-            // Get or create class methods entry
-            ClassInfo classMethods = findOrCreateClassMethods(
-                    classMethodsList, fullyQualifiedName, className, packageName, type, filePath);
-
-            // Create method chunk
-            ChunkData chunkData = createMethodChunkData(method, filePath, packageName);
-            SymbolsExtractor.getClassSymbols(cu, chunkData.getSymbols());
-            classMethods.getMethods().add(chunkData);
+    private void commitFileEvent(FileEvent event, Path javaFile, String outcome, int chunkCount, long parseNanos) {
+        if (event.shouldCommit()) {
+            event.file = javaFile.toString();
+            event.size = SourceArchives.size(javaFile);
+            event.chunkCount = chunkCount;
+            event.outcome = outcome;
+            event.commit();
         }
+        fileEventLog.record(javaFile, chunkCount, parseNanos / 1_000_000, outcome);
+    }
 
-        // Find all methods and group them by containing class
-        List<ConstructorDeclaration> allConstructors = cu.findAll(ConstructorDeclaration.class);
-        for (ConstructorDeclaration constructor : allConstructors) {
-            // Find containing class
-            Optional<ClassOrInterfaceDeclaration> containingClass =
-                    constructor.findAncestor(ClassOrInterfaceDeclaration.class);
-
-            String className = containingClass.map(ClassOrInterfaceDeclaration::getNameAsString).orElse("");
-            String fullyQualifiedName = packageName.isEmpty() ?
-                    className : packageName + "." + className;
-
-            String type = "CLASS";
-            if (containingClass.isPresent()) {
-                type = containingClass.get().isInterface() ? "INTERFACE" : "CLASS";
-            }
-
-            // Get or create class methods entry
-            ClassInfo classMethods = findOrCreateClassMethods(
-                    classMethodsList, fullyQualifiedName, className, packageName, type, filePath);
-
-            // Create method chunk
-            ChunkData methodChunk = createMethodChunkData(constructor, filePath, packageName);
-            SymbolsExtractor.getClassSymbols(cu, methodChunk.getSymbols());
-            classMethods.getMethods().add(methodChunk);
+    /**
+     * Checks whether a repository relative path is a .java file of the analyzed project
+     */
+    private boolean isChangedProjectFile(String repoPath, Path workTree, Path projectRoot,
+                                         List<String> includePatterns, List<String> excludePatterns) {
+        if (repoPath == null) {
+            return false;
         }
-
-        // Also handle methods in enums
-        List<EnumDeclaration> enums = cu.findAll(EnumDeclaration.class);
-        for (EnumDeclaration enumDecl : enums) {
-            String className = enumDecl.getNameAsString();
-            String fullyQualifiedName = packageName.isEmpty() ?
-                    className : packageName + "." + className;
-
-            ClassInfo classMethods = findOrCreateClassMethods(
-                    classMethodsList, fullyQualifiedName, className, packageName, "ENUM", filePath);
-
-            for (MethodDeclaration methodDeclaration : enumDecl.getMethods()) {
-                ChunkData chunkData = createMethodChunkData(methodDeclaration, filePath, packageName);
-                SymbolsExtractor.getClassSymbols(cu, chunkData.getSymbols());
-                classMethods.getMethods().add(chunkData);
-            }
-
-            for (ConstructorDeclaration constructorDeclaration : enumDecl.getConstructors()) {
-                ChunkData chunkData = createMethodChunkData(constructorDeclaration, filePath, packageName);
-                SymbolsExtractor.getClassSymbols(cu, chunkData.getSymbols());
-                classMethods.getMethods().add(chunkData);
+        Path file = workTree.resolve(repoPath).normalize();
+        if (!file.startsWith(projectRoot)) {
+            return false;
+        }
+        for (Path segment : projectRoot.relativize(file.getParent() == null ? file : file.getParent())) {
+            if (fileFinder.isExcludedDirectory(segment.toString())) {
+                return false;
             }
         }
-
-        return classMethodsList;
+        return fileFinder.isIncluded(fileFinder.matchPath(projectRoot, file), includePatterns, excludePatterns);
     }
 
     /**
-     * Finds or creates a ClassMethods entry
+     * Parses a blob of the git repository, falling back to the lexical chunker like parseFile
      */
-    private ClassInfo findOrCreateClassMethods(List<ClassInfo> classMethodsList,
-                                               String fullyQualifiedName,
-                                               String className,
-                                               String packageName,
-                                               String type,
-                                               Path filePath) {
-        for (ClassInfo cm : classMethodsList) {
-            if (cm.getFullyQualifiedName().equals(fullyQualifiedName)) {
-                return cm;
-            }
+    private ParsedSource parseBlob(GitRepository repository, String blobId) throws IOException {
+        ParseEvent event = new ParseEvent();
+        event.begin();
+        String source = new String(repository.readBlob(blobId), StandardCharsets.UTF_8);
+        ParsedSource parsed = chunkExtractor.parseSource(source, blobId);
+        if (event.shouldCommit()) {
+            event.file = blobId;
+            event.size = source.length();
+            event.outcome = parsed.outcome();
+            event.commit();
         }
+        return parsed;
+    }
 
-        ClassInfo newClassMethods = ClassInfo.builder()
-                .fullyQualifiedName(fullyQualifiedName)
-                .className(className)
-                .packageName(packageName)
-                .type(type)
-                .sourceFile(filePath.toString())
-                .timestamp(LocalDateTime.now())
-                .methods(new ArrayList<>())
-                .build();
-
-        classMethodsList.add(newClassMethods);
-        return newClassMethods;
+    @FunctionalInterface
+    private interface WrittenChunks {
+        void add(ChunkData chunk, String fileName) throws IOException;
     }
 
     /**
-     * Creates a ClassChunk from TypeDeclaration
+     * Records every output file the base version of a changed file produced
      */
-    private ChunkData createClassChunk(TypeDeclaration<?> typeDecl,
-                                       Path filePath,
-                                       String packageName,
-                                       String type) {
-        String className = typeDecl.getNameAsString();
-
-        ChunkData.ChunkDataBuilder builder = ChunkData.builder();
-
-        builder.fullyQualifiedName(packageName.isEmpty() ? className : packageName + "." + className);
-
-        // #1.language - value["java"]
-        builder.language("java");
-
-        // #2.filePath - full path to the analyzed java class file
-        builder.filePath(filePath.toAbsolutePath().toString());
-
-        // #3.chunkId - full package path of the analyzed java class
-        builder.chunkId(packageName.isEmpty() ? className : packageName + "." + className);
-
-        // #4.kind - value["CLASS"]
-        builder.kind(Kind.CLASS.ordinal());
-
-        // #5.name - get class name of the java class
-        builder.name(className);
-
-        // #6.parent - to extract parent classes and interfaces
-        if (typeDecl instanceof ClassOrInterfaceDeclaration) {
-            ClassOrInterfaceDeclaration classDecl = (ClassOrInterfaceDeclaration) typeDecl;
-            List<String> extendedClasses = new ArrayList<>();
-            for (com.github.javaparser.ast.type.ClassOrInterfaceType ext : classDecl.getExtendedTypes()) {
-                extendedClasses.add(ext.getNameAsString());
-            }
-
-            List<String> implementedInterfaces = new ArrayList<>();
-            for (com.github.javaparser.ast.type.ClassOrInterfaceType imp : classDecl.getImplementedTypes()) {
-                implementedInterfaces.add(imp.getNameAsString());
-            }
-
-            builder.parent(new ParentRef(packageName, Stream.concat(extendedClasses.stream(), implementedInterfaces.stream()).collect(Collectors.toList())));
+    private void collectTombstoneCandidates(ParsedSource source, Path filePath, ChunkLevel level,
+                                            String changeType, Map<String, Tombstone> baseChunks) {
+        if (level == ChunkLevel.ALL_LEVELS) {
+            ChunkData fileChunk = chunkExtractor.createFileChunk(source, filePath);
+            String fileName = generateFileName(fileChunk.getFullyQualifiedName(), "file");
+            baseChunks.put(fileName, createTombstone(fileChunk, fileName, filePath, "FILE", changeType));
         }
-
-        // #7.signature - to be enhanced (no direct way to extract class signature
-        if (typeDecl instanceof ClassOrInterfaceDeclaration) {
-            ClassOrInterfaceDeclaration classDecl = (ClassOrInterfaceDeclaration) typeDecl;
-
-            builder.signature(SignatureExtractor.getClassSignature(classDecl));
+        if (level.includesClasses()) {
+            for (ChunkData classChunk : chunkExtractor.extractClassChunks(source, filePath)) {
+                String fileName = generateFileName(classChunk.getFullyQualifiedName(), "class");
+                baseChunks.put(fileName, createTombstone(classChunk, fileName, filePath, "CLASS", changeType));
+            }
         }
-
-        // #8.location - to get the start line and end line of the class
-        typeDecl.getRange().ifPresent(range -> {
-            builder.location(new Location(range.begin.line, range.end.line));
-        });
-
-        // #9.imports - to get all the import statements of the java class
-        List<String> dependencies = new ArrayList<>();
-
-        typeDecl.findCompilationUnit().ifPresent(cu -> {
-            for (com.github.javaparser.ast.ImportDeclaration imp : cu.getImports()) {
-                dependencies.add(imp.getNameAsString());
+        if (level.includesMethods()) {
+            for (ClassInfo classMethods : chunkExtractor.extractMethods(source, filePath)) {
+                for (ChunkData method : classMethods.getMethods()) {
+                    String fileName = methodFileName(classMethods, method);
+                    baseChunks.put(fileName, createTombstone(method, fileName, filePath, "METHODS", changeType));
+                }
             }
-        });
-
-        builder.imports(dependencies);
-
-        // #10.modifiers - to get the modifider of the class
-        List<String> modifiers = new ArrayList<>();
-
-        for (com.github.javaparser.ast.Modifier mod : typeDecl.getModifiers()) {
-            modifiers.add(mod.toString().trim());
         }
+    }
 
-        builder.modifiers(modifiers);
-
-        // #11.symbols - to be enhanced (no direct way to extract those info
-        Symbols.SymbolsBuilder symbolsBuilder = Symbols.builder();
-        symbolsBuilder.classes(new ArrayList<>());
-        symbolsBuilder.methods(new ArrayList<>());
-        symbolsBuilder.fields(new ArrayList<>());
-        symbolsBuilder.variables(new ArrayList<>());
-
-        builder.symbols(symbolsBuilder.build());
-
-        // #12.code - to extract the code of the java class
-        String code = typeDecl.toString();
-
-        int maxSnippetLength = properties.getChunk().getMaxSnippetLength();
-        logger.debug("maxSnippetLength = {}", maxSnippetLength);
-        logger.debug("code length = {}", code.length());
-
-        builder.code(code);
-
-        // #13.notes - to add the notes
-        Notes.NotesBuilder notesBuilder = Notes.builder();
-        notesBuilder.missingData(null);
-        notesBuilder.extractionWarnings(new ArrayList<>(List.of("inner class is not supported by this version yet", "local variables won't be included in the analysis")));
-
-        builder.notes(notesBuilder.build());
-
-        return builder.build();
+    private Tombstone createTombstone(ChunkData chunk, String fileName, Path filePath,
+                                      String fileType, String changeType) {
+        Tombstone tombstone = new Tombstone();
+        tombstone.setChunkId(chunk.getChunkId());
+        tombstone.setFullyQualifiedName(chunk.getFullyQualifiedName());
+        tombstone.setFileName(fileName);
+        tombstone.setSourceFile(sourceArchives.describe(filePath));
+        tombstone.setFileType(fileType);
+        tombstone.setChangeType(changeType);
+        return tombstone;
     }
 
     /**
-     * Creates a MethodChunk from MethodDeclaration
+     * Writes the output files of a parsed file at the given level and records them in the
+     * summary. At ALL_LEVELS the file, class and method chunks all come from the one syntax
+     * tree and are linked by parentChunkId. Returns the names of the files written.
      */
-    private ChunkData createMethodChunkData(Node node, Path filePath, String packageName) {
-        ChunkData.ChunkDataBuilder builder = ChunkData.builder();
-
-        if(node instanceof MethodDeclaration){
-            MethodDeclaration methodDeclaration = (MethodDeclaration) node;
-            String methodName = methodDeclaration.getNameAsString();
-
-            // Find containing class
-            ClassOrInterfaceDeclaration containingClass = methodDeclaration.findAncestor(ClassOrInterfaceDeclaration.class).get();
-            String className = containingClass.getNameAsString();
-
-            builder.fullyQualifiedName(packageName.isEmpty() ? className + "." + methodName : packageName + "." + className + "." + methodName);
-
-            // #1.language - value["java"]
-            builder.language("java");
-
-            // #2.filePath - full path to the analyzed java class file
-            builder.filePath(filePath.toAbsolutePath().toString());
-
-            // #3.chunkId - full package path of the analyzed java class
-            builder.chunkId(packageName.isEmpty() ? className : packageName + "." + className);
-
-            // #4.kind - value["METHOD"]
-            builder.kind(Kind.METHOD.ordinal());
+    private List<String> writeChunks(ParsedSource source, Path javaFile, ChunkLevel level, String outputDir,
+                                     AnalysisSummary summary) throws IOException {
+        return writeChunks(source, javaFile, level, outputDir, summary, (chunk, fileName) -> { });
+    }
 
-            // #5.name - get class name of the java class
-            builder.name(methodName);
+    /**
+     * Same, also handing every written chunk (content hash set) and its file to written
+     */
+    private List<String> writeChunks(ParsedSource source, Path javaFile, ChunkLevel level, String outputDir,
+                                     AnalysisSummary summary, WrittenChunks written) throws IOException {
+        List<String> fileNames = new ArrayList<>();
+        boolean linked = level == ChunkLevel.ALL_LEVELS;
+
+        String fileChunkId = null;
+        if (linked) {
+            ExtractionEvent extraction = new ExtractionEvent();
+            extraction.begin();
+            ChunkData fileChunk = chunkExtractor.createFileChunk(source, javaFile);
+            commitExtraction(extraction, javaFile, source, "FILE", 1);
+            fileChunkId = fileChunk.getChunkId();
+            String fileName = generateFileName(fileChunk.getFullyQualifiedName(), "file");
+            writeJson(new File(outputDir, fileName), fileChunk);
+            summary.addClassFile(fileName, fileChunk.getChunkId(), Kind.FILE.name(),
+                    fileChunk.getSymbols().getClasses().size(), "FILE");
+            fileNames.add(fileName);
+            summary.addCodeSize(fileChunk.getCodeSize());
+            written.add(fileChunk, fileName);
+        }
 
-            // #6.parent - to extract parent classes and interfaces
-            List<String> extendedClasses = new ArrayList<>();
-            for (com.github.javaparser.ast.type.ClassOrInterfaceType ext : containingClass.getExtendedTypes()) {
-                extendedClasses.add(ext.getNameAsString());
+        if (level.includesClasses()) {
+            ExtractionEvent extraction = new ExtractionEvent();
+            extraction.begin();
+            List<ChunkData> classChunks = chunkExtractor.extractClassChunks(source, javaFile);
+            commitExtraction(extraction, javaFile, source, "CLASS", classChunks.size());
+            for (ChunkData classChunk : classChunks) {
+                classChunk.setParentChunkId(fileChunkId);
             }
-
-            List<String> implementedInterfaces = new ArrayList<>();
-            for (com.github.javaparser.ast.type.ClassOrInterfaceType imp : containingClass.getImplementedTypes()) {
-                implementedInterfaces.add(imp.getNameAsString());
+            writeClassFiles(classChunks, outputDir, summary);
+            for (ChunkData classChunk : classChunks) {
+                String fileName = generateFileName(classChunk.getFullyQualifiedName(), "class");
+                fileNames.add(fileName);
+                summary.addCodeSize(classChunk.getCodeSize());
+                written.add(classChunk, fileName);
             }
+        }
 
-            builder.parent(new ParentRef(packageName,
-                    Stream.concat(extendedClasses.stream(), implementedInterfaces.stream()).collect(Collectors.toList())));
-
-            // #7.signature - to be enhanced (no direct way to extract class signature
-            builder.signature(SignatureExtractor.getMethodSignature(methodDeclaration));
-
-            // #8.location - to get the start line and end line of the class
-            methodDeclaration.getRange().ifPresent(range -> {
-                builder.location(new Location(range.begin.line, range.end.line));
-            });
-
-            // #9.imports - to get all the import statements of the java class
-            List<String> dependencies = new ArrayList<>();
-
-            methodDeclaration.findCompilationUnit().ifPresent(cu -> {
-                for (com.github.javaparser.ast.ImportDeclaration imp : cu.getImports()) {
-                    dependencies.add(imp.getNameAsString());
+        if (level.includesMethods()) {
+            ExtractionEvent extraction = new ExtractionEvent();
+            extraction.begin();
+            List<ClassInfo> classes = chunkExtractor.extractMethods(source, javaFile);
+            commitExtraction(extraction, javaFile, source, "METHOD",
+                    classes.stream().mapToInt(classMethods -> classMethods.getMethods().size()).sum());
+            if (linked) {
+                for (ClassInfo classMethods : classes) {
+                    for (ChunkData method : classMethods.getMethods()) {
+                        method.setParentChunkId(classMethods.getFullyQualifiedName());
+                    }
                 }
-            });
-
-            builder.imports(dependencies);
-
-            // #10.modifiers - to get the modifider of the class
-            List<String> modifiers = new ArrayList<>();
-
-            for (com.github.javaparser.ast.Modifier mod : methodDeclaration.getModifiers()) {
-                modifiers.add(mod.toString().trim());
-            }
-
-            builder.modifiers(modifiers);
-
-            // #11.symbols - to be enhanced (no direct way to extract those info
-            Symbols.SymbolsBuilder symbolsBuilder = Symbols.builder();
-            symbolsBuilder.classes(new ArrayList<>());
-            symbolsBuilder.methods(new ArrayList<>());
-            symbolsBuilder.fields(new ArrayList<>());
-            symbolsBuilder.variables(new ArrayList<>());
-
-            builder.symbols(symbolsBuilder.build());
-
-            // #12.code - to extract the code of the java class
-            String code = methodDeclaration.toString();
-
-            int maxSnippetLength = properties.getChunk().getMaxSnippetLength();
-            logger.debug("maxSnippetLength = {}", maxSnippetLength);
-            logger.debug("code length = {}", code.length());
-
-            builder.code(code);
-
-            // #13.notes - to add the notes
-            Notes.NotesBuilder notesBuilder = Notes.builder();
-            notesBuilder.missingData(null);
-            notesBuilder.extractionWarnings(new ArrayList<>(List.of("inner class is not supported by this version yet", "local variables won't be included in the analysis")));
-
-            builder.notes(notesBuilder.build());
-        }  else if(node instanceof ConstructorDeclaration){
-            ConstructorDeclaration constructorDeclaration = (ConstructorDeclaration) node;
-            String methodName = constructorDeclaration.getNameAsString();
-
-            // Find containing class
-            ClassOrInterfaceDeclaration containingClass = constructorDeclaration.findAncestor(ClassOrInterfaceDeclaration.class).get();
-            String className = containingClass.getNameAsString();
-
-
-            builder.fullyQualifiedName(packageName.isEmpty() ? className + "." + methodName : packageName + "." + className + "." + methodName);
-
-            // #1.language - value["java"]
-            builder.language("java");
-
-            // #2.filePath - full path to the analyzed java class file
-            builder.filePath(filePath.toAbsolutePath().toString());
-
-            // #3.chunkId - full package path of the analyzed java class
-            builder.chunkId(packageName.isEmpty() ? className : packageName + "." + className);
-
-            // #4.kind - value["METHOD"]
-            builder.kind(Kind.METHOD.ordinal());
-
-            // #5.name - get class name of the java class
-            builder.name(className);
-
-            // #6.parent - to extract parent classes and interfaces
-            List<String> extendedClasses = new ArrayList<>();
-            for (com.github.javaparser.ast.type.ClassOrInterfaceType ext : containingClass.getExtendedTypes()) {
-                extendedClasses.add(ext.getNameAsString());
-            }
-
-            List<String> implementedInterfaces = new ArrayList<>();
-            for (com.github.javaparser.ast.type.ClassOrInterfaceType imp : containingClass.getImplementedTypes()) {
-                implementedInterfaces.add(imp.getNameAsString());
             }
-
-            builder.parent(new ParentRef(packageName,
-                    Stream.concat(extendedClasses.stream(), implementedInterfaces.stream()).collect(Collectors.toList())));
-
-            // #7.signature - to be enhanced (no direct way to extract class signature
-            builder.signature(SignatureExtractor.getConstructorSignature(constructorDeclaration));
-
-            // #8.location - to get the start line and end line of the class
-            constructorDeclaration.getRange().ifPresent(range -> {
-                builder.location(new Location(range.begin.line, range.end.line));
-            });
-
-            // #9.imports - to get all the import statements of the java class
-            List<String> dependencies = new ArrayList<>();
-
-            constructorDeclaration.findCompilationUnit().ifPresent(cu -> {
-                for (com.github.javaparser.ast.ImportDeclaration imp : cu.getImports()) {
-                    dependencies.add(imp.getNameAsString());
+            writeMethodFiles(classes, outputDir, summary);
+            for (ClassInfo classMethods : classes) {
+                for (ChunkData method : classMethods.getMethods()) {
+                    String fileName = methodFileName(classMethods, method);
+                    fileNames.add(fileName);
+                    summary.addCodeSize(method.getCodeSize());
+                    written.add(method, fileName);
                 }
-            });
-
-            builder.imports(dependencies);
-
-            // #10.modifiers - to get the modifider of the class
-            List<String> modifiers = new ArrayList<>();
-
-            for (com.github.javaparser.ast.Modifier mod : constructorDeclaration.getModifiers()) {
-                modifiers.add(mod.toString().trim());
             }
+        }
+        return fileNames;
+    }
 
-            builder.modifiers(modifiers);
-
-            // #11.symbols - to be enhanced (no direct way to extract those info
-            Symbols.SymbolsBuilder symbolsBuilder = Symbols.builder();
-            symbolsBuilder.classes(new ArrayList<>());
-            symbolsBuilder.methods(new ArrayList<>());
-            symbolsBuilder.fields(new ArrayList<>());
-            symbolsBuilder.variables(new ArrayList<>());
-
-            builder.symbols(symbolsBuilder.build());
-
-            // #12.code - to extract the code of the java class
-            String code = constructorDeclaration.toString();
-
-            int maxSnippetLength = properties.getChunk().getMaxSnippetLength();
-            logger.debug("maxSnippetLength = {}", maxSnippetLength);
-            logger.debug("code length = {}", code.length());
-
-            builder.code(code);
-
-            // #13.notes - to add the notes
-            Notes.NotesBuilder notesBuilder = Notes.builder();
-            notesBuilder.missingData(null);
-            notesBuilder.extractionWarnings(new ArrayList<>(List.of("inner class is not supported by this version yet", "local variables won't be included in the analysis")));
+    private static void commitExtraction(ExtractionEvent event, Path javaFile, ParsedSource source,
+                                         String level, int chunkCount) {
+        if (event.shouldCommit()) {
+            event.file = javaFile.toString();
+            event.level = level;
+            event.chunkCount = chunkCount;
+            event.lexical = !source.isParsed();
+            event.commit();
+        }
+    }
 
-            builder.notes(notesBuilder.build());
+    /**
+     * Saves each class chunk and records it in the summary
+     */
+    private void writeClassFiles(List<ChunkData> classChunks, String outputDir,
+                                 AnalysisSummary summary) throws IOException {
+        // Save each class to individual JSON file
+        for (ChunkData classChunk : classChunks) {
+            saveClassChunkToJson(classChunk, outputDir);
+
+            summary.addClassFile(
+                    generateFileName(classChunk.getChunkId(),"class"),
+                    classChunk.getChunkId(),
+                    classChunk.getKind().toString(),
+                    999,
+                    "CLASS"
+            );
         }
+    }
 
-        return builder.build();
+    /**
+     * Saves the methods of each class and records the classes that have methods in the summary
+     */
+    private void writeMethodFiles(List<ClassInfo> classes, String outputDir,
+                                  AnalysisSummary summary) throws IOException {
+        // Save each class's methods to individual JSON file
+        for (ClassInfo classMethods : classes) {
+            if (!classMethods.getMethods().isEmpty()) {
+                saveMethodsToJson(classMethods, outputDir);
+
+                summary.addClassFile(
+                        generateFileName(classMethods.getFullyQualifiedName(), "methods"),
+                        classMethods.getFullyQualifiedName(),
+                        classMethods.getType(),
+                        classMethods.getMethods().size(),
+                        "METHODS"
+                );
+            }
+        }
     }
 
     /**
@@ -699,10 +782,7 @@ public class JavaCodeChunkerService {
 
         File outputFile = new File(outputDir, fileName);
 
-        try (FileWriter writer = new FileWriter(outputFile)) {
-            objectMapper.writerWithDefaultPrettyPrinter()
-                    .writeValue(writer, classChunk);
-        }
+        writeJson(outputFile, classChunk);
 
         logger.debug("Saved class chunk to: {}", outputFile.getAbsolutePath());
     }
@@ -714,47 +794,141 @@ public class JavaCodeChunkerService {
         List<ChunkData> chunkDataList = classMethods.getMethods();
 
         for(ChunkData chunkData : chunkDataList) {
-            String fileName = generateFileName(classMethods.getFullyQualifiedName(), chunkData.getName() + "_methods");
+            String fileName = methodFileName(classMethods, chunkData);
             File outputFile = new File(outputDir, fileName);
 
-            try (FileWriter writer = new FileWriter(outputFile)) {
-                objectMapper.writerWithDefaultPrettyPrinter()
-                        .writeValue(writer, chunkData);
-            }
+            writeJson(outputFile, chunkData);
 
             logger.debug("Saved methods to: {}", outputFile.getAbsolutePath());
         }
     }
 
+    /**
+     * Output file name of a single method chunk: the member part of its chunk id with the
+     * parameter types joined by '-', e.g. pkg_Type_check-String-int[]_methods.json, so
+     * overloads get their own files. Very long parameter lists are replaced by their hash.
+     */
+    private String methodFileName(ClassInfo classMethods, ChunkData chunkData) {
+        String chunkId = chunkData.getChunkId();
+        String member = chunkId.substring(chunkId.indexOf('#') + 1);
+        int open = member.indexOf('(');
+        int close = member.lastIndexOf(')');
+        if (open < 0 || close < open) {
+            return generateFileName(classMethods.getFullyQualifiedName(), member + "_methods");
+        }
+        String parameters = member.substring(open + 1, close);
+        if (parameters.length() > 120) {
+            CRC32 crc = new CRC32();
+            crc.update(parameters.getBytes(StandardCharsets.UTF_8));
+            parameters = String.format("%08x", crc.getValue());
+        }
+        String suffix = member.substring(0, open) + (parameters.isEmpty() ? "" : "-" + parameters.replace(',', '-'))
+                + member.substring(close + 1);
+        return generateFileName(classMethods.getFullyQualifiedName(), suffix + "_methods");
+    }
+
     /**
      * Saves project summary to JSON file
      */
-    private void saveProjectSummary(AnalysisSummary summary, String outputDir) throws IOException {
-        File summaryFile = new File(outputDir, "project-summary.json");
+    void saveProjectSummary(AnalysisSummary summary, String outputDir) throws IOException {
+        saveProjectSummary(summary, outputDir, null);
+    }
 
-        try (FileWriter writer = new FileWriter(summaryFile)) {
-            objectMapper.writerWithDefaultPrettyPrinter()
-                    .writeValue(writer, summary);
-        }
+    /**
+     * Saves the summary of a shard, or of the whole project when shard is null. The chunk
+     * index of sharded layouts covers the whole output directory, so only the latter writes it.
+     */
+    void saveProjectSummary(AnalysisSummary summary, String outputDir, Shard shard) throws IOException {
+        File summaryFile = new File(outputDir, Shard.fileName(shard, "project-summary.json"));
+
+        writeJson(summaryFile, summary);
 
         logger.info("Saved project summary to: {}", summaryFile.getAbsolutePath());
+
+        if (shard == null && outputLayout.isSharded()) {
+            Map<String, List<String>> index = outputLayout.buildIndex(outputDir);
+            writeJson(new File(outputDir, OutputLayout.INDEX_FILE), index);
+            logger.info("Saved chunk index ({} chunk ids)", index.size());
+        }
+    }
+
+    /**
+     * Deletes an output file previously written to the output directory
+     */
+    void deleteOutputFile(String fileName, String outputDir) throws IOException {
+        Path outputFile = Paths.get(outputDir, fileName);
+        if (Files.deleteIfExists(outputFile)) {
+            logger.debug("Deleted stale output: {}", outputFile.toAbsolutePath());
+        }
     }
 
     /**
-     * Generates a unique chunk ID
+     * Writes JSON to a temporary file next to the target and moves it into place,
+     * so readers (e.g. file-watch ingestion) never see a partially written file.
+     * A target that already holds the same bytes is left untouched (no write, no new
+     * modification time), so unchanged chunks cause no downstream sync or re-ingestion.
      */
-    private String generateChunkId(Path filePath, String name, String type) {
-        String filename = filePath.getFileName().toString().replace(".java", "");
-        return String.format("%s_%s_%s_%d",
-                filename, name, type, System.currentTimeMillis());
+    private void writeJson(File outputFile, Object value) throws IOException {
+        SerializationEvent event = new SerializationEvent();
+        event.begin();
+        // Chunks take the streaming serializer; summaries and indexes are written once per run
+        byte[] content;
+        if (value instanceof ChunkData chunk) {
+            chunk.setContentHash(chunkDataSerializer.contentHash(chunk));
+            content = chunkDataSerializer.toBytes(chunk);
+        } else {
+            content = objectMapper.writerWithDefaultPrettyPrinter().writeValueAsBytes(value);
+        }
+        Path target = outputFile.toPath();
+        if (properties.getOutput().isSkipUnchanged() && isUnchanged(target, content)) {
+            logger.debug("Output unchanged, not rewritten: {}", target);
+            commitSerialization(event, outputFile, content.length, "UNCHANGED");
+            return;
+        }
+
+        // Sharded layouts nest files in subdirectories created on first use
+        Files.createDirectories(target.toAbsolutePath().getParent());
+        Path temp = Files.createTempFile(target.toAbsolutePath().getParent(), "." + outputFile.getName(), ".tmp");
+
+        try {
+            Files.write(temp, content);
+
+            try {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        commitSerialization(event, outputFile, content.length, "WRITTEN");
+    }
+
+    private static void commitSerialization(SerializationEvent event, File outputFile, long size, String outcome) {
+        if (event.shouldCommit()) {
+            event.file = outputFile.getPath();
+            event.size = size;
+            event.outcome = outcome;
+            event.commit();
+        }
+    }
+
+    private static boolean isUnchanged(Path target, byte[] content) {
+        try {
+            // The size check avoids reading files that clearly differ
+            return Files.size(target) == content.length && Arrays.equals(Files.readAllBytes(target), content);
+        } catch (IOException e) {
+            return false;
+        }
     }
 
     /**
-     * Generates a safe filename from fully qualified class name
+     * Generates a safe filename from fully qualified class name, placed by the output
+     * layout (a path relative to the output directory when the layout is sharded)
      */
     private String generateFileName(String fullyQualifiedName, String suffix) {
         // Replace dots with underscores, replace $ for inner classes, and add .json extension
         String baseName = fullyQualifiedName.replace('.', '_').replace('$', '_');
-        return baseName + "_" + suffix + ".json";
+        return outputLayout.resolve(baseName + "_" + suffix + ".json", fullyQualifiedName);
     }
 }
\ No newline at end of file
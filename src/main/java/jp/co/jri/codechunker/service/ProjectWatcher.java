@@ -0,0 +1,281 @@
+package jp.co.jri.codechunker.service;
+
+import jp.co.jri.codechunker.config.ApplicationProperties;
+import jp.co.jri.codechunker.model.chunk.ChunkLevel;
+import jp.co.jri.codechunker.model.summary.AnalysisSummary;
+import jp.co.jri.codechunker.model.summary.OutputFileInfo;
+import jp.co.jri.codechunker.util.FileFinder;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ * Keeps the per-class output of a project up to date while its sources are edited.
+ * File system events are debounced and batched; only the affected files are re-chunked.
+ */
+@Service
+@RequiredArgsConstructor
+public class ProjectWatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProjectWatcher.class);
+    private final JavaCodeChunkerService javaCodeChunkerService;
+    private final FileFinder fileFinder;
+    private final ApplicationProperties properties;
+
+    /**
+     * Runs an initial analysis and then watches the project until the thread is interrupted
+     */
+    public void watch(String projectPath,
+                      ChunkLevel level,
+                      List<String> includePatterns,
+                      List<String> excludePatterns,
+                      String outputDir) throws IOException {
+
+        File outputDirectory = new File(outputDir);
+        if (!outputDirectory.exists() && outputDirectory.mkdirs()) {
+            logger.info("Created output directory: {}", outputDir);
+        }
+
+        WatchState state = new WatchState(projectPath, level, outputDir);
+
+        try (WatchService watchService = FileSystems.getDefault().newWatchService()) {
+            Path root = Paths.get(projectPath).toAbsolutePath().normalize();
+            // Module source roots of a build, as in a normal run; modules added later are not picked up
+            List<Path> sourceRoots = fileFinder.sourceRoots(root).stream()
+                    .map(sourceRoot -> sourceRoot.toAbsolutePath().normalize())
+                    .toList();
+            Map<WatchKey, Path> keys = new HashMap<>();
+
+            // Register before the initial pass so that saves made during it are not lost
+            registerTree(watchService, root, keys);
+            for (Path javaFile : fileFinder.findJavaFiles(root, sourceRoots, includePatterns, excludePatterns)) {
+                rechunk(state, javaFile.toAbsolutePath().normalize());
+            }
+            saveSummary(state);
+            logger.info("Watching {} for changes (debounce {} ms)", root, properties.getWatch().getDebounceMillis());
+
+            while (!Thread.currentThread().isInterrupted()) {
+                Set<Path> changed = new LinkedHashSet<>();
+                boolean overflow = collectBatch(watchService, keys, changed);
+
+                long start = System.currentTimeMillis();
+                if (overflow) {
+                    logger.warn("Watch events overflowed, re-scanning project");
+                    changed.addAll(state.outputsByFile.keySet());
+                    for (Path javaFile : fileFinder.findJavaFiles(root, sourceRoots, includePatterns, excludePatterns)) {
+                        changed.add(javaFile.toAbsolutePath().normalize());
+                    }
+                }
+
+                int affected = 0;
+                for (Path path : changed) {
+                    if (Files.isRegularFile(path)) {
+                        if (isWatchedFile(root, sourceRoots, path, includePatterns, excludePatterns)) {
+                            rechunk(state, path);
+                            affected++;
+                        }
+                    } else {
+                        // Deleted file, or a deleted directory with all the files below it
+                        List<Path> removed = state.outputsByFile.keySet().stream()
+                                .filter(p -> p.startsWith(path))
+                                .toList();
+                        for (Path file : removed) {
+                            remove(state, file);
+                            affected++;
+                        }
+                    }
+                }
+
+                // Events for non-Java files (including our own output) do not touch the summary
+                if (affected > 0) {
+                    saveSummary(state);
+                    logger.info("Re-chunked {} files in {} ms", affected, System.currentTimeMillis() - start);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.info("Watch mode stopped");
+        }
+    }
+
+    /**
+     * Blocks for the first event, then keeps collecting until no event arrived for the
+     * debounce period or the maximum batch delay has passed. Returns true on overflow.
+     */
+    private boolean collectBatch(WatchService watchService, Map<WatchKey, Path> keys,
+                                 Set<Path> changed) throws InterruptedException, IOException {
+        long debounce = properties.getWatch().getDebounceMillis();
+        long deadline = -1;
+        boolean overflow = false;
+
+        WatchKey key = watchService.take();
+        while (key != null) {
+            if (deadline < 0) {
+                deadline = System.currentTimeMillis() + properties.getWatch().getMaxBatchDelayMillis();
+            }
+
+            Path dir = keys.get(key);
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == OVERFLOW) {
+                    overflow = true;
+                    continue;
+                }
+                if (dir == null) {
+                    continue;
+                }
+                Path path = dir.resolve((Path) event.context()).normalize();
+                if (event.kind() == ENTRY_CREATE && Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+                    if (fileFinder.isExcludedDirectory(path.getFileName().toString())) {
+                        continue;
+                    }
+                    // New (or moved-in) directory: watch it and pick up files already inside
+                    registerTree(watchService, path, keys);
+                    try (var files = Files.walk(path)) {
+                        files.filter(Files::isRegularFile).map(Path::normalize).forEach(changed::add);
+                    }
+                } else {
+                    changed.add(path);
+                }
+            }
+            if (!key.reset()) {
+                keys.remove(key);
+            }
+
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                break;
+            }
+            key = watchService.poll(Math.min(debounce, remaining), TimeUnit.MILLISECONDS);
+        }
+        return overflow;
+    }
+
+    private void registerTree(WatchService watchService, Path start, Map<WatchKey, Path> keys) throws IOException {
+        Files.walkFileTree(start, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                if (!dir.equals(start) && fileFinder.isExcludedDirectory(dir.getFileName().toString())) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                keys.put(dir.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE), dir.normalize());
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * True for a file the initial pass would have found: below one of the source roots, not in
+     * an excluded directory, and matching the patterns
+     */
+    private boolean isWatchedFile(Path projectRoot, List<Path> sourceRoots, Path file, List<String> includePatterns,
+                                  List<String> excludePatterns) {
+        Path root = sourceRoots.stream().filter(file::startsWith).findFirst().orElse(null);
+        if (root == null) {
+            return false;
+        }
+        for (Path segment : root.relativize(file.getParent())) {
+            if (fileFinder.isExcludedDirectory(segment.toString())) {
+                return false;
+            }
+        }
+        return fileFinder.isIncluded(fileFinder.matchPath(projectRoot, file), includePatterns, excludePatterns);
+    }
+
+    /**
+     * Re-chunks one file and deletes output files it no longer produces.
+     * When the file does not parse (e.g. saved mid-edit) its previous output is kept.
+     */
+    private void rechunk(WatchState state, Path javaFile) throws IOException {
+        AnalysisSummary fileSummary = new AnalysisSummary();
+        List<String> fileNames;
+        try {
+            fileNames = javaCodeChunkerService.chunkFile(javaFile, state.level, state.outputDir, fileSummary);
+        } catch (Exception e) {
+            logger.error("Error parsing file: {} - {}", javaFile, e.getMessage(), e);
+            fileNames = null;
+        }
+
+        if (fileNames == null) {
+            state.errorFiles.add(javaFile);
+            return;
+        }
+        state.errorFiles.remove(javaFile);
+
+        FileOutputs previous = state.outputsByFile.put(javaFile, new FileOutputs(fileNames, fileSummary.getOutputFiles()));
+        if (previous != null) {
+            for (String fileName : previous.fileNames) {
+                if (!fileNames.contains(fileName)) {
+                    javaCodeChunkerService.deleteOutputFile(fileName, state.outputDir);
+                }
+            }
+        }
+        logger.debug("Re-chunked {} -> {} output files", javaFile, fileNames.size());
+    }
+
+    private void remove(WatchState state, Path javaFile) throws IOException {
+        FileOutputs previous = state.outputsByFile.remove(javaFile);
+        state.errorFiles.remove(javaFile);
+        if (previous != null) {
+            for (String fileName : previous.fileNames) {
+                javaCodeChunkerService.deleteOutputFile(fileName, state.outputDir);
+            }
+            logger.info("Removed output of deleted file: {}", javaFile);
+        }
+    }
+
+    private void saveSummary(WatchState state) throws IOException {
+        AnalysisSummary summary = new AnalysisSummary();
+        summary.setProjectPath(state.projectPath);
+        summary.setAnalysisType(state.level.getAnalysisType());
+        summary.setOutputDirectory(state.outputDir);
+        summary.setTimestamp(LocalDateTime.now());
+        // A file that fails after chunking before is in both: an error, with its previous output kept
+        Set<Path> files = new HashSet<>(state.outputsByFile.keySet());
+        files.addAll(state.errorFiles);
+        summary.setTotalFiles(files.size());
+        summary.setProcessedFiles(files.size() - state.errorFiles.size());
+        summary.setErrorFiles(state.errorFiles.size());
+
+        for (FileOutputs outputs : state.outputsByFile.values()) {
+            summary.getOutputFiles().addAll(outputs.summaryEntries);
+        }
+        summary.countOutputs(state.level);
+
+        javaCodeChunkerService.saveProjectSummary(summary, state.outputDir);
+    }
+
+    private static class WatchState {
+        private final String projectPath;
+        private final ChunkLevel level;
+        private final String outputDir;
+        private final Map<Path, FileOutputs> outputsByFile = new TreeMap<>();
+        private final Set<Path> errorFiles = new TreeSet<>();
+
+        WatchState(String projectPath, ChunkLevel level, String outputDir) {
+            this.projectPath = projectPath;
+            this.level = level;
+            this.outputDir = outputDir;
+        }
+    }
+
+    private static class FileOutputs {
+        private final List<String> fileNames;
+        private final List<OutputFileInfo> summaryEntries;
+
+        FileOutputs(List<String> fileNames, List<OutputFileInfo> summaryEntries) {
+            this.fileNames = fileNames;
+            this.summaryEntries = summaryEntries;
+        }
+    }
+}
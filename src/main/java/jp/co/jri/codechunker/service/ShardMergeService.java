@@ -0,0 +1,159 @@
+package jp.co.jri.codechunker.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jp.co.jri.codechunker.model.batch.Shard;
+import jp.co.jri.codechunker.model.summary.AnalysisSummary;
+import jp.co.jri.codechunker.model.summary.ChunkManifest;
+import jp.co.jri.codechunker.util.ChunkManifestStore;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+/**
+ * Combines the partial summaries and manifests of a sharded run (--shard i/N) into the
+ * project-summary.json and chunk-manifest.json of a single run. Every shard 1..N must be
+ * present and all must have discovered the same files. Chunk files are not copied: shards
+ * either share the output directory, or their files are gathered into it beforehand.
+ */
+@Service
+@RequiredArgsConstructor
+public class ShardMergeService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ShardMergeService.class);
+    private final JavaCodeChunkerService javaCodeChunkerService;
+    private final ChunkManifestStore chunkManifestStore;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Merges the shard files found in shardDirs (the output directory itself when the shards
+     * shared it) and writes the result to outputDir
+     */
+    public AnalysisSummary mergeShards(List<String> shardDirs, String outputDir) throws IOException {
+        Map<Integer, AnalysisSummary> summaries = new TreeMap<>();
+        Map<Integer, ChunkManifest> manifests = new TreeMap<>();
+        int count = 0;
+
+        for (String shardDir : shardDirs) {
+            List<Path> files;
+            try (Stream<Path> list = Files.list(Paths.get(shardDir))) {
+                files = list.filter(file -> file.getFileName().toString().startsWith("project-summary.")
+                        && Shard.ofFileName(file.getFileName().toString()) != null).sorted().toList();
+            }
+            for (Path file : files) {
+                Shard shard = Shard.ofFileName(file.getFileName().toString());
+                if (count != 0 && shard.getCount() != count) {
+                    throw new IllegalArgumentException("Shards of different runs: " + file + " is of " + shard.getCount()
+                            + " shards, others of " + count);
+                }
+                count = shard.getCount();
+                if (summaries.containsKey(shard.getIndex())) {
+                    throw new IllegalArgumentException("Shard " + shard + " found twice, again in " + shardDir);
+                }
+                ChunkManifest manifest = chunkManifestStore.loadManifest(shardDir, shard);
+                if (manifest == null) {
+                    throw new IOException("Shard " + shard + " in " + shardDir + " has no chunk manifest");
+                }
+                summaries.put(shard.getIndex(), objectMapper.readValue(file.toFile(), AnalysisSummary.class));
+                manifests.put(shard.getIndex(), manifest);
+            }
+        }
+
+        if (count == 0) {
+            throw new IOException("No shard summaries found in " + shardDirs);
+        }
+        List<String> missing = new ArrayList<>();
+        for (int index = 1; index <= count; index++) {
+            if (!summaries.containsKey(index)) {
+                missing.add(index + "/" + count);
+            }
+        }
+        if (!missing.isEmpty()) {
+            throw new IllegalArgumentException("Missing shards: " + missing);
+        }
+
+        AnalysisSummary first = summaries.get(1);
+        for (AnalysisSummary part : summaries.values()) {
+            if (!Objects.equals(part.getAnalysisType(), first.getAnalysisType())
+                    || !Objects.equals(part.getDiscoveryFingerprint(), first.getDiscoveryFingerprint())) {
+                throw new IllegalArgumentException("Shard " + part.getShard() + " did not see the same files or level as shard "
+                        + first.getShard() + ": all shards must run on the same checkout with the same options");
+            }
+        }
+
+        AnalysisSummary summary = merge(summaries.values(), outputDir);
+        ChunkManifest manifest = new ChunkManifest();
+        manifest.setAnalysisType(summary.getAnalysisType());
+        manifest.setTimestamp(summary.getTimestamp());
+        for (ChunkManifest part : manifests.values()) {
+            manifest.getChunks().addAll(part.getChunks());
+        }
+
+        File outputDirectory = new File(outputDir);
+        if (!outputDirectory.exists() && outputDirectory.mkdirs()) {
+            logger.info("Created output directory: {}", outputDir);
+        }
+        javaCodeChunkerService.saveProjectSummary(summary, outputDir);
+        chunkManifestStore.saveManifest(outputDir, null, manifest);
+        logger.info("Merged {} shards: {} files, {} chunks", count, summary.getTotalFiles(), manifest.getChunks().size());
+        return summary;
+    }
+
+    private static AnalysisSummary merge(Iterable<AnalysisSummary> parts, String outputDir) {
+        AnalysisSummary summary = new AnalysisSummary();
+        int totalFiles = 0, processed = 0, errors = 0, classes = 0, methods = 0, timedOut = 0, lexical = 0;
+        boolean hasMethods = false;
+        List<String> quarantined = new ArrayList<>();
+
+        for (AnalysisSummary part : parts) {
+            summary.setProjectPath(part.getProjectPath());
+            summary.setAnalysisType(part.getAnalysisType());
+            totalFiles += part.getTotalFiles();
+            processed += part.getProcessedFiles();
+            errors += part.getErrorFiles();
+            classes += part.getTotalClasses();
+            if (part.getTotalMethods() != null) {
+                hasMethods = true;
+                methods += part.getTotalMethods();
+            }
+            timedOut += part.getTimedOutFiles() != null ? part.getTimedOutFiles() : 0;
+            lexical += part.getLexicalFiles() != null ? part.getLexicalFiles() : 0;
+            if (part.getQuarantinedFiles() != null) {
+                quarantined.addAll(part.getQuarantinedFiles());
+            }
+            summary.getOutputFiles().addAll(part.getOutputFiles());
+            summary.addCodeSize(part.getCodeSize());
+        }
+
+        summary.setOutputDirectory(outputDir);
+        summary.setTimestamp(LocalDateTime.now());
+        summary.setTotalFiles(totalFiles);
+        summary.setProcessedFiles(processed);
+        summary.setErrorFiles(errors);
+        summary.setTotalClasses(classes);
+        summary.setTotalMethods(hasMethods ? methods : null);
+        if (!quarantined.isEmpty()) {
+            summary.setQuarantinedFiles(quarantined);
+        }
+        if (timedOut > 0) {
+            summary.setTimedOutFiles(timedOut);
+        }
+        if (lexical > 0) {
+            summary.setLexicalFiles(lexical);
+        }
+        return summary;
+    }
+}
@@ -0,0 +1,200 @@
+package jp.co.jri.codechunker.util;
+
+import jp.co.jri.codechunker.config.ApplicationProperties;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.xml.sax.SAXException;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Discovers the modules of a Maven or Gradle build from its build files, without running
+ * the build tool. Maven modules are read from the pom.xml modules (and profile modules),
+ * recursively; Gradle modules from the include statements of settings.gradle(.kts). Each
+ * module's source roots come from sourceDirectory/testSourceDirectory in Maven, otherwise
+ * the conventional src/main/java and src/test/java.
+ */
+@Component
+@RequiredArgsConstructor
+public class BuildModuleResolver {
+
+    private static final Logger logger = LoggerFactory.getLogger(BuildModuleResolver.class);
+
+    // include 'a', ':b:c' / include("a", "b"); includeBuild does not match
+    private static final Pattern GRADLE_INCLUDE = Pattern.compile("\\binclude\\s*\\(?((?:\\s*['\"][^'\"]+['\"]\\s*,?)+)");
+    private static final Pattern QUOTED = Pattern.compile("['\"]([^'\"]+)['\"]");
+
+    private final ApplicationProperties properties;
+
+    /**
+     * One module of the build with the source roots that exist on disk
+     */
+    @Data
+    public static class SourceModule {
+        private final String name; // directory relative to the project root, "." for the root
+        private final Path directory;
+        private final List<Path> sourceRoots;
+    }
+
+    /**
+     * Modules of the build at projectRoot that have at least one source root, or null when
+     * the directory has no pom.xml or settings.gradle(.kts)
+     */
+    public List<SourceModule> resolve(Path projectRoot) {
+        Path root = projectRoot.toAbsolutePath().normalize();
+        List<SourceModule> modules = new ArrayList<>();
+        try {
+            if (Files.isRegularFile(root.resolve("pom.xml"))) {
+                resolveMaven(root, root, modules, new LinkedHashSet<>());
+            } else if (Files.isRegularFile(root.resolve("settings.gradle"))
+                    || Files.isRegularFile(root.resolve("settings.gradle.kts"))) {
+                resolveGradle(root, modules);
+            } else {
+                return null;
+            }
+        } catch (IOException | ParserConfigurationException | SAXException e) {
+            logger.warn("Could not read the build files of {}, scanning the whole tree: {}", root, e.getMessage());
+            return null;
+        }
+        logger.info("Build discovery found {} modules with sources in {}", modules.size(), root);
+        return modules;
+    }
+
+    private void resolveMaven(Path root, Path moduleDir, List<SourceModule> modules, Set<Path> visited)
+            throws IOException, ParserConfigurationException, SAXException {
+        if (!visited.add(moduleDir)) {
+            return;
+        }
+        Path pom = Files.isDirectory(moduleDir) ? moduleDir.resolve("pom.xml") : moduleDir;
+        Path directory = pom.getParent();
+        Element project = parseXml(pom).getDocumentElement();
+
+        Element build = child(project, "build");
+        String sourceDirectory = build != null ? text(child(build, "sourceDirectory")) : null;
+        String testSourceDirectory = build != null ? text(child(build, "testSourceDirectory")) : null;
+        addModule(root, directory, modules,
+                sourceDirectory != null ? stripBasedir(sourceDirectory) : "src/main/java",
+                testSourceDirectory != null ? stripBasedir(testSourceDirectory) : "src/test/java");
+
+        List<String> children = new ArrayList<>(moduleNames(project));
+        Element profiles = child(project, "profiles");
+        if (profiles != null) {
+            for (Element profile : children(profiles, "profile")) {
+                children.addAll(moduleNames(profile));
+            }
+        }
+        for (String module : children) {
+            Path childDir = directory.resolve(module).normalize();
+            if (Files.exists(childDir)) {
+                resolveMaven(root, childDir, modules, visited);
+            } else {
+                logger.warn("Module {} of {} does not exist", module, pom);
+            }
+        }
+    }
+
+    private void resolveGradle(Path root, List<SourceModule> modules) throws IOException {
+        Path settings = Files.isRegularFile(root.resolve("settings.gradle"))
+                ? root.resolve("settings.gradle") : root.resolve("settings.gradle.kts");
+        // Line comments could hide include statements that are switched off
+        String text = Files.readString(settings, StandardCharsets.UTF_8).replaceAll("(?m)//.*$", "");
+
+        addModule(root, root, modules, "src/main/java", "src/test/java");
+        Set<String> included = new LinkedHashSet<>();
+        Matcher include = GRADLE_INCLUDE.matcher(text);
+        while (include.find()) {
+            Matcher quoted = QUOTED.matcher(include.group(1));
+            while (quoted.find()) {
+                included.add(quoted.group(1));
+            }
+        }
+        for (String path : included) {
+            String relative = (path.startsWith(":") ? path.substring(1) : path).replace(':', '/');
+            addModule(root, root.resolve(relative).normalize(), modules, "src/main/java", "src/test/java");
+        }
+    }
+
+    private void addModule(Path root, Path directory, List<SourceModule> modules,
+                           String mainRoot, String testRoot) {
+        List<Path> sourceRoots = new ArrayList<>();
+        if (Files.isDirectory(directory.resolve(mainRoot))) {
+            sourceRoots.add(directory.resolve(mainRoot).normalize());
+        }
+        if (properties.getDiscovery().isIncludeTestSources() && Files.isDirectory(directory.resolve(testRoot))) {
+            sourceRoots.add(directory.resolve(testRoot).normalize());
+        }
+        if (sourceRoots.isEmpty()) {
+            return;
+        }
+        String name = root.equals(directory) ? "." : root.relativize(directory).toString().replace('\\', '/');
+        modules.add(new SourceModule(name, directory, sourceRoots));
+    }
+
+    private static Document parseXml(Path pom) throws IOException, ParserConfigurationException, SAXException {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        // Build files are untrusted input: no DTDs or external entities
+        factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+        factory.setAttribute(XMLConstants.ACCESS_EXTERNAL_DTD, "");
+        factory.setAttribute(XMLConstants.ACCESS_EXTERNAL_SCHEMA, "");
+        return factory.newDocumentBuilder().parse(pom.toFile());
+    }
+
+    private static List<String> moduleNames(Element parent) {
+        List<String> names = new ArrayList<>();
+        Element modules = child(parent, "modules");
+        if (modules != null) {
+            for (Element module : children(modules, "module")) {
+                String name = text(module);
+                if (name != null) {
+                    names.add(name);
+                }
+            }
+        }
+        return names;
+    }
+
+    private static String stripBasedir(String directory) {
+        return directory.replace("${project.basedir}/", "").replace("${basedir}/", "");
+    }
+
+    private static Element child(Element parent, String name) {
+        List<Element> matches = children(parent, name);
+        return matches.isEmpty() ? null : matches.get(0);
+    }
+
+    private static List<Element> children(Element parent, String name) {
+        List<Element> matches = new ArrayList<>();
+        for (Node node = parent.getFirstChild(); node != null; node = node.getNextSibling()) {
+            if (node instanceof Element element && name.equals(element.getTagName())) {
+                matches.add(element);
+            }
+        }
+        return matches;
+    }
+
+    private static String text(Element element) {
+        if (element == null) {
+            return null;
+        }
+        String text = element.getTextContent().trim();
+        return text.isEmpty() ? null : text;
+    }
+}
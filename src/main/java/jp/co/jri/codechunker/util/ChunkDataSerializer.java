@@ -0,0 +1,206 @@
+package jp.co.jri.codechunker.util;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
+import com.fasterxml.jackson.core.util.DefaultPrettyPrinter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jp.co.jri.codechunker.model.chunk.ChunkData;
+import jp.co.jri.codechunker.model.chunk.data.*;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * Writes ChunkData straight through a JsonGenerator. The output is byte-identical to the
+ * pretty printed ObjectMapper output (same field order, nulls omitted), but field names are
+ * pre-encoded, no bean introspection happens per chunk and each thread reuses its buffer.
+ */
+@Component
+@RequiredArgsConstructor
+public class ChunkDataSerializer {
+
+    private static final SerializedString LANGUAGE = new SerializedString("language");
+    private static final SerializedString FILE_PATH = new SerializedString("filePath");
+    private static final SerializedString CHUNK_ID = new SerializedString("chunkId");
+    private static final SerializedString PARENT_CHUNK_ID = new SerializedString("parentChunkId");
+    private static final SerializedString CONTENT_HASH = new SerializedString("contentHash");
+    private static final SerializedString KIND = new SerializedString("kind");
+    private static final SerializedString NAME = new SerializedString("name");
+    private static final SerializedString PARENT = new SerializedString("parent");
+    private static final SerializedString SIGNATURE = new SerializedString("signature");
+    private static final SerializedString LOCATION = new SerializedString("location");
+    private static final SerializedString IMPORTS = new SerializedString("imports");
+    private static final SerializedString MODIFIERS = new SerializedString("modifiers");
+    private static final SerializedString SYMBOLS = new SerializedString("symbols");
+    private static final SerializedString METRICS = new SerializedString("metrics");
+    private static final SerializedString CODE = new SerializedString("code");
+    private static final SerializedString NOTES = new SerializedString("notes");
+
+    private static final SerializedString NAMESPACE = new SerializedString("namespace");
+    private static final SerializedString CLASSES = new SerializedString("classes");
+    private static final SerializedString START_LINE = new SerializedString("startLine");
+    private static final SerializedString END_LINE = new SerializedString("endLine");
+    private static final SerializedString METHODS = new SerializedString("methods");
+    private static final SerializedString FIELDS = new SerializedString("fields");
+    private static final SerializedString VARIABLES = new SerializedString("variables");
+    private static final SerializedString CYCLOMATIC = new SerializedString("cyclomaticComplexity");
+    private static final SerializedString COGNITIVE = new SerializedString("cognitiveComplexity");
+    private static final SerializedString LOC = new SerializedString("loc");
+    private static final SerializedString NCLOC = new SerializedString("ncloc");
+    private static final SerializedString MAX_NESTING = new SerializedString("maxNestingDepth");
+    private static final SerializedString PARAMETER_COUNT = new SerializedString("parameterCount");
+    private static final SerializedString EXTRACTION_WARNINGS = new SerializedString("extractionWarnings");
+    private static final SerializedString MISSING_DATA = new SerializedString("missingData");
+
+    // ByteArrayBuilder keeps its current block across reset(), at most 256 KB per thread
+    private static final ThreadLocal<ByteArrayBuilder> BUFFER = ThreadLocal.withInitial(() -> new ByteArrayBuilder(8192));
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    });
+
+    private final ObjectMapper objectMapper;
+
+    public byte[] toBytes(ChunkData chunk) throws IOException {
+        ByteArrayBuilder buffer = BUFFER.get();
+        try {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(buffer)) {
+                generator.setPrettyPrinter(new DefaultPrettyPrinter());
+                write(chunk, generator);
+            }
+            return buffer.toByteArray();
+        } finally {
+            buffer.reset();
+        }
+    }
+
+    /**
+     * Hex SHA-256 of the compact JSON of the chunk without filePath and contentHash, so the
+     * hash follows the content and not where the repository is checked out
+     */
+    public String contentHash(ChunkData chunk) throws IOException {
+        MessageDigest digest = SHA_256.get();
+        digest.reset();
+        // The bytes go straight into the digest, nothing is buffered
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(
+                new DigestOutputStream(OutputStream.nullOutputStream(), digest))) {
+            write(chunk, generator, false);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    public void write(ChunkData chunk, JsonGenerator generator) throws IOException {
+        write(chunk, generator, true);
+    }
+
+    private void write(ChunkData chunk, JsonGenerator generator, boolean complete) throws IOException {
+        generator.writeStartObject();
+        writeString(generator, LANGUAGE, chunk.getLanguage());
+        if (complete) {
+            writeString(generator, FILE_PATH, chunk.getFilePath());
+        }
+        writeString(generator, CHUNK_ID, chunk.getChunkId());
+        writeString(generator, PARENT_CHUNK_ID, chunk.getParentChunkId());
+        if (complete) {
+            writeString(generator, CONTENT_HASH, chunk.getContentHash());
+        }
+        writeNumber(generator, KIND, chunk.getKind());
+        writeString(generator, NAME, chunk.getName());
+
+        ParentRef parent = chunk.getParent();
+        if (parent != null) {
+            generator.writeFieldName(PARENT);
+            generator.writeStartObject();
+            writeString(generator, NAMESPACE, parent.getNamespace());
+            writeList(generator, CLASSES, parent.getClasses());
+            generator.writeEndObject();
+        }
+
+        writeString(generator, SIGNATURE, chunk.getSignature());
+
+        Location location = chunk.getLocation();
+        if (location != null) {
+            generator.writeFieldName(LOCATION);
+            generator.writeStartObject();
+            writeNumber(generator, START_LINE, location.getStartLine());
+            writeNumber(generator, END_LINE, location.getEndLine());
+            generator.writeEndObject();
+        }
+
+        writeList(generator, IMPORTS, chunk.getImports());
+        writeList(generator, MODIFIERS, chunk.getModifiers());
+
+        Symbols symbols = chunk.getSymbols();
+        if (symbols != null) {
+            generator.writeFieldName(SYMBOLS);
+            generator.writeStartObject();
+            writeList(generator, CLASSES, symbols.getClasses());
+            writeList(generator, METHODS, symbols.getMethods());
+            writeList(generator, FIELDS, symbols.getFields());
+            writeList(generator, VARIABLES, symbols.getVariables());
+            generator.writeEndObject();
+        }
+
+        Metrics metrics = chunk.getMetrics();
+        if (metrics != null) {
+            generator.writeFieldName(METRICS);
+            generator.writeStartObject();
+            writeNumber(generator, CYCLOMATIC, metrics.getCyclomaticComplexity());
+            writeNumber(generator, COGNITIVE, metrics.getCognitiveComplexity());
+            writeNumber(generator, LOC, metrics.getLoc());
+            writeNumber(generator, NCLOC, metrics.getNcloc());
+            writeNumber(generator, MAX_NESTING, metrics.getMaxNestingDepth());
+            writeNumber(generator, PARAMETER_COUNT, metrics.getParameterCount());
+            generator.writeEndObject();
+        }
+
+        writeString(generator, CODE, chunk.getCode());
+
+        Notes notes = chunk.getNotes();
+        if (notes != null) {
+            generator.writeFieldName(NOTES);
+            generator.writeStartObject();
+            writeList(generator, EXTRACTION_WARNINGS, notes.getExtractionWarnings());
+            writeList(generator, MISSING_DATA, notes.getMissingData());
+            generator.writeEndObject();
+        }
+        generator.writeEndObject();
+    }
+
+    private static void writeString(JsonGenerator generator, SerializedString name, String value) throws IOException {
+        if (value != null) {
+            generator.writeFieldName(name);
+            generator.writeString(value);
+        }
+    }
+
+    private static void writeNumber(JsonGenerator generator, SerializedString name, Integer value) throws IOException {
+        if (value != null) {
+            generator.writeFieldName(name);
+            generator.writeNumber(value);
+        }
+    }
+
+    private static void writeList(JsonGenerator generator, SerializedString name, List<String> values) throws IOException {
+        if (values == null) {
+            return;
+        }
+        generator.writeFieldName(name);
+        generator.writeStartArray();
+        for (String value : values) {
+            generator.writeString(value);
+        }
+        generator.writeEndArray();
+    }
+}
@@ -0,0 +1,200 @@
+package jp.co.jri.codechunker.util;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jp.co.jri.codechunker.model.batch.Shard;
+import jp.co.jri.codechunker.model.chunk.ChunkData;
+import jp.co.jri.codechunker.model.summary.ChunkManifest;
+import jp.co.jri.codechunker.model.summary.ChunkRef;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Keeps the chunk manifest of the last full run (chunk ids, content hashes and files) and
+ * writes change sets against it: the chunks added, modified and deleted since that run, with
+ * the payloads of added and modified chunks inline, so consumers only read what changed.
+ */
+@Component
+@RequiredArgsConstructor
+public class ChunkManifestStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChunkManifestStore.class);
+
+    private final ObjectMapper objectMapper;
+    private final ChunkDataSerializer chunkDataSerializer;
+
+    /**
+     * The manifest of the previous run (of a shard, when not null), or null when the
+     * directory has none
+     */
+    public ChunkManifest loadManifest(String outputDir, Shard shard) throws IOException {
+        Path file = Paths.get(outputDir, Shard.fileName(shard, OutputLayout.MANIFEST_FILE));
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        return objectMapper.readValue(file.toFile(), ChunkManifest.class);
+    }
+
+    public void saveManifest(String outputDir, Shard shard, ChunkManifest manifest) throws IOException {
+        manifest.getChunks().sort(Comparator.comparing(ChunkRef::getChunkId).thenComparing(ChunkRef::getFileName));
+        objectMapper.writerWithDefaultPrettyPrinter()
+                .writeValue(Paths.get(outputDir, Shard.fileName(shard, OutputLayout.MANIFEST_FILE)).toFile(), manifest);
+        logger.info("Saved chunk manifest ({} chunks)", manifest.getChunks().size());
+    }
+
+    /**
+     * Starts the change set of a run against the previous manifest; without one, every
+     * chunk of the run is added
+     */
+    public ChangeSetWriter openChangeSet(String outputDir, String analysisType, ChunkManifest previous)
+            throws IOException {
+        Path target = Paths.get(outputDir, OutputLayout.CHANGE_SET_FILE);
+        Path temp = Files.createTempFile(Paths.get(outputDir), "." + OutputLayout.CHANGE_SET_FILE, ".tmp");
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(temp.toFile(), JsonEncoding.UTF8);
+        generator.useDefaultPrettyPrinter();
+
+        generator.writeStartObject();
+        generator.writeStringField("analysisType", analysisType);
+        generator.writeObjectField("timestamp", LocalDateTime.now());
+        if (previous != null) {
+            generator.writeObjectField("previousTimestamp", previous.getTimestamp());
+        }
+        generator.writeArrayFieldStart("changes");
+        return new ChangeSetWriter(generator, temp, target, previous);
+    }
+
+    /**
+     * Streams changes to a temporary file that replaces change-set.json on complete(). Only
+     * the hashes of the previous manifest are held in memory, never the changed payloads.
+     * Closed without complete(), e.g. after a failed run, the change set is discarded:
+     * chunks the run never reached would otherwise be reported as deleted.
+     */
+    public class ChangeSetWriter implements Closeable {
+        private final JsonGenerator generator;
+        private final Path temp;
+        private final Path target;
+        private final Map<String, ChunkRef> previous = new LinkedHashMap<>();
+        private final Set<String> seen = new HashSet<>();
+        private int added;
+        private int modified;
+        private int unchanged;
+        private int deleted;
+        private boolean completed;
+
+        ChangeSetWriter(JsonGenerator generator, Path temp, Path target, ChunkManifest manifest) {
+            this.generator = generator;
+            this.temp = temp;
+            this.target = target;
+            if (manifest != null) {
+                for (ChunkRef chunk : manifest.getChunks()) {
+                    previous.put(chunk.getChunkId(), chunk);
+                }
+            }
+        }
+
+        /**
+         * Records a chunk written by this run; its content hash must be set
+         */
+        public synchronized void record(ChunkData chunk, String fileName) throws IOException {
+            if (!seen.add(chunk.getChunkId())) {
+                return;
+            }
+            ChunkRef before = previous.get(chunk.getChunkId());
+            if (before != null && Objects.equals(before.getContentHash(), chunk.getContentHash())) {
+                unchanged++;
+                return;
+            }
+            String change = before == null ? "ADDED" : "MODIFIED";
+            if (before == null) {
+                added++;
+            } else {
+                modified++;
+            }
+            generator.writeStartObject();
+            generator.writeStringField("change", change);
+            generator.writeStringField("chunkId", chunk.getChunkId());
+            generator.writeStringField("fileName", fileName);
+            generator.writeFieldName("chunk");
+            chunkDataSerializer.write(chunk, generator);
+            generator.writeEndObject();
+        }
+
+        /**
+         * Marks previous chunks as unchanged: those of a file that failed in this run, whose
+         * output files were left in place
+         */
+        public synchronized void keep(List<ChunkRef> chunks) {
+            for (ChunkRef chunk : chunks) {
+                if (seen.add(chunk.getChunkId())) {
+                    unchanged++;
+                }
+            }
+        }
+
+        /**
+         * Writes the deletions (previous chunks this run did not produce) and the totals,
+         * then moves the change set into place
+         */
+        public synchronized void complete() throws IOException {
+            try {
+                for (ChunkRef chunk : previous.values()) {
+                    if (seen.contains(chunk.getChunkId())) {
+                        continue;
+                    }
+                    deleted++;
+                    generator.writeStartObject();
+                    generator.writeStringField("change", "DELETED");
+                    generator.writeStringField("chunkId", chunk.getChunkId());
+                    generator.writeStringField("fileName", chunk.getFileName());
+                    generator.writeEndObject();
+                }
+                generator.writeEndArray();
+                generator.writeNumberField("added", added);
+                generator.writeNumberField("modified", modified);
+                generator.writeNumberField("deleted", deleted);
+                generator.writeNumberField("unchanged", unchanged);
+                generator.writeEndObject();
+                generator.close();
+                completed = true;
+
+                try {
+                    Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+            logger.info("Saved change set: {} added, {} modified, {} deleted, {} unchanged",
+                    added, modified, deleted, unchanged);
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            if (!completed) {
+                generator.close();
+                Files.deleteIfExists(temp);
+                logger.warn("Run did not complete, change set discarded");
+            }
+        }
+    }
+}
@@ -0,0 +1,299 @@
+package jp.co.jri.codechunker.util;
+
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.body.CallableDeclaration;
+import com.github.javaparser.ast.body.ConstructorDeclaration;
+import com.github.javaparser.ast.body.InitializerDeclaration;
+import com.github.javaparser.ast.body.MethodDeclaration;
+import com.github.javaparser.ast.body.TypeDeclaration;
+import com.github.javaparser.ast.expr.AssignExpr;
+import com.github.javaparser.ast.expr.Expression;
+import com.github.javaparser.ast.stmt.BlockStmt;
+import com.github.javaparser.ast.stmt.Statement;
+import jp.co.jri.codechunker.config.ApplicationProperties;
+import jp.co.jri.codechunker.model.summary.CodeSize;
+
+import java.util.List;
+
+/**
+ * Shrinks the code field of chunks as configured in code-chunker.chunk: comments and Javadoc
+ * stripped, whitespace collapsed, trivial accessors and (in class and file chunks) member
+ * bodies reduced to signatures. String, character and text block literals are never
+ * changed. Also measures code before and after, in bytes and estimated tokens.
+ */
+public class CodeNormalizer {
+
+    /**
+     * The node to print: the node itself, or a detached copy with bodies removed
+     */
+    public static Node stub(Node node, ApplicationProperties.ChunkConfig config) {
+        boolean container = node instanceof TypeDeclaration || node instanceof CompilationUnit;
+        if (container && (config.isStubMemberBodies() || config.isDropAccessorBodies())) {
+            List<CallableDeclaration> callables = node.findAll(CallableDeclaration.class);
+            if (callables.isEmpty()) {
+                return node;
+            }
+            Node copy = node.clone();
+            // A body removed first detaches the members nested in it; they need no change
+            for (CallableDeclaration<?> callable : copy.findAll(CallableDeclaration.class)) {
+                stubBody(callable, config);
+            }
+            if (config.isStubMemberBodies()) {
+                for (InitializerDeclaration initializer : copy.findAll(InitializerDeclaration.class)) {
+                    initializer.setBody(new BlockStmt());
+                }
+            }
+            return copy;
+        }
+        if (node instanceof MethodDeclaration method && config.isDropAccessorBodies() && isTrivialAccessor(method)) {
+            MethodDeclaration copy = method.clone();
+            copy.removeBody();
+            return copy;
+        }
+        return node;
+    }
+
+    private static void stubBody(CallableDeclaration<?> callable, ApplicationProperties.ChunkConfig config) {
+        if (callable instanceof MethodDeclaration method) {
+            if (config.isStubMemberBodies() || isTrivialAccessor(method)) {
+                method.removeBody();
+            }
+        } else if (callable instanceof ConstructorDeclaration constructor && config.isStubMemberBodies()) {
+            constructor.setBody(new BlockStmt());
+        }
+    }
+
+    /**
+     * getX()/isX() returning a field, or setX(x) assigning its parameter to a field
+     */
+    static boolean isTrivialAccessor(MethodDeclaration method) {
+        BlockStmt body = method.getBody().orElse(null);
+        if (body == null || body.getStatements().size() != 1) {
+            return false;
+        }
+        Statement statement = body.getStatement(0);
+        String name = method.getNameAsString();
+
+        if (method.getParameters().isEmpty() && (name.startsWith("get") || name.startsWith("is"))
+                && statement.isReturnStmt()) {
+            return statement.asReturnStmt().getExpression().map(CodeNormalizer::isField).orElse(false);
+        }
+        if (method.getParameters().size() == 1 && name.startsWith("set") && statement.isExpressionStmt()
+                && statement.asExpressionStmt().getExpression().isAssignExpr()) {
+            AssignExpr assign = statement.asExpressionStmt().getExpression().asAssignExpr();
+            return assign.getOperator() == AssignExpr.Operator.ASSIGN && isField(assign.getTarget())
+                    && assign.getValue().isNameExpr()
+                    && assign.getValue().asNameExpr().getNameAsString().equals(method.getParameter(0).getNameAsString());
+        }
+        return false;
+    }
+
+    private static boolean isField(Expression expression) {
+        return expression.isNameExpr()
+                || expression.isFieldAccessExpr() && expression.asFieldAccessExpr().getScope().isThisExpr();
+    }
+
+    /**
+     * Applies the text options (comments, Javadoc, whitespace); the code itself when none is set
+     */
+    public static String normalize(String code, ApplicationProperties.ChunkConfig config) {
+        boolean stripComments = config.isStripComments();
+        boolean stripJavadoc = config.isStripJavadoc();
+        boolean collapse = config.isCollapseWhitespace();
+        if (code == null || !stripComments && !stripJavadoc && !collapse) {
+            return code;
+        }
+
+        StringBuilder out = new StringBuilder(code.length());
+        int length = code.length();
+        int i = 0;
+        while (i < length) {
+            char c = code.charAt(i);
+            char next = i + 1 < length ? code.charAt(i + 1) : 0;
+
+            if (c == '/' && next == '/') {
+                int end = code.indexOf('\n', i);
+                end = end < 0 ? length : end;
+                // The \r of a CRLF line end is not part of the comment
+                if (end > i && code.charAt(end - 1) == '\r') {
+                    end--;
+                }
+                if (stripComments) {
+                    i = dropComment(out, code, end);
+                } else {
+                    out.append(code, i, end);
+                    i = end;
+                }
+            } else if (c == '/' && next == '*') {
+                int close = code.indexOf("*/", i + 2);
+                int end = close < 0 ? length : close + 2;
+                boolean javadoc = i + 2 < length && code.charAt(i + 2) == '*' && end - i > 4;
+                if (javadoc ? stripJavadoc : stripComments) {
+                    i = dropComment(out, code, end);
+                    // Keep tokens on both sides apart: int/*x*/y
+                    if (i < length && out.length() > 0 && isWordChar(out.charAt(out.length() - 1))
+                            && isWordChar(code.charAt(i))) {
+                        out.append(' ');
+                    }
+                } else {
+                    out.append(code, i, end);
+                    i = end;
+                }
+            } else if (c == '"' && next == '"' && i + 2 < length && code.charAt(i + 2) == '"') {
+                int end = literalEnd(code, i + 3, "\"\"\"");
+                out.append(code, i, end);
+                i = end;
+            } else if (c == '"' || c == '\'') {
+                int end = literalEnd(code, i + 1, String.valueOf(c));
+                out.append(code, i, end);
+                i = end;
+            } else if (collapse && (c == ' ' || c == '\t' || c == '\f')) {
+                if (out.length() > 0 && out.charAt(out.length() - 1) != ' ' && out.charAt(out.length() - 1) != '\n') {
+                    out.append(' ');
+                }
+                i++;
+            } else if (collapse && (c == '\r' || c == '\n')) {
+                trimLine(out);
+                if (out.length() > 0 && out.charAt(out.length() - 1) != '\n') {
+                    out.append('\n');
+                }
+                i += c == '\r' && next == '\n' ? 2 : 1;
+            } else {
+                out.append(c);
+                i++;
+            }
+        }
+        if (collapse) {
+            trimLine(out);
+            while (out.length() > 0 && out.charAt(out.length() - 1) == '\n') {
+                out.setLength(out.length() - 1);
+            }
+        }
+        return out.toString();
+    }
+
+    /**
+     * Skips a comment ending at end. A comment alone on its lines takes them along, so no
+     * blank or whitespace-only line is left behind. Returns the position to continue from.
+     */
+    private static int dropComment(StringBuilder out, String code, int end) {
+        int lineStart = out.lastIndexOf("\n") + 1;
+        boolean aloneBefore = out.substring(lineStart).isBlank();
+        int after = end;
+        while (after < code.length() && (code.charAt(after) == ' ' || code.charAt(after) == '\t' || code.charAt(after) == '\r')) {
+            after++;
+        }
+        boolean aloneAfter = after >= code.length() || code.charAt(after) == '\n';
+        if (!aloneAfter) {
+            return end;
+        }
+        if (aloneBefore) {
+            out.setLength(lineStart);
+            return Math.min(after + 1, code.length());
+        }
+        trimLine(out);
+        return end;
+    }
+
+    private static int literalEnd(String code, int from, String quote) {
+        int i = from;
+        while (i < code.length()) {
+            char c = code.charAt(i);
+            if (c == '\\') {
+                i += 2;
+            } else if (code.startsWith(quote, i)) {
+                return i + quote.length();
+            } else if (c == '\n' && quote.length() == 1) {
+                // Unterminated string or char literal: stop at the line end
+                return i;
+            } else {
+                i++;
+            }
+        }
+        return code.length();
+    }
+
+    private static void trimLine(StringBuilder out) {
+        int end = out.length();
+        while (end > 0 && (out.charAt(end - 1) == ' ' || out.charAt(end - 1) == '\t')) {
+            end--;
+        }
+        out.setLength(end);
+    }
+
+    private static boolean isWordChar(char c) {
+        return Character.isJavaIdentifierPart(c);
+    }
+
+    /**
+     * Bytes and estimated tokens of the code as printed and as emitted
+     */
+    public static CodeSize measure(String raw, String code) {
+        CodeSize size = new CodeSize();
+        if (raw == null) {
+            return size;
+        }
+        size.setRawBytes(utf8Length(raw));
+        size.setRawTokens(estimateTokens(raw));
+        if (code == raw) {
+            size.setBytes(size.getRawBytes());
+            size.setTokens(size.getRawTokens());
+        } else if (code != null) {
+            size.setBytes(utf8Length(code));
+            size.setTokens(estimateTokens(code));
+        }
+        return size;
+    }
+
+    /**
+     * Rough count of the tokens a BPE tokenizer makes of code: about one per four characters
+     * of an identifier or number, one per symbol, one per run of indentation or blank lines;
+     * a single space joins the next word
+     */
+    public static long estimateTokens(String code) {
+        long tokens = 0;
+        int i = 0;
+        int length = code.length();
+        while (i < length) {
+            char c = code.charAt(i);
+            if (isWordChar(c)) {
+                int start = i;
+                while (i < length && isWordChar(code.charAt(i))) {
+                    i++;
+                }
+                tokens += (i - start + 3) / 4;
+            } else if (Character.isWhitespace(c)) {
+                int start = i;
+                while (i < length && Character.isWhitespace(code.charAt(i))) {
+                    i++;
+                }
+                if (i - start > 1) {
+                    tokens++;
+                }
+            } else {
+                tokens++;
+                i++;
+            }
+        }
+        return tokens;
+    }
+
+    private static long utf8Length(String text) {
+        long bytes = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                bytes++;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c)) {
+                bytes += 4;
+                i++;
+            } else {
+                bytes += 3;
+            }
+        }
+        return bytes;
+    }
+}
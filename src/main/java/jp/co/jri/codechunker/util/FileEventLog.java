@@ -0,0 +1,181 @@
+package jp.co.jri.codechunker.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import jakarta.annotation.PreDestroy;
+import jp.co.jri.codechunker.config.ApplicationProperties;
+import jp.co.jri.codechunker.model.checkpoint.FileEventRecord;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Machine-readable log of processed files (--event-log): one JSON line per file with its
+ * size, chunk count, parse time and status. Chunking threads only enqueue the event; a
+ * background thread stats the file, serializes and writes it, so a slow disk never holds
+ * up a run. When the queue is full, events are dropped and counted instead of waiting.
+ */
+@Component
+@RequiredArgsConstructor
+public class FileEventLog {
+
+    private static final Logger logger = LoggerFactory.getLogger(FileEventLog.class);
+
+    private final ApplicationProperties properties;
+    private final ObjectMapper objectMapper;
+
+    private volatile EventWriter writer;
+
+    /**
+     * Starts appending events to the file; an already open log is closed first
+     */
+    public synchronized void open(Path file) throws IOException {
+        close();
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        writer = new EventWriter(file, out, Math.max(16, properties.getLogging().getEventQueueSize()),
+                objectMapper.writer().without(SerializationFeature.INDENT_OUTPUT));
+        logger.info("Writing file events to {}", file.toAbsolutePath());
+    }
+
+    public boolean isOpen() {
+        return writer != null;
+    }
+
+    /**
+     * Records a finished file; does nothing when the log is not open
+     */
+    public void record(Path file, int chunks, long parseMillis, String status) {
+        EventWriter current = writer;
+        if (current != null) {
+            current.offer(new Pending(LocalDateTime.now(), file, chunks, parseMillis, status));
+        }
+    }
+
+    /**
+     * Writes the queued events and closes the file
+     */
+    @PreDestroy
+    public synchronized void close() {
+        EventWriter current = writer;
+        if (current == null) {
+            return;
+        }
+        writer = null;
+        current.finish();
+    }
+
+    private static final class Pending {
+        private static final Pending END = new Pending(null, null, 0, 0, null);
+
+        final LocalDateTime timestamp;
+        final Path file;
+        final int chunks;
+        final long parseMillis;
+        final String status;
+
+        Pending(LocalDateTime timestamp, Path file, int chunks, long parseMillis, String status) {
+            this.timestamp = timestamp;
+            this.file = file;
+            this.chunks = chunks;
+            this.parseMillis = parseMillis;
+            this.status = status;
+        }
+    }
+
+    private static final class EventWriter implements Runnable {
+        private final Path target;
+        private final BufferedWriter out;
+        private final BlockingQueue<Pending> queue;
+        private final ObjectWriter lineWriter;
+        private final Thread thread;
+        private final AtomicLong dropped = new AtomicLong();
+        private long written;
+
+        EventWriter(Path target, BufferedWriter out, int capacity, ObjectWriter lineWriter) {
+            this.target = target;
+            this.out = out;
+            this.queue = new ArrayBlockingQueue<>(capacity);
+            this.lineWriter = lineWriter;
+            this.thread = new Thread(this, "file-event-log");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        void offer(Pending event) {
+            if (!queue.offer(event)) {
+                dropped.incrementAndGet();
+            }
+        }
+
+        @Override
+        public void run() {
+            try (out) {
+                while (true) {
+                    Pending event = queue.take();
+                    if (event == Pending.END) {
+                        break;
+                    }
+                    out.write(lineWriter.writeValueAsString(toRecord(event)));
+                    out.newLine();
+                    written++;
+                    // Flush when idle, so the file is current without a write per event
+                    if (queue.isEmpty()) {
+                        out.flush();
+                    }
+                }
+            } catch (IOException e) {
+                logger.error("File event log {} failed: {}", target, e.getMessage());
+                queue.clear();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private static FileEventRecord toRecord(Pending event) {
+            FileEventRecord record = new FileEventRecord();
+            record.setTimestamp(event.timestamp);
+            record.setFile(event.file.toString());
+            record.setBytes(SourceArchives.size(event.file));
+            record.setChunks(event.chunks);
+            record.setParseMillis(event.parseMillis);
+            record.setStatus(event.status);
+            return record;
+        }
+
+        void finish() {
+            try {
+                // A writer that failed stops taking events, so do not wait on a full queue for it
+                while (thread.isAlive() && !queue.offer(Pending.END, 100, TimeUnit.MILLISECONDS)) {
+                    logger.debug("Waiting for the file event writer to catch up");
+                }
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (dropped.get() > 0) {
+                logger.warn("File event log {}: {} events dropped, queue full (code-chunker.logging.event-queue-size)",
+                        target, dropped.get());
+            }
+            logger.info("Wrote {} file events to {}", written, target.toAbsolutePath());
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package jp.co.jri.codechunker.util;
 
+import jp.co.jri.codechunker.config.ApplicationProperties;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -9,86 +10,212 @@ import java.io.IOException;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 
 @Component
 @RequiredArgsConstructor
 public class FileFinder {
 
     private static final Logger logger = LoggerFactory.getLogger(FileFinder.class);
-
+    private final ApplicationProperties properties;
+    private final BuildModuleResolver buildModuleResolver;
+    private final SourceArchives sourceArchives;
+
+    /**
+     * Finds the Java files of a project. For Maven and Gradle builds only the source roots
+     * of the build's modules are scanned (code-chunker.discovery.build-aware), otherwise
+     * the whole directory tree. The project may also be a source archive (jar or zip), and
+     * archives found in the tree are read in place (code-chunker.discovery.scan-archives).
+     */
     public List<Path> findJavaFiles(String projectPath,
                                     List<String> includePatterns,
                                     List<String> excludePatterns) throws IOException {
+        return findJavaFiles(projectPath, includePatterns, excludePatterns, null);
+    }
+
+    /**
+     * Finds the Java files of a project and puts the size in bytes of each into sizes, read
+     * from the directory walk so no file is touched twice
+     */
+    public List<Path> findJavaFiles(String projectPath,
+                                    List<String> includePatterns,
+                                    List<String> excludePatterns,
+                                    Map<Path, Long> sizes) throws IOException {
 
-        List<Path> javaFiles = new ArrayList<>();
         Path startPath = Paths.get(projectPath);
 
         if (!Files.exists(startPath)) {
             throw new IOException("Project path does not exist: " + projectPath);
         }
 
+        if (sourceArchives.isArchive(startPath)) {
+            return findJavaFiles(startPath, List.of(sourceArchives.open(startPath)), includePatterns, excludePatterns,
+                    sizes);
+        }
+
         if (!Files.isDirectory(startPath)) {
-            throw new IOException("Project path is not a directory: " + projectPath);
+            throw new IOException("Project path is not a directory or source archive: " + projectPath);
         }
 
-        logger.debug("Searching for Java files in: {}", startPath.toAbsolutePath());
+        return findJavaFiles(startPath, sourceRoots(startPath), includePatterns, excludePatterns, sizes);
+    }
 
-        Files.walkFileTree(startPath, new SimpleFileVisitor<Path>() {
-            @Override
-            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
-                String fileName = file.toString();
-
-                if (fileName.endsWith(".java")) {
-                    boolean include = true;
-
-                    if (includePatterns != null && !includePatterns.isEmpty()) {
-                        include = false;
-                        for (String pattern : includePatterns) {
-                            if (fileName.matches(pattern)) {
-                                include = true;
-                                break;
-                            }
-                        }
-                    }
+    /**
+     * The directories a project directory is searched in: the source roots of its build's
+     * modules (code-chunker.discovery.build-aware), or the directory itself
+     */
+    public List<Path> sourceRoots(Path projectDir) {
+        if (properties.getDiscovery().isBuildAware()) {
+            List<BuildModuleResolver.SourceModule> modules = buildModuleResolver.resolve(projectDir);
+            if (modules != null) {
+                List<Path> moduleRoots = new ArrayList<>();
+                for (BuildModuleResolver.SourceModule module : modules) {
+                    moduleRoots.addAll(module.getSourceRoots());
+                }
+                if (!moduleRoots.isEmpty()) {
+                    return moduleRoots;
+                }
+                // Aggregator-only builds, custom source directories: better the whole tree than nothing
+                logger.warn("No module of the build in {} has a standard source root, searching the whole directory",
+                        projectDir);
+            }
+        }
+        return List.of(projectDir);
+    }
 
-                    if (include && excludePatterns != null) {
-                        for (String pattern : excludePatterns) {
-                            if (fileName.matches(pattern)) {
-                                include = false;
-                                break;
-                            }
-                        }
-                    }
+    /**
+     * Finds the Java files under the given source roots of a project directory
+     */
+    public List<Path> findJavaFiles(Path projectDir,
+                                    List<Path> sourceRoots,
+                                    List<String> includePatterns,
+                                    List<String> excludePatterns) throws IOException {
+        return findJavaFiles(projectDir, sourceRoots, includePatterns, excludePatterns, null);
+    }
 
-                    if (include) {
-                        javaFiles.add(file);
+    /**
+     * Finds the Java files under the given source roots of a project directory; the patterns
+     * are matched against matchPath(projectDir, file). sizes, when not null, receives the
+     * size in bytes of each file found
+     */
+    public List<Path> findJavaFiles(Path projectDir,
+                                    List<Path> sourceRoots,
+                                    List<String> includePatterns,
+                                    List<String> excludePatterns,
+                                    Map<Path, Long> sizes) throws IOException {
+        List<Path> javaFiles = new ArrayList<>();
+        for (Path sourceRoot : sourceRoots) {
+            logger.debug("Searching for Java files in: {}", sourceRoot.toAbsolutePath());
+            walk(projectDir, sourceRoot, includePatterns, excludePatterns, javaFiles, sizes);
+        }
+
+        // Directory listing order depends on the file system; sort so runs are reproducible.
+        // Paths of different file systems (archives) do not compare, so sort by name
+        javaFiles.sort(Comparator.comparing(sourceArchives::describe));
+
+        logger.info("Found {} Java files to analyze", javaFiles.size());
+
+        if (logger.isDebugEnabled()) {
+            for (Path p : javaFiles) {
+                logger.debug(p.toString());
+            }
+        }
+
+        return javaFiles;
+    }
+
+    private void walk(Path projectDir, Path startPath, List<String> includePatterns, List<String> excludePatterns,
+                      List<Path> javaFiles, Map<Path, Long> sizes) throws IOException {
+        Files.walkFileTree(startPath, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                if (isIncluded(matchPath(projectDir, file), includePatterns, excludePatterns)) {
+                    javaFiles.add(file);
+                    if (sizes != null) {
+                        sizes.put(file, attrs.size());
                     }
+                } else if (properties.getDiscovery().isScanArchives()
+                        && file.getFileSystem() == FileSystems.getDefault() && sourceArchives.isArchive(file)) {
+                    // Archives nested in archives are not opened: that would need extraction
+                    logger.debug("Searching for Java files in archive: {}", file);
+                    walk(projectDir, sourceArchives.open(file), includePatterns, excludePatterns, javaFiles, sizes);
                 }
                 return FileVisitResult.CONTINUE;
             }
 
             @Override
             public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
-                String dirName = dir.getFileName().toString();
-                if (dirName.equals("target") || dirName.equals("bin") ||
-                        dirName.equals(".git") || dirName.equals("build") ||
-                        dirName.equals("node_modules") || dirName.equals(".idea") ||
-                        dirName.equals(".vscode")) {
+                // The root of an archive has no file name
+                if (dir.getFileName() != null && isExcludedDirectory(dir.getFileName().toString())) {
                     return FileVisitResult.SKIP_SUBTREE;
                 }
                 return FileVisitResult.CONTINUE;
             }
         });
+    }
 
-        logger.info("Found {} Java files to analyze", javaFiles.size());
+    /**
+     * The path of a file the include/exclude patterns are matched against: relative to the
+     * project directory with a leading /, e.g. /src/test/java/a/ATest.java, or the entry path
+     * of a file inside an archive. Where the project lives on disk does not matter.
+     */
+    public String matchPath(Path projectDir, Path file) {
+        if (file.getFileSystem() != FileSystems.getDefault()) {
+            return file.toAbsolutePath().toString();
+        }
+        Path base = projectDir.toAbsolutePath().normalize();
+        Path absolute = file.toAbsolutePath().normalize();
+        if (!absolute.startsWith(base)) {
+            // Source roots outside the project directory (batch manifests)
+            return absolute.toString();
+        }
+        StringBuilder path = new StringBuilder();
+        for (Path segment : base.relativize(absolute)) {
+            path.append('/').append(segment);
+        }
+        return path.toString();
+    }
+
+    /**
+     * Checks a path (see matchPath) against the .java suffix and the include/exclude regex patterns
+     */
+    public boolean isIncluded(String fileName,
+                              List<String> includePatterns,
+                              List<String> excludePatterns) {
+        if (!fileName.endsWith(".java")) {
+            return false;
+        }
 
-        if(javaFiles != null && javaFiles.size() >= 0) {
-            for(Path p: javaFiles){
-                logger.info(p.toString());
+        boolean include = true;
+
+        if (includePatterns != null && !includePatterns.isEmpty()) {
+            include = false;
+            for (String pattern : includePatterns) {
+                if (fileName.matches(pattern)) {
+                    include = true;
+                    break;
+                }
             }
         }
 
-        return javaFiles;
+        if (include && excludePatterns != null) {
+            for (String pattern : excludePatterns) {
+                if (fileName.matches(pattern)) {
+                    include = false;
+                    break;
+                }
+            }
+        }
+
+        return include;
+    }
+
+    /**
+     * Checks whether a directory is skipped while scanning (code-chunker.filter.exclude-directories)
+     */
+    public boolean isExcludedDirectory(String dirName) {
+        return properties.getFilter().getExcludeDirectories().contains(dirName);
     }
 }
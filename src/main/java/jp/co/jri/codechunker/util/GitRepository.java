@@ -0,0 +1,662 @@
+package jp.co.jri.codechunker.util;
+
+import lombok.Data;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.stream.Stream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Read-only access to a local git repository.
+ * Reads loose objects and pack files (idx v2) directly from the .git directory,
+ * so two commits can be diffed without a git binary or any network access.
+ */
+public class GitRepository implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(GitRepository.class);
+
+    private static final int OBJ_COMMIT = 1;
+    private static final int OBJ_TREE = 2;
+    private static final int OBJ_BLOB = 3;
+    private static final int OBJ_TAG = 4;
+    private static final int OBJ_OFS_DELTA = 6;
+    private static final int OBJ_REF_DELTA = 7;
+
+    private final Path workTree;
+    private final Path gitDir;
+    private final Path commonDir;
+    private final List<PackFile> packs = new ArrayList<>();
+
+    private GitRepository(Path workTree, Path gitDir) throws IOException {
+        this.workTree = workTree;
+        this.gitDir = gitDir;
+
+        Path commonDirFile = gitDir.resolve("commondir");
+        this.commonDir = Files.isRegularFile(commonDirFile)
+                ? gitDir.resolve(Files.readString(commonDirFile).trim()).normalize()
+                : gitDir;
+
+        Path packDir = commonDir.resolve("objects").resolve("pack");
+        if (Files.isDirectory(packDir)) {
+            try (Stream<Path> files = Files.list(packDir)) {
+                for (Path idx : files.filter(p -> p.toString().endsWith(".idx")).sorted().toList()) {
+                    String name = idx.getFileName().toString();
+                    Path pack = packDir.resolve(name.substring(0, name.length() - 4) + ".pack");
+                    if (Files.isRegularFile(pack)) {
+                        packs.add(new PackFile(idx, pack));
+                    }
+                }
+            }
+        }
+        logger.debug("Opened git repository {} ({} pack files)", gitDir, packs.size());
+    }
+
+    /**
+     * Opens the repository containing the given path by walking up to the nearest .git
+     */
+    public static GitRepository open(Path start) throws IOException {
+        Path dir = start.toAbsolutePath().normalize();
+        while (dir != null) {
+            Path dotGit = dir.resolve(".git");
+            if (Files.isDirectory(dotGit)) {
+                return new GitRepository(dir, dotGit);
+            }
+            if (Files.isRegularFile(dotGit)) {
+                // Worktrees and submodules use a ".git" file pointing at the real git directory
+                String content = Files.readString(dotGit).trim();
+                if (content.startsWith("gitdir:")) {
+                    Path target = dir.resolve(content.substring("gitdir:".length()).trim()).normalize();
+                    return new GitRepository(dir, target);
+                }
+            }
+            dir = dir.getParent();
+        }
+        throw new IOException("Not inside a git repository: " + start);
+    }
+
+    public Path getWorkTree() {
+        return workTree;
+    }
+
+    /**
+     * Resolves a revision (full or abbreviated id, branch, tag, HEAD, optionally
+     * followed by ~N or ^ suffixes) to a commit id
+     */
+    public String resolve(String revision) throws IOException {
+        int suffix = indexOfSuffix(revision);
+        String base = suffix < 0 ? revision : revision.substring(0, suffix);
+
+        String id = resolveRef(base);
+        if (id == null && base.matches("[0-9a-fA-F]{4,40}")) {
+            id = resolveAbbreviated(base.toLowerCase());
+        }
+        if (id == null) {
+            throw new IOException("Unknown git revision: " + revision);
+        }
+        id = peelToCommit(id);
+
+        // Walk first parents for ~N / ^ suffixes
+        if (suffix >= 0) {
+            String rest = revision.substring(suffix);
+            int i = 0;
+            while (i < rest.length()) {
+                char c = rest.charAt(i++);
+                int start = i;
+                while (i < rest.length() && Character.isDigit(rest.charAt(i))) {
+                    i++;
+                }
+                int count = start == i ? 1 : Integer.parseInt(rest.substring(start, i));
+                if (c == '~') {
+                    for (int n = 0; n < count; n++) {
+                        id = firstParent(id, revision);
+                    }
+                } else if (count > 0) {
+                    // ^N selects the N-th parent; only the first parent chain is supported
+                    if (count != 1) {
+                        throw new IOException("Only first-parent selection is supported: " + revision);
+                    }
+                    id = firstParent(id, revision);
+                }
+            }
+        }
+        return id;
+    }
+
+    /**
+     * Lists every file of a commit as path (relative to the work tree, '/' separated) to blob id
+     */
+    public Map<String, String> listFiles(String commitId) throws IOException {
+        GitObject commit = readObject(commitId);
+        if (commit.type != OBJ_COMMIT) {
+            throw new IOException("Not a commit: " + commitId);
+        }
+        String treeId = headerValue(commit.data, "tree");
+        Map<String, String> files = new TreeMap<>();
+        collectTree(treeId, "", files);
+        return files;
+    }
+
+    /**
+     * Reads the content of a blob
+     */
+    public byte[] readBlob(String blobId) throws IOException {
+        GitObject object = readObject(blobId);
+        if (object.type != OBJ_BLOB) {
+            throw new IOException("Not a blob: " + blobId);
+        }
+        return object.data;
+    }
+
+    /**
+     * Computes the file level changes between two commits.
+     * A deleted and an added path with identical content are reported as one rename.
+     */
+    public List<DiffEntry> diff(String baseCommit, String headCommit) throws IOException {
+        Map<String, String> baseFiles = listFiles(baseCommit);
+        Map<String, String> headFiles = listFiles(headCommit);
+
+        List<DiffEntry> entries = new ArrayList<>();
+        Map<String, Deque<String>> deletedByBlob = new HashMap<>();
+
+        for (Map.Entry<String, String> base : baseFiles.entrySet()) {
+            String headId = headFiles.get(base.getKey());
+            if (headId == null) {
+                deletedByBlob.computeIfAbsent(base.getValue(), k -> new ArrayDeque<>()).add(base.getKey());
+            } else if (!headId.equals(base.getValue())) {
+                entries.add(new DiffEntry(ChangeType.MODIFIED, base.getKey(), base.getKey(), base.getValue(), headId));
+            }
+        }
+
+        for (Map.Entry<String, String> head : headFiles.entrySet()) {
+            if (baseFiles.containsKey(head.getKey())) {
+                continue;
+            }
+            Deque<String> sources = deletedByBlob.get(head.getValue());
+            if (sources != null && !sources.isEmpty()) {
+                String oldPath = sources.poll();
+                entries.add(new DiffEntry(ChangeType.RENAMED, oldPath, head.getKey(), head.getValue(), head.getValue()));
+            } else {
+                entries.add(new DiffEntry(ChangeType.ADDED, null, head.getKey(), null, head.getValue()));
+            }
+        }
+
+        for (Map.Entry<String, Deque<String>> deleted : deletedByBlob.entrySet()) {
+            for (String path : deleted.getValue()) {
+                entries.add(new DiffEntry(ChangeType.DELETED, path, null, deleted.getKey(), null));
+            }
+        }
+
+        entries.sort(Comparator.comparing(e -> e.getNewPath() != null ? e.getNewPath() : e.getOldPath()));
+        return entries;
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (PackFile pack : packs) {
+            pack.close();
+        }
+        packs.clear();
+    }
+
+    private void collectTree(String treeId, String prefix, Map<String, String> files) throws IOException {
+        GitObject tree = readObject(treeId);
+        if (tree.type != OBJ_TREE) {
+            throw new IOException("Not a tree: " + treeId);
+        }
+        byte[] data = tree.data;
+        int pos = 0;
+        while (pos < data.length) {
+            int space = indexOf(data, (byte) ' ', pos);
+            int nul = indexOf(data, (byte) 0, space);
+            String mode = new String(data, pos, space - pos, StandardCharsets.US_ASCII);
+            String name = new String(data, space + 1, nul - space - 1, StandardCharsets.UTF_8);
+            String id = toHex(data, nul + 1);
+            pos = nul + 21;
+
+            if (mode.equals("40000")) {
+                collectTree(id, prefix + name + "/", files);
+            } else if (!mode.equals("160000")) {
+                // Regular files and symlinks; gitlinks (submodules) have no blob here
+                files.put(prefix + name, id);
+            }
+        }
+    }
+
+    private String firstParent(String commitId, String revision) throws IOException {
+        GitObject commit = readObject(commitId);
+        String parent = headerValue(commit.data, "parent");
+        if (parent == null) {
+            throw new IOException("Revision has no parent: " + revision);
+        }
+        return parent;
+    }
+
+    private String peelToCommit(String id) throws IOException {
+        GitObject object = readObject(id);
+        while (object.type == OBJ_TAG) {
+            id = headerValue(object.data, "object");
+            object = readObject(id);
+        }
+        if (object.type != OBJ_COMMIT) {
+            throw new IOException("Revision does not point to a commit: " + id);
+        }
+        return id;
+    }
+
+    private String resolveRef(String name) throws IOException {
+        if (name.matches("[0-9a-fA-F]{40}")) {
+            return name.toLowerCase();
+        }
+        List<String> candidates = List.of(name, "refs/" + name, "refs/tags/" + name,
+                "refs/heads/" + name, "refs/remotes/" + name, "refs/remotes/" + name + "/HEAD");
+        for (String candidate : candidates) {
+            String id = readRef(candidate, 0);
+            if (id != null) {
+                return id;
+            }
+        }
+        return null;
+    }
+
+    private String readRef(String ref, int depth) throws IOException {
+        if (depth > 5) {
+            throw new IOException("Symbolic ref loop at " + ref);
+        }
+        // HEAD and other per-worktree refs live in gitDir, shared refs in commonDir
+        for (Path dir : List.of(gitDir, commonDir)) {
+            Path file = dir.resolve(ref);
+            if (Files.isRegularFile(file)) {
+                String content = Files.readString(file).trim();
+                if (content.startsWith("ref:")) {
+                    return readRef(content.substring(4).trim(), depth + 1);
+                }
+                if (content.matches("[0-9a-f]{40}")) {
+                    return content;
+                }
+            }
+        }
+        Path packedRefs = commonDir.resolve("packed-refs");
+        if (Files.isRegularFile(packedRefs)) {
+            for (String line : Files.readAllLines(packedRefs)) {
+                if (line.startsWith("#") || line.startsWith("^") || line.length() < 42) {
+                    continue;
+                }
+                if (line.substring(41).equals(ref)) {
+                    return line.substring(0, 40);
+                }
+            }
+        }
+        return null;
+    }
+
+    private String resolveAbbreviated(String prefix) throws IOException {
+        Set<String> matches = new HashSet<>();
+        Path looseDir = commonDir.resolve("objects").resolve(prefix.substring(0, 2));
+        if (Files.isDirectory(looseDir)) {
+            try (Stream<Path> files = Files.list(looseDir)) {
+                files.map(p -> prefix.substring(0, 2) + p.getFileName())
+                        .filter(id -> id.startsWith(prefix))
+                        .forEach(matches::add);
+            }
+        }
+        for (PackFile pack : packs) {
+            pack.collectPrefixMatches(prefix, matches);
+        }
+        if (matches.size() > 1) {
+            throw new IOException("Ambiguous abbreviated revision: " + prefix);
+        }
+        return matches.isEmpty() ? null : matches.iterator().next();
+    }
+
+    private GitObject readObject(String id) throws IOException {
+        Path loose = commonDir.resolve("objects").resolve(id.substring(0, 2)).resolve(id.substring(2));
+        if (Files.isRegularFile(loose)) {
+            return readLooseObject(loose);
+        }
+        byte[] rawId = fromHex(id);
+        for (PackFile pack : packs) {
+            long offset = pack.findOffset(rawId);
+            if (offset >= 0) {
+                return pack.read(offset);
+            }
+        }
+        throw new IOException("Missing git object: " + id);
+    }
+
+    private static GitObject readLooseObject(Path file) throws IOException {
+        byte[] raw;
+        try (InputStream in = new InflaterInputStream(Files.newInputStream(file))) {
+            raw = in.readAllBytes();
+        }
+        int space = indexOf(raw, (byte) ' ', 0);
+        int nul = indexOf(raw, (byte) 0, space);
+        String type = new String(raw, 0, space, StandardCharsets.US_ASCII);
+        return new GitObject(typeCode(type), Arrays.copyOfRange(raw, nul + 1, raw.length));
+    }
+
+    private static int typeCode(String type) throws IOException {
+        return switch (type) {
+            case "commit" -> OBJ_COMMIT;
+            case "tree" -> OBJ_TREE;
+            case "blob" -> OBJ_BLOB;
+            case "tag" -> OBJ_TAG;
+            default -> throw new IOException("Unknown git object type: " + type);
+        };
+    }
+
+    private static String headerValue(byte[] data, String key) {
+        // Headers end at the first blank line; only the first matching header is returned
+        String text = new String(data, StandardCharsets.UTF_8);
+        for (String line : text.split("\n")) {
+            if (line.isEmpty()) {
+                break;
+            }
+            if (line.startsWith(key + " ")) {
+                return line.substring(key.length() + 1).trim();
+            }
+        }
+        return null;
+    }
+
+    private static int indexOfSuffix(String revision) {
+        int tilde = revision.indexOf('~');
+        int caret = revision.indexOf('^');
+        if (tilde < 0) return caret;
+        if (caret < 0) return tilde;
+        return Math.min(tilde, caret);
+    }
+
+    private static int indexOf(byte[] data, byte value, int from) throws IOException {
+        for (int i = from; i < data.length; i++) {
+            if (data[i] == value) {
+                return i;
+            }
+        }
+        throw new IOException("Corrupt git object");
+    }
+
+    private static String toHex(byte[] data, int offset) {
+        StringBuilder sb = new StringBuilder(40);
+        for (int i = 0; i < 20; i++) {
+            sb.append(Character.forDigit((data[offset + i] >> 4) & 0xf, 16));
+            sb.append(Character.forDigit(data[offset + i] & 0xf, 16));
+        }
+        return sb.toString();
+    }
+
+    private static byte[] fromHex(String id) {
+        byte[] raw = new byte[20];
+        for (int i = 0; i < 20; i++) {
+            raw[i] = (byte) Integer.parseInt(id.substring(i * 2, i * 2 + 2), 16);
+        }
+        return raw;
+    }
+
+    /**
+     * Kind of change of a single path between two commits
+     */
+    public enum ChangeType {
+        ADDED, MODIFIED, DELETED, RENAMED
+    }
+
+    /**
+     * One changed path; oldPath/oldId are null for additions, newPath/newId for deletions
+     */
+    @Data
+    public static class DiffEntry {
+        private final ChangeType changeType;
+        private final String oldPath;
+        private final String newPath;
+        private final String oldId;
+        private final String newId;
+    }
+
+    private static class GitObject {
+        private final int type;
+        private final byte[] data;
+
+        GitObject(int type, byte[] data) {
+            this.type = type;
+            this.data = data;
+        }
+    }
+
+    /**
+     * A pack file with its v2 index loaded in memory
+     */
+    private class PackFile implements Closeable {
+        private static final int BASE_CACHE_SIZE = 256;
+
+        private final Path packPath;
+        private final FileChannel channel;
+        private final int[] fanout = new int[256];
+        private final ByteBuffer index;
+        private final int count;
+        private final int namesOffset;
+        private final int offsetsOffset;
+        private final int largeOffsetsOffset;
+
+        // Delta bases are frequently shared, keep the most recent ones inflated
+        private final Map<Long, GitObject> baseCache = new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, GitObject> eldest) {
+                return size() > BASE_CACHE_SIZE;
+            }
+        };
+
+        PackFile(Path idxPath, Path packPath) throws IOException {
+            this.packPath = packPath;
+            this.index = ByteBuffer.wrap(Files.readAllBytes(idxPath));
+            if (index.getInt(0) != 0xff744f63 || index.getInt(4) != 2) {
+                throw new IOException("Unsupported pack index version: " + idxPath);
+            }
+            for (int i = 0; i < 256; i++) {
+                fanout[i] = index.getInt(8 + i * 4);
+            }
+            this.count = fanout[255];
+            this.namesOffset = 8 + 256 * 4;
+            this.offsetsOffset = namesOffset + count * 20 + count * 4;
+            this.largeOffsetsOffset = offsetsOffset + count * 4;
+            this.channel = FileChannel.open(packPath, StandardOpenOption.READ);
+        }
+
+        long findOffset(byte[] id) {
+            int first = id[0] & 0xff;
+            int low = first == 0 ? 0 : fanout[first - 1];
+            int high = fanout[first] - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int cmp = compareName(mid, id);
+                if (cmp < 0) {
+                    low = mid + 1;
+                } else if (cmp > 0) {
+                    high = mid - 1;
+                } else {
+                    int offset = index.getInt(offsetsOffset + mid * 4);
+                    if (offset < 0) {
+                        // MSB set: index into the 64-bit offset table
+                        return index.getLong(largeOffsetsOffset + (offset & 0x7fffffff) * 8);
+                    }
+                    return offset;
+                }
+            }
+            return -1;
+        }
+
+        void collectPrefixMatches(String prefix, Set<String> matches) {
+            int first = Integer.parseInt(prefix.substring(0, 2), 16);
+            int low = first == 0 ? 0 : fanout[first - 1];
+            byte[] name = new byte[20];
+            for (int i = low; i < fanout[first]; i++) {
+                index.get(namesOffset + i * 20, name);
+                String id = toHex(name, 0);
+                if (id.startsWith(prefix)) {
+                    matches.add(id);
+                }
+            }
+        }
+
+        GitObject read(long offset) throws IOException {
+            GitObject cached = baseCache.get(offset);
+            if (cached != null) {
+                return cached;
+            }
+
+            ByteBuffer header = ByteBuffer.allocate(32);
+            channel.read(header, offset);
+            header.flip();
+
+            int c = header.get() & 0xff;
+            int type = (c >> 4) & 7;
+            long size = c & 0x0f;
+            int shift = 4;
+            while ((c & 0x80) != 0) {
+                c = header.get() & 0xff;
+                size |= (long) (c & 0x7f) << shift;
+                shift += 7;
+            }
+
+            GitObject result;
+            if (type == OBJ_OFS_DELTA) {
+                c = header.get() & 0xff;
+                long baseDistance = c & 0x7f;
+                while ((c & 0x80) != 0) {
+                    c = header.get() & 0xff;
+                    baseDistance = ((baseDistance + 1) << 7) | (c & 0x7f);
+                }
+                GitObject base = read(offset - baseDistance);
+                byte[] delta = inflate(offset + header.position(), size);
+                result = new GitObject(base.type, applyDelta(base.data, delta));
+            } else if (type == OBJ_REF_DELTA) {
+                byte[] baseId = new byte[20];
+                header.get(baseId);
+                GitObject base = readObject(toHex(baseId, 0));
+                byte[] delta = inflate(offset + header.position(), size);
+                result = new GitObject(base.type, applyDelta(base.data, delta));
+            } else {
+                result = new GitObject(type, inflate(offset + header.position(), size));
+            }
+
+            baseCache.put(offset, result);
+            return result;
+        }
+
+        private byte[] inflate(long position, long size) throws IOException {
+            byte[] out = new byte[Math.toIntExact(size)];
+            Inflater inflater = new Inflater();
+            try {
+                ByteBuffer in = ByteBuffer.allocate(8192);
+                int produced = 0;
+                long pos = position;
+                while (produced < out.length) {
+                    if (inflater.needsInput()) {
+                        in.clear();
+                        int read = channel.read(in, pos);
+                        if (read <= 0) {
+                            throw new IOException("Unexpected end of pack file: " + packPath);
+                        }
+                        pos += read;
+                        inflater.setInput(in.array(), 0, read);
+                    }
+                    produced += inflater.inflate(out, produced, out.length - produced);
+                    if (inflater.finished() && produced < out.length) {
+                        throw new IOException("Truncated object in pack file: " + packPath);
+                    }
+                }
+                return out;
+            } catch (DataFormatException e) {
+                throw new IOException("Corrupt object in pack file: " + packPath, e);
+            } finally {
+                inflater.end();
+            }
+        }
+
+        private int compareName(int position, byte[] id) {
+            int base = namesOffset + position * 20;
+            for (int i = 0; i < 20; i++) {
+                int a = index.get(base + i) & 0xff;
+                int b = id[i] & 0xff;
+                if (a != b) {
+                    return a - b;
+                }
+            }
+            return 0;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    private static byte[] applyDelta(byte[] base, byte[] delta) throws IOException {
+        int[] pos = {0};
+        long baseSize = readDeltaSize(delta, pos);
+        long resultSize = readDeltaSize(delta, pos);
+        if (baseSize != base.length) {
+            throw new IOException("Delta base size mismatch");
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.toIntExact(resultSize));
+        int p = pos[0];
+        while (p < delta.length) {
+            int op = delta[p++] & 0xff;
+            if ((op & 0x80) != 0) {
+                // Copy from base: offset and size bytes are present per the flag bits
+                int copyOffset = 0;
+                int copySize = 0;
+                for (int i = 0; i < 4; i++) {
+                    if ((op & (1 << i)) != 0) {
+                        copyOffset |= (delta[p++] & 0xff) << (i * 8);
+                    }
+                }
+                for (int i = 0; i < 3; i++) {
+                    if ((op & (0x10 << i)) != 0) {
+                        copySize |= (delta[p++] & 0xff) << (i * 8);
+                    }
+                }
+                if (copySize == 0) {
+                    copySize = 0x10000;
+                }
+                out.write(base, copyOffset, copySize);
+            } else if (op != 0) {
+                // Insert literal bytes
+                out.write(delta, p, op);
+                p += op;
+            } else {
+                throw new IOException("Invalid delta opcode");
+            }
+        }
+
+        if (out.size() != resultSize) {
+            throw new IOException("Delta result size mismatch");
+        }
+        return out.toByteArray();
+    }
+
+    private static long readDeltaSize(byte[] delta, int[] pos) {
+        long size = 0;
+        int shift = 0;
+        int c;
+        do {
+            c = delta[pos[0]++] & 0xff;
+            size |= (long) (c & 0x7f) << shift;
+            shift += 7;
+        } while ((c & 0x80) != 0);
+        return size;
+    }
+}
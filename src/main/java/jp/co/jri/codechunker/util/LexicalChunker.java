@@ -0,0 +1,597 @@
+package jp.co.jri.codechunker.util;
+
+import lombok.Data;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Finds type and member boundaries by scanning braces and keywords, without building a
+ * syntax tree. Comments and string, char and text block literals are skipped; member
+ * bodies are skipped by brace matching. Runs in linear time and keeps only the
+ * declaration headers, so it handles files the parser cannot (too large, newer or
+ * broken syntax). Results are best effort: an unbalanced file ends its open types at EOF.
+ */
+public class LexicalChunker {
+
+    private static final Set<String> TYPE_KEYWORDS = Set.of("class", "interface", "enum", "record", "@interface");
+    private static final Set<String> MODIFIERS = Set.of(
+            "public", "protected", "private", "static", "abstract", "final", "sealed", "non-sealed",
+            "strictfp", "default", "synchronized", "native", "transient", "volatile");
+
+    /**
+     * Scans a whole source file
+     */
+    public static SourceOutline scan(String source) {
+        return new Scanner(source).run();
+    }
+
+    /**
+     * Package, imports and every type declared at member level (top-level and nested types)
+     */
+    @Data
+    public static class SourceOutline {
+        private String packageName = "";
+        private List<String> imports = new ArrayList<>();
+        private List<TypeBlock> types = new ArrayList<>();
+    }
+
+    @Data
+    public static class TypeBlock {
+        private String keyword; // class, interface, enum, record or @interface
+        private String name;
+        private List<String> modifiers;
+        private String signature;
+        private List<String> extendedTypes;
+        private List<String> implementedTypes;
+        private int startLine;
+        private int endLine;
+        private int startOffset;
+        private int endOffset;
+        private List<MemberBlock> members = new ArrayList<>();
+    }
+
+    /**
+     * A method or constructor; abstract and interface methods and annotation members have no body
+     */
+    @Data
+    public static class MemberBlock {
+        private String name;
+        private boolean constructor;
+        private List<String> modifiers;
+        private String signature;
+        private int startLine;
+        private int endLine;
+        private int startOffset;
+        private int endOffset;
+    }
+
+    private static class Frame {
+        private final TypeBlock type;
+        private boolean enumConstants;
+
+        Frame(TypeBlock type) {
+            this.type = type;
+            this.enumConstants = "enum".equals(type.getKeyword());
+        }
+    }
+
+    private static class Scanner {
+        private final String src;
+        private final int length;
+        private final SourceOutline outline = new SourceOutline();
+        private final Deque<Frame> frames = new ArrayDeque<>();
+
+        // Declaration header collected since the last ; { or }, comments removed, whitespace collapsed
+        private final StringBuilder header = new StringBuilder();
+        private boolean pendingSpace;
+        private int headerStart = -1;
+        private int headerLine;
+        private int parenDepth;
+
+        private int pos;
+        private int line = 1;
+
+        Scanner(String src) {
+            this.src = src;
+            this.length = src.length();
+        }
+
+        SourceOutline run() {
+            while (pos < length) {
+                char c = src.charAt(pos);
+
+                if (Character.isWhitespace(c)) {
+                    if (c == '\n') line++;
+                    pendingSpace = true;
+                    pos++;
+                } else if (c == '/' && (peek(1) == '/' || peek(1) == '*')) {
+                    skipComment();
+                    pendingSpace = true;
+                } else if (c == '"' || c == '\'') {
+                    startHeader();
+                    int start = pos;
+                    skipLiteral();
+                    appendHeader(src, start, pos);
+                } else if (c == ';' && parenDepth == 0) {
+                    endStatement();
+                    pos++;
+                } else if (c == '{') {
+                    openBrace();
+                } else if (c == '}') {
+                    closeType();
+                    pos++;
+                } else {
+                    startHeader();
+                    if (c == '(') parenDepth++;
+                    if (c == ')' && parenDepth > 0) parenDepth--;
+                    if (pendingSpace && header.length() > 0) {
+                        header.append(' ');
+                    }
+                    pendingSpace = false;
+                    header.append(c);
+                    pos++;
+                }
+            }
+
+            // Unbalanced source: close what is still open at EOF
+            while (!frames.isEmpty()) {
+                TypeBlock type = frames.pop().type;
+                type.setEndOffset(length);
+                type.setEndLine(line);
+            }
+            return outline;
+        }
+
+        private void openBrace() {
+            Frame frame = frames.peek();
+            String declaration = stripAnnotations(header.toString());
+
+            if (parenDepth > 0 || hasAssignment(declaration) || frame != null && frame.enumConstants
+                    || frame != null && isAnnotationDefault(frame.type, declaration)) {
+                // Array initializer (also an annotation member default), anonymous class,
+                // lambda body or enum constant body
+                startHeader();
+                skipBlock();
+                appendHeader("{}", 0, 2);
+                return;
+            }
+
+            String keyword = typeKeyword(declaration);
+            if (keyword != null) {
+                TypeBlock type = createType(keyword, declaration);
+                outline.getTypes().add(type);
+                frames.push(new Frame(type));
+                resetHeader();
+                pos++;
+                return;
+            }
+
+            int start = headerStart >= 0 ? headerStart : pos;
+            int startLine = headerStart >= 0 ? headerLine : line;
+            MemberBlock member = frame != null ? createMember(frame.type, declaration) : null;
+            skipBlock();
+            if (member != null) {
+                addMember(frame.type, member, start, startLine, pos);
+            }
+            // Otherwise an initializer block or something unrecognized: skipped
+            resetHeader();
+        }
+
+        private void endStatement() {
+            Frame frame = frames.peek();
+            String declaration = stripAnnotations(header.toString());
+
+            if (frame == null) {
+                if (declaration.startsWith("package ")) {
+                    outline.setPackageName(declaration.substring("package ".length()).replace(" ", ""));
+                } else if (declaration.startsWith("import ")) {
+                    String name = declaration.substring("import ".length());
+                    if (name.startsWith("static ")) {
+                        name = name.substring("static ".length());
+                    }
+                    name = name.replace(" ", "");
+                    outline.getImports().add(name.endsWith(".*") ? name.substring(0, name.length() - 2) : name);
+                }
+            } else if (frame.enumConstants) {
+                frame.enumConstants = false;
+            } else if (declaration.indexOf('(') >= 0 && !hasAssignment(declaration)) {
+                // Abstract or interface method, or annotation member, without a body
+                MemberBlock member = createMember(frame.type, declaration);
+                if (member != null) {
+                    addMember(frame.type, member, headerStart, headerLine, pos + 1);
+                }
+            }
+            resetHeader();
+        }
+
+        private void closeType() {
+            if (!frames.isEmpty()) {
+                TypeBlock type = frames.pop().type;
+                type.setEndOffset(pos + 1);
+                type.setEndLine(line);
+            }
+            resetHeader();
+        }
+
+        private void addMember(TypeBlock type, MemberBlock member, int start, int startLine, int end) {
+            member.setStartOffset(start);
+            member.setStartLine(startLine);
+            member.setEndOffset(end);
+            member.setEndLine(line);
+            type.getMembers().add(member);
+        }
+
+        private TypeBlock createType(String keyword, String declaration) {
+            TypeBlock type = new TypeBlock();
+            type.setKeyword(keyword);
+            type.setStartOffset(headerStart >= 0 ? headerStart : pos);
+            type.setStartLine(headerStart >= 0 ? headerLine : line);
+
+            List<String> words = words(declaration);
+            int index = words.indexOf(keyword);
+            type.setModifiers(leadingModifiers(words));
+            type.setName(index + 1 < words.size() ? identifier(words.get(index + 1)) : "");
+            type.setSignature(declaration);
+            type.setExtendedTypes(typeList(declaration, " extends "));
+            type.setImplementedTypes(typeList(declaration, " implements "));
+            return type;
+        }
+
+        /**
+         * Returns null when the header is not a method or constructor declaration
+         */
+        private MemberBlock createMember(TypeBlock type, String declaration) {
+            int open = indexAtDepthZero(declaration, '(');
+            List<String> words;
+            String name;
+            boolean constructor;
+
+            if (open < 0) {
+                // Compact canonical constructor of a record: "public Point"
+                words = words(declaration);
+                if (!"record".equals(type.getKeyword()) || words.isEmpty()
+                        || !words.get(words.size() - 1).equals(type.getName())) {
+                    return null;
+                }
+                name = type.getName();
+                constructor = true;
+            } else {
+                int close = matchingParen(declaration, open);
+                String rest = close < 0 ? "" : declaration.substring(close + 1).trim();
+                if (close < 0 || !(rest.isEmpty() || rest.startsWith("throws ") || isAnnotationDefault(type, rest))) {
+                    return null;
+                }
+                String beforeParams = declaration.substring(0, open).trim();
+                words = words(skipTypeParameters(beforeParams));
+                if (words.isEmpty()) {
+                    return null;
+                }
+                name = words.get(words.size() - 1);
+                // Only modifiers before the name: no return type, so a constructor
+                constructor = leadingModifiers(words).size() == words.size() - 1;
+                words = words(beforeParams);
+            }
+            if (!isIdentifier(name)) {
+                return null;
+            }
+
+            MemberBlock member = new MemberBlock();
+            member.setName(name);
+            member.setConstructor(constructor);
+            member.setModifiers(leadingModifiers(words));
+            member.setSignature(declaration);
+            return member;
+        }
+
+        private void startHeader() {
+            if (headerStart < 0) {
+                headerStart = pos;
+                headerLine = line;
+            }
+        }
+
+        private void appendHeader(CharSequence text, int start, int end) {
+            if (pendingSpace && header.length() > 0) {
+                header.append(' ');
+            }
+            pendingSpace = false;
+            header.append(text, start, end);
+        }
+
+        private void resetHeader() {
+            header.setLength(0);
+            pendingSpace = false;
+            headerStart = -1;
+            parenDepth = 0;
+        }
+
+        private char peek(int offset) {
+            return pos + offset < length ? src.charAt(pos + offset) : '\0';
+        }
+
+        /**
+         * Skips a balanced block starting at the current '{'
+         */
+        private void skipBlock() {
+            int depth = 0;
+            while (pos < length) {
+                char c = src.charAt(pos);
+                if (c == '/' && (peek(1) == '/' || peek(1) == '*')) {
+                    skipComment();
+                } else if (c == '"' || c == '\'') {
+                    skipLiteral();
+                } else {
+                    if (c == '\n') {
+                        line++;
+                    } else if (c == '{') {
+                        depth++;
+                    } else if (c == '}' && --depth == 0) {
+                        pos++;
+                        return;
+                    }
+                    pos++;
+                }
+            }
+        }
+
+        private void skipComment() {
+            if (peek(1) == '/') {
+                while (pos < length && src.charAt(pos) != '\n') {
+                    pos++;
+                }
+                return;
+            }
+            pos += 2;
+            while (pos < length && !(src.charAt(pos) == '*' && peek(1) == '/')) {
+                if (src.charAt(pos) == '\n') line++;
+                pos++;
+            }
+            pos = Math.min(pos + 2, length);
+        }
+
+        /**
+         * Skips a string, char or text block literal starting at the current quote
+         */
+        private void skipLiteral() {
+            char quote = src.charAt(pos);
+            boolean textBlock = quote == '"' && peek(1) == '"' && peek(2) == '"';
+            pos += textBlock ? 3 : 1;
+            while (pos < length) {
+                char c = src.charAt(pos);
+                if (c == '\\') {
+                    if (peek(1) == '\n') line++;
+                    pos += 2;
+                } else if (textBlock && c == '"' && peek(1) == '"' && peek(2) == '"') {
+                    pos += 3;
+                    return;
+                } else if (!textBlock && c == quote) {
+                    pos++;
+                    return;
+                } else if (c == '\n') {
+                    line++;
+                    pos++;
+                    if (!textBlock) {
+                        // Unterminated literal: stop at the end of the line
+                        return;
+                    }
+                } else {
+                    pos++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes annotations (with their arguments) from a header, keeping @interface
+     */
+    static String stripAnnotations(String header) {
+        if (header.indexOf('@') < 0) {
+            return header.trim();
+        }
+        StringBuilder result = new StringBuilder(header.length());
+        int i = 0;
+        while (i < header.length()) {
+            char c = header.charAt(i);
+            if (c == '"' || c == '\'') {
+                int end = literalEnd(header, i);
+                result.append(header, i, end);
+                i = end;
+            } else if (c == '@' && !header.startsWith("@interface", i)) {
+                i++;
+                while (i < header.length() && (Character.isJavaIdentifierPart(header.charAt(i)) || header.charAt(i) == '.')) {
+                    i++;
+                }
+                int next = i;
+                while (next < header.length() && header.charAt(next) == ' ') next++;
+                if (next < header.length() && header.charAt(next) == '(') {
+                    int close = matchingParen(header, next);
+                    i = close < 0 ? header.length() : close + 1;
+                }
+                while (i < header.length() && header.charAt(i) == ' ') i++;
+            } else {
+                result.append(c);
+                i++;
+            }
+        }
+        return result.toString().trim();
+    }
+
+    private static String typeKeyword(String declaration) {
+        for (String word : words(declaration)) {
+            if (TYPE_KEYWORDS.contains(word)) {
+                return word;
+            }
+            if (!MODIFIERS.contains(word)) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Names listed after a keyword such as " extends ", without generics or qualifiers
+     */
+    private static List<String> typeList(String declaration, String keyword) {
+        List<String> names = new ArrayList<>();
+        int start = indexOfAtDepthZero(declaration, keyword);
+        if (start < 0) {
+            return names;
+        }
+        start += keyword.length();
+        int end = declaration.length();
+        for (String next : List.of(" extends ", " implements ", " permits ")) {
+            int index = indexOfAtDepthZero(declaration.substring(start), next);
+            if (index >= 0) end = Math.min(end, start + index);
+        }
+
+        int depth = 0;
+        StringBuilder current = new StringBuilder();
+        for (int i = start; i <= end; i++) {
+            char c = i < end ? declaration.charAt(i) : ',';
+            if (c == '<') depth++;
+            else if (c == '>') depth--;
+            else if (c == ',' && depth == 0) {
+                String name = current.toString().trim();
+                if (!name.isEmpty()) {
+                    names.add(name.substring(name.lastIndexOf('.') + 1));
+                }
+                current.setLength(0);
+            } else if (depth == 0) {
+                current.append(c);
+            }
+        }
+        return names;
+    }
+
+    private static List<String> leadingModifiers(List<String> words) {
+        List<String> modifiers = new ArrayList<>();
+        for (String word : words) {
+            if (!MODIFIERS.contains(word)) break;
+            modifiers.add(word);
+        }
+        return modifiers;
+    }
+
+    private static List<String> words(String text) {
+        List<String> words = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean space = i == text.length() || Character.isWhitespace(text.charAt(i));
+            if (space && start >= 0) {
+                words.add(text.substring(start, i));
+                start = -1;
+            } else if (!space && start < 0) {
+                start = i;
+            }
+        }
+        return words;
+    }
+
+    private static String identifier(String word) {
+        int end = 0;
+        while (end < word.length() && Character.isJavaIdentifierPart(word.charAt(end))) end++;
+        return word.substring(0, end);
+    }
+
+    private static boolean isIdentifier(String word) {
+        return !word.isEmpty() && Character.isJavaIdentifierStart(word.charAt(0)) && identifier(word).equals(word);
+    }
+
+    /**
+     * Drops method type parameters ("<T extends Number>") so the name is the last word
+     */
+    private static String skipTypeParameters(String text) {
+        StringBuilder result = new StringBuilder(text.length());
+        int depth = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '<') {
+                depth++;
+                result.append(' ');
+            } else if (c == '>') {
+                depth--;
+                result.append(' ');
+            } else if (depth == 0) {
+                result.append(c);
+            }
+        }
+        return result.toString();
+    }
+
+    /**
+     * True for the default clause of an annotation member: "default" plus its value, or the
+     * header before an array default ends with it
+     */
+    private static boolean isAnnotationDefault(TypeBlock type, String declaration) {
+        return "@interface".equals(type.getKeyword())
+                && (declaration.startsWith("default ") || declaration.equals("default")
+                || declaration.endsWith(") default"));
+    }
+
+    private static boolean hasAssignment(String declaration) {
+        return indexAtDepthZero(declaration, '=') >= 0;
+    }
+
+    private static int indexAtDepthZero(String text, char target) {
+        int depth = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"' || c == '\'') {
+                i = literalEnd(text, i) - 1;
+            } else if (depth == 0 && c == target) {
+                return i;
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+            }
+        }
+        return -1;
+    }
+
+    private static int indexOfAtDepthZero(String text, String target) {
+        int depth = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '(' || c == '<') depth++;
+            else if (c == ')' || c == '>') depth--;
+            else if (depth == 0 && text.startsWith(target, i)) return i;
+        }
+        return -1;
+    }
+
+    private static int matchingParen(String text, int open) {
+        int depth = 0;
+        for (int i = open; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"' || c == '\'') {
+                i = literalEnd(text, i) - 1;
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')' && --depth == 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int literalEnd(String text, int start) {
+        char quote = text.charAt(start);
+        int i = start + 1;
+        while (i < text.length()) {
+            char c = text.charAt(i);
+            if (c == '\\') {
+                i += 2;
+            } else if (c == quote) {
+                return i + 1;
+            } else {
+                i++;
+            }
+        }
+        return text.length();
+    }
+}
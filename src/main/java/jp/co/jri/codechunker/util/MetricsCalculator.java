@@ -1,40 +1,207 @@
 package jp.co.jri.codechunker.util;
 
-import com.github.javaparser.ast.body.MethodDeclaration;
-import com.github.javaparser.ast.body.TypeDeclaration;
+import com.github.javaparser.Range;
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.body.*;
+import com.github.javaparser.ast.comments.Comment;
+import com.github.javaparser.ast.expr.*;
+import com.github.javaparser.ast.nodeTypes.NodeWithBody;
+import com.github.javaparser.ast.stmt.*;
+import jp.co.jri.codechunker.model.chunk.data.Metrics;
 import org.springframework.stereotype.Component;
 
+import java.util.BitSet;
+
+/**
+ * Computes code metrics of a type or member in a single walk over its subtree.
+ * Cyclomatic complexity counts one path per callable plus each decision point
+ * (if, loops, case labels, catch, ?:, && and ||). Cognitive complexity follows the
+ * SonarSource rules: structures cost 1 plus their nesting level, else/else-if and each
+ * run of like logical operators cost 1. NCLOC counts lines holding code, so comment and
+ * blank lines are excluded.
+ */
 @Component
 public class MetricsCalculator {
 
-    public int calculateComplexity(TypeDeclaration<?> typeDecl) {
-        int complexity = 0;
-        complexity += typeDecl.getMethods().size() * 2;
-        complexity += typeDecl.findAll(com.github.javaparser.ast.body.ClassOrInterfaceDeclaration.class).size() * 3;
-        complexity += typeDecl.getFields().size();
-        return complexity;
+    /**
+     * Metrics of a whole source file, summed over its types
+     */
+    public Metrics calculate(CompilationUnit cu) {
+        return new Scan(cu).run().toMetrics(null);
+    }
+
+    /**
+     * Metrics of a whole type, summed over its members
+     */
+    public Metrics calculate(TypeDeclaration<?> typeDecl) {
+        return new Scan(typeDecl).run().toMetrics(null);
+    }
+
+    /**
+     * Metrics of a method or constructor
+     */
+    public Metrics calculate(CallableDeclaration<?> callable) {
+        return new Scan(callable).run().toMetrics(callable.getParameters().size());
     }
 
     public int calculateCyclomaticComplexity(MethodDeclaration method) {
-        int complexity = 1;
-        complexity += method.findAll(com.github.javaparser.ast.stmt.IfStmt.class).size();
-        complexity += method.findAll(com.github.javaparser.ast.stmt.ForStmt.class).size();
-        complexity += method.findAll(com.github.javaparser.ast.stmt.ForEachStmt.class).size();
-        complexity += method.findAll(com.github.javaparser.ast.stmt.WhileStmt.class).size();
-        complexity += method.findAll(com.github.javaparser.ast.stmt.DoStmt.class).size();
-
-        // Use a mutable wrapper for the counter
-        int[] switchCasesCount = {0};
-        method.findAll(com.github.javaparser.ast.stmt.SwitchStmt.class)
-                .forEach(switchStmt -> {
-                    // Count the number of entries (cases) in the switch statement
-                    switchCasesCount[0] += switchStmt.getEntries().size();
-                });
-        complexity += switchCasesCount[0];
-
-        complexity += method.findAll(com.github.javaparser.ast.stmt.CatchClause.class).size();
-        complexity += method.findAll(com.github.javaparser.ast.expr.ConditionalExpr.class).size();
-
-        return complexity;
+        return calculate(method).getCyclomaticComplexity();
+    }
+
+    /**
+     * State of one walk; lines are recorded relative to the first line of the root
+     */
+    private static class Scan {
+        private final Node root;
+        private final int firstLine;
+        private final BitSet codeLines = new BitSet();
+        private int loc;
+        private int cyclomatic;
+        private int cognitive;
+        private int maxNesting;
+
+        Scan(Node root) {
+            this.root = root;
+            this.firstLine = root.getRange().map(range -> range.begin.line).orElse(1);
+            this.loc = root.getRange().map(Range::getLineCount).orElse(0);
+        }
+
+        Scan run() {
+            visit(root, 0);
+            return this;
+        }
+
+        Metrics toMetrics(Integer parameterCount) {
+            // Without ranges (parser token storage off) line counts are unknown
+            boolean hasRange = root.getRange().isPresent();
+            return Metrics.builder()
+                    .cyclomaticComplexity(cyclomatic)
+                    .cognitiveComplexity(cognitive)
+                    .loc(hasRange ? loc : null)
+                    .ncloc(hasRange ? codeLines.cardinality() : null)
+                    .maxNestingDepth(maxNesting)
+                    .parameterCount(parameterCount)
+                    .build();
+        }
+
+        private void visit(Node node, int nesting) {
+            if (node instanceof Comment) {
+                return;
+            }
+            markLines(node);
+
+            if (node instanceof IfStmt ifStmt) {
+                visitIf(ifStmt, nesting, false);
+            } else if (node instanceof ForStmt || node instanceof ForEachStmt
+                    || node instanceof WhileStmt || node instanceof DoStmt) {
+                cyclomatic++;
+                structure(nesting);
+                visitChildren(node, ((NodeWithBody<?>) node).getBody(), nesting);
+            } else if (node instanceof SwitchStmt || node instanceof SwitchExpr) {
+                structure(nesting);
+                for (Node child : node.getChildNodes()) {
+                    if (child instanceof SwitchEntry entry) {
+                        if (entry.getLabels().isNonEmpty()) {
+                            cyclomatic++;
+                        }
+                        visit(child, nesting + 1);
+                    } else {
+                        visit(child, nesting);
+                    }
+                }
+            } else if (node instanceof CatchClause catchClause) {
+                cyclomatic++;
+                structure(nesting);
+                visitChildren(node, catchClause.getBody(), nesting);
+            } else if (node instanceof ConditionalExpr conditional) {
+                cyclomatic++;
+                structure(nesting);
+                visit(conditional.getCondition(), nesting);
+                visit(conditional.getThenExpr(), nesting + 1);
+                visit(conditional.getElseExpr(), nesting + 1);
+            } else if (node instanceof BinaryExpr binary && isLogical(binary.getOperator())) {
+                cyclomatic++;
+                // A run of the same operator (a && b && c) counts once
+                boolean continuesRun = binary.getParentNode()
+                        .filter(parent -> parent instanceof BinaryExpr parentBinary
+                                && parentBinary.getOperator() == binary.getOperator())
+                        .isPresent();
+                if (!continuesRun) {
+                    cognitive++;
+                }
+                visitChildren(node, null, nesting);
+            } else if (node instanceof CallableDeclaration || node instanceof InitializerDeclaration) {
+                if (node instanceof CallableDeclaration) {
+                    cyclomatic++;
+                }
+                // Members of a type start at the nesting level of the type itself
+                visitChildren(node, null, nesting);
+            } else if (node instanceof LambdaExpr lambda) {
+                visitChildren(node, lambda.getBody(), nesting);
+            } else if (node instanceof LocalClassDeclarationStmt || node instanceof LocalRecordDeclarationStmt
+                    || (node instanceof ObjectCreationExpr creation && creation.getAnonymousClassBody().isPresent())) {
+                visitChildren(node, null, nesting + 1);
+            } else if ((node instanceof BreakStmt breakStmt && breakStmt.getLabel().isPresent())
+                    || (node instanceof ContinueStmt continueStmt && continueStmt.getLabel().isPresent())) {
+                cognitive++;
+            } else {
+                visitChildren(node, null, nesting);
+            }
+        }
+
+        private void visitIf(IfStmt ifStmt, int nesting, boolean elseIf) {
+            cyclomatic++;
+            if (elseIf) {
+                // else-if adds no nesting penalty
+                cognitive++;
+            } else {
+                structure(nesting);
+            }
+            visit(ifStmt.getCondition(), nesting);
+            visit(ifStmt.getThenStmt(), nesting + 1);
+
+            ifStmt.getElseStmt().ifPresent(elseStmt -> {
+                if (elseStmt instanceof IfStmt nested) {
+                    markLines(nested);
+                    visitIf(nested, nesting, true);
+                } else {
+                    cognitive++;
+                    visit(elseStmt, nesting + 1);
+                }
+            });
+        }
+
+        /**
+         * Visits the children of a node; the nested child (a body) goes one level deeper
+         */
+        private void visitChildren(Node node, Node nested, int nesting) {
+            for (Node child : node.getChildNodes()) {
+                visit(child, child == nested ? nesting + 1 : nesting);
+            }
+        }
+
+        /**
+         * A flow-breaking structure: costs 1 plus its nesting level and opens a new level
+         */
+        private void structure(int nesting) {
+            cognitive += 1 + nesting;
+            maxNesting = Math.max(maxNesting, nesting + 1);
+        }
+
+        private void markLines(Node node) {
+            node.getRange().ifPresent(range -> {
+                if (node instanceof TextBlockLiteralExpr) {
+                    codeLines.set(range.begin.line - firstLine, range.end.line - firstLine + 1);
+                } else {
+                    codeLines.set(range.begin.line - firstLine);
+                    codeLines.set(range.end.line - firstLine);
+                }
+            });
+        }
+
+        private static boolean isLogical(BinaryExpr.Operator operator) {
+            return operator == BinaryExpr.Operator.AND || operator == BinaryExpr.Operator.OR;
+        }
     }
 }
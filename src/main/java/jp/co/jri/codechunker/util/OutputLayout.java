@@ -0,0 +1,148 @@
+package jp.co.jri.codechunker.util;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jp.co.jri.codechunker.config.ApplicationProperties;
+import jp.co.jri.codechunker.model.batch.Shard;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Places chunk files in the output directory. The flat layout keeps every file in the
+ * output directory itself; the package layout nests files in one directory per package and
+ * the hash layout in directories named by a hash prefix of the owning class, so no
+ * directory grows with the size of the repository. Sharded layouts also get an index
+ * mapping chunk ids to the relative paths of their files.
+ */
+@Component
+@RequiredArgsConstructor
+public class OutputLayout {
+
+    public static final String FLAT = "flat";
+    public static final String PACKAGE = "package";
+    public static final String HASH = "hash";
+    public static final String INDEX_FILE = "chunk-index.json";
+    public static final String MANIFEST_FILE = "chunk-manifest.json";
+    public static final String CHANGE_SET_FILE = "change-set.json";
+
+    private static final Logger logger = LoggerFactory.getLogger(OutputLayout.class);
+    // Run-level files at the top of the output directory, never chunks
+    private static final Set<String> RUN_FILES = Set.of("project-summary.json", INDEX_FILE, MANIFEST_FILE, CHANGE_SET_FILE);
+
+    private final ApplicationProperties properties;
+    private final ObjectMapper objectMapper;
+
+    public boolean isSharded() {
+        return !FLAT.equalsIgnoreCase(properties.getOutput().getLayout());
+    }
+
+    /**
+     * Path of an output file relative to the output directory, always with '/' separators.
+     * The file name is unchanged; fullyQualifiedName is the class (or file) the chunk
+     * belongs to, so all files of one class share a directory.
+     */
+    public String resolve(String fileName, String fullyQualifiedName) {
+        String layout = properties.getOutput().getLayout().toLowerCase();
+        return switch (layout) {
+            case FLAT -> fileName;
+            case PACKAGE -> {
+                int lastDot = fullyQualifiedName.lastIndexOf('.');
+                yield lastDot < 0 ? fileName
+                        : fullyQualifiedName.substring(0, lastDot).replace('.', '/') + "/" + fileName;
+            }
+            case HASH -> hashPrefix(fullyQualifiedName) + fileName;
+            default -> throw new IllegalArgumentException("Unknown output layout: " + layout);
+        };
+    }
+
+    /**
+     * One directory level of two hex digits (256 entries) per configured hash level
+     */
+    private String hashPrefix(String key) {
+        CRC32 crc = new CRC32();
+        crc.update(key.getBytes(StandardCharsets.UTF_8));
+        String hex = String.format("%08x", crc.getValue());
+
+        int levels = Math.max(1, Math.min(4, properties.getOutput().getHashLevels()));
+        StringBuilder prefix = new StringBuilder(levels * 3);
+        for (int level = 0; level < levels; level++) {
+            prefix.append(hex, level * 2, level * 2 + 2).append('/');
+        }
+        return prefix.toString();
+    }
+
+    /**
+     * Builds the index from the chunk files present in the output directory, sorted so it
+     * is reproducible. Only the leading fields of each file are read, up to its chunkId.
+     */
+    public Map<String, List<String>> buildIndex(String outputDir) throws IOException {
+        Path root = Paths.get(outputDir);
+        Map<String, List<String>> index = new TreeMap<>();
+        JsonFactory factory = objectMapper.getFactory();
+
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(root)) {
+            files = walk.filter(Files::isRegularFile)
+                    .filter(file -> isChunkFile(root, file))
+                    .sorted()
+                    .toList();
+        }
+
+        for (Path file : files) {
+            String chunkId = readChunkId(factory, file);
+            if (chunkId == null) {
+                continue;
+            }
+            String relative = root.relativize(file).toString().replace(File.separatorChar, '/');
+            index.computeIfAbsent(chunkId, key -> new ArrayList<>()).add(relative);
+        }
+
+        return index;
+    }
+
+    private static boolean isChunkFile(Path root, Path file) {
+        String name = file.getFileName().toString();
+        if (!name.endsWith(".json") || name.startsWith(".")) {
+            return false;
+        }
+        // Top-level files are run files (shard run files included), or chunks of the flat layout
+        return !(file.getParent().equals(root) && (RUN_FILES.contains(name) || Shard.ofFileName(name) != null));
+    }
+
+    private static String readChunkId(JsonFactory factory, Path file) {
+        try (JsonParser parser = factory.createParser(file.toFile())) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                if ("chunkId".equals(field)) {
+                    return parser.getValueAsString();
+                }
+                parser.skipChildren();
+            }
+        } catch (IOException e) {
+            logger.debug("Could not read chunk id of {}: {}", file, e.getMessage());
+        }
+        return null;
+    }
+}
@@ -0,0 +1,99 @@
+package jp.co.jri.codechunker.util;
+
+import com.github.javaparser.ParserConfiguration;
+import jp.co.jri.codechunker.config.ApplicationProperties;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * Builds the JavaParser configuration from code-chunker.parser.
+ * <ul>
+ *   <li>full: token storage and comment attribution, as the JavaParser defaults</li>
+ *   <li>lean: no comment attribution and no line separator detection. Tokens stay on
+ *       because node ranges (locations, metrics) are only recorded with them.</li>
+ *   <li>auto: lean unless the emitted code needs comments or lexical preservation is on</li>
+ * </ul>
+ * store-tokens and attribute-comments override the profile when set.
+ */
+@Component
+@RequiredArgsConstructor
+public class ParserProfile {
+
+    public static final String AUTO = "auto";
+    public static final String FULL = "full";
+    public static final String LEAN = "lean";
+
+    private static final Logger logger = LoggerFactory.getLogger(ParserProfile.class);
+    private final ApplicationProperties properties;
+    private volatile boolean logged;
+
+    /**
+     * The profile in effect: full or lean
+     */
+    public String resolveProfile() {
+        ApplicationProperties.ParserConfig parser = properties.getParser();
+        String profile = parser.getProfile() == null ? AUTO : parser.getProfile().toLowerCase();
+
+        switch (profile) {
+            case FULL, LEAN -> {
+                return profile;
+            }
+            case AUTO -> {
+                // Pretty printed code carries the attributed comments; lexical preservation needs everything
+                boolean needsComments = properties.getChunk().isIncludeCodeSnippets();
+                return needsComments || parser.isLexicalPreservation() ? FULL : LEAN;
+            }
+            default -> throw new IllegalArgumentException("Unknown parser profile: " + parser.getProfile()
+                    + " (expected auto, full or lean)");
+        }
+    }
+
+    public ParserConfiguration createConfiguration() {
+        ApplicationProperties.ParserConfig parser = properties.getParser();
+        boolean lean = LEAN.equals(resolveProfile());
+
+        ParserConfiguration configuration = new ParserConfiguration();
+        configuration.setLanguageLevel(languageLevel(parser.getLanguageLevel()));
+        configuration.setStoreTokens(parser.getStoreTokens() != null ? parser.getStoreTokens() : true);
+        configuration.setAttributeComments(parser.getAttributeComments() != null ? parser.getAttributeComments() : !lean);
+        configuration.setDetectOriginalLineSeparator(!lean);
+
+        if (parser.isLexicalPreservation()) {
+            if (!configuration.isStoreTokens()) {
+                logger.warn("Lexical preservation needs tokens, ignoring store-tokens: false");
+            }
+            configuration.setStoreTokens(true);
+            configuration.setLexicalPreservationEnabled(true);
+        }
+
+        if (!logged) {
+            logged = true;
+            logger.info("Parser profile: {} (language level {}, tokens {}, comments {}, lexical preservation {})",
+                    lean ? LEAN : FULL, parser.getLanguageLevel(), configuration.isStoreTokens(),
+                    configuration.isAttributeComments(), configuration.isLexicalPreservationEnabled());
+            if (!configuration.isStoreTokens()) {
+                logger.warn("Token storage is off: chunks will have no location and no line metrics");
+            }
+        }
+        return configuration;
+    }
+
+    /**
+     * Resolves a level name such as JAVA_17; RAW (no validation), POPULAR, CURRENT and
+     * BLEEDING_EDGE are accepted as well
+     */
+    static ParserConfiguration.LanguageLevel languageLevel(String name) {
+        if (name == null) {
+            return ParserConfiguration.LanguageLevel.POPULAR;
+        }
+        return switch (name.toUpperCase()) {
+            case "RAW" -> ParserConfiguration.LanguageLevel.RAW;
+            case "POPULAR" -> ParserConfiguration.LanguageLevel.POPULAR;
+            case "CURRENT" -> ParserConfiguration.LanguageLevel.CURRENT;
+            case "BLEEDING_EDGE" -> ParserConfiguration.LanguageLevel.BLEEDING_EDGE;
+            default -> ParserConfiguration.LanguageLevel.valueOf(name.toUpperCase());
+        };
+    }
+}
@@ -0,0 +1,149 @@
+package jp.co.jri.codechunker.util;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import jp.co.jri.codechunker.model.batch.Shard;
+import jp.co.jri.codechunker.model.checkpoint.CheckpointHeader;
+import jp.co.jri.codechunker.model.checkpoint.ProgressRecord;
+import jp.co.jri.codechunker.model.checkpoint.QuarantineEntry;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Persists run state in the output directory: the progress journal used by --resume
+ * and the quarantine list of files that repeatedly fail or time out
+ */
+@Component
+@RequiredArgsConstructor
+public class RunStateStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(RunStateStore.class);
+    private static final String JOURNAL_FILE = ".chunker-progress.jsonl";
+    private static final String QUARANTINE_FILE = ".chunker-quarantine.json";
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Loads the quarantine list, keyed by absolute file path. Each shard of a sharded run
+     * keeps its own run state; shard is null otherwise.
+     */
+    public Map<String, QuarantineEntry> loadQuarantine(String outputDir, Shard shard) throws IOException {
+        Path file = Paths.get(outputDir, Shard.fileName(shard, QUARANTINE_FILE));
+        if (!Files.isRegularFile(file)) {
+            return new TreeMap<>();
+        }
+        return objectMapper.readValue(file.toFile(), new TypeReference<TreeMap<String, QuarantineEntry>>() {});
+    }
+
+    public void saveQuarantine(String outputDir, Shard shard, Map<String, QuarantineEntry> quarantine) throws IOException {
+        Path file = Paths.get(outputDir, Shard.fileName(shard, QUARANTINE_FILE));
+        if (quarantine.isEmpty()) {
+            Files.deleteIfExists(file);
+            return;
+        }
+        objectMapper.writerWithDefaultPrettyPrinter().writeValue(file.toFile(), quarantine);
+    }
+
+    /**
+     * Loads the records of an interrupted run. Returns null when there is no journal or it
+     * belongs to a different project or analysis type. A truncated last line is ignored.
+     */
+    public List<ProgressRecord> loadJournal(String outputDir, Shard shard, CheckpointHeader expected) throws IOException {
+        Path file = Paths.get(outputDir, Shard.fileName(shard, JOURNAL_FILE));
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+
+        List<ProgressRecord> records = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line = reader.readLine();
+            if (line == null) {
+                return null;
+            }
+            CheckpointHeader header = objectMapper.readValue(line, CheckpointHeader.class);
+            if (!expected.getProjectPath().equals(header.getProjectPath())
+                    || !expected.getAnalysisType().equals(header.getAnalysisType())) {
+                logger.warn("Checkpoint in {} belongs to {} ({}), ignoring it",
+                        outputDir, header.getProjectPath(), header.getAnalysisType());
+                return null;
+            }
+            expected.setStartedAt(header.getStartedAt());
+
+            while ((line = reader.readLine()) != null) {
+                try {
+                    records.add(objectMapper.readValue(line, ProgressRecord.class));
+                } catch (IOException e) {
+                    logger.warn("Ignoring truncated checkpoint record: {}", e.getMessage());
+                    break;
+                }
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Starts a new journal with the given header and already completed records
+     */
+    public ProgressJournal openJournal(String outputDir, Shard shard, CheckpointHeader header,
+                                       List<ProgressRecord> completed) throws IOException {
+        ProgressJournal journal = new ProgressJournal(Paths.get(outputDir, Shard.fileName(shard, JOURNAL_FILE)),
+                objectMapper.writer().without(SerializationFeature.INDENT_OUTPUT));
+        journal.write(header);
+        for (ProgressRecord record : completed) {
+            journal.write(record);
+        }
+        journal.flush();
+        return journal;
+    }
+
+    public void deleteJournal(String outputDir, Shard shard) throws IOException {
+        Files.deleteIfExists(Paths.get(outputDir, Shard.fileName(shard, JOURNAL_FILE)));
+    }
+
+    /**
+     * Append-only JSON lines journal; records reach the disk on flush()
+     */
+    public static class ProgressJournal implements Closeable {
+        private final BufferedWriter writer;
+        private final ObjectWriter lineWriter;
+
+        ProgressJournal(Path file, ObjectWriter lineWriter) throws IOException {
+            this.writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+            this.lineWriter = lineWriter;
+        }
+
+        public void append(ProgressRecord record) throws IOException {
+            write(record);
+        }
+
+        public void flush() throws IOException {
+            writer.flush();
+        }
+
+        private void write(Object value) throws IOException {
+            writer.write(lineWriter.writeValueAsString(value));
+            writer.newLine();
+        }
+
+        @Override
+        public void close() throws IOException {
+            writer.close();
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package jp.co.jri.codechunker.util;
+
+import jp.co.jri.codechunker.model.batch.Shard;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Splits the files of a project between shards, so several processes or machines can chunk
+ * one repository. Every shard discovers the same files and computes the same partition, with
+ * no coordination: files are assigned largest first to the shard with the fewest bytes so far,
+ * equal sizes in the order of a stable hash of their path relative to the project. Paths and
+ * sizes are also fingerprinted, so a merge can tell that all shards saw the same checkout.
+ */
+@Component
+@RequiredArgsConstructor
+public class ShardPartitioner {
+
+    private final SourceArchives sourceArchives;
+
+    /**
+     * The files of the given shard, in their discovery order
+     */
+    public List<Path> select(Path projectRoot, List<Path> files, Map<Path, Long> sizes, Shard shard) {
+        List<Entry> entries = entries(projectRoot, files, sizes);
+        List<Entry> ordered = new ArrayList<>(entries);
+        ordered.sort(Comparator.comparingLong((Entry entry) -> entry.size).reversed()
+                .thenComparingLong(entry -> entry.hash)
+                .thenComparing(entry -> entry.key));
+
+        long[] load = new long[shard.getCount()];
+        for (Entry entry : ordered) {
+            int lightest = 0;
+            for (int i = 1; i < load.length; i++) {
+                if (load[i] < load[lightest]) {
+                    lightest = i;
+                }
+            }
+            entry.shard = lightest + 1;
+            load[lightest] += Math.max(1, entry.size);
+        }
+
+        List<Path> selected = new ArrayList<>();
+        for (Entry entry : entries) {
+            if (entry.shard == shard.getIndex()) {
+                selected.add(entry.file);
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Hex SHA-256 of the relative paths and sizes of all discovered files
+     */
+    public String fingerprint(Path projectRoot, List<Path> files, Map<Path, Long> sizes) {
+        List<Entry> entries = entries(projectRoot, files, sizes);
+        entries.sort(Comparator.comparing(entry -> entry.key));
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (Entry entry : entries) {
+                digest.update((entry.key + '\t' + entry.size + '\n').getBytes(StandardCharsets.UTF_8));
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private List<Entry> entries(Path projectRoot, List<Path> files, Map<Path, Long> sizes) {
+        String base = projectRoot.toAbsolutePath().normalize().toString();
+        List<Entry> entries = new ArrayList<>(files.size());
+        for (Path file : files) {
+            // Relative, so machines with different checkout directories agree
+            String key = sourceArchives.describe(file);
+            if (key.startsWith(base)) {
+                key = key.substring(base.length());
+            }
+            key = key.replace('\\', '/');
+            Long size = sizes.get(file);
+            entries.add(new Entry(file, key, size != null ? size : SourceArchives.size(file)));
+        }
+        return entries;
+    }
+
+    private static class Entry {
+        private final Path file;
+        private final String key;
+        private final long size;
+        private final long hash;
+        private int shard;
+
+        Entry(Path file, String key, long size) {
+            this.file = file;
+            this.key = key;
+            this.size = size;
+            CRC32 crc = new CRC32();
+            crc.update(key.getBytes(StandardCharsets.UTF_8));
+            this.hash = crc.getValue();
+        }
+    }
+}
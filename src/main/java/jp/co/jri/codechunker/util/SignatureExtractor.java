@@ -1,189 +1,454 @@
 package jp.co.jri.codechunker.util;
 
-import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
-import com.github.javaparser.ast.body.ConstructorDeclaration;
-import com.github.javaparser.ast.body.MethodDeclaration;
-import com.github.javaparser.ast.body.Parameter;
+import com.github.javaparser.ast.Modifier;
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.NodeList;
+import com.github.javaparser.ast.body.*;
+import com.github.javaparser.ast.expr.AnnotationExpr;
+import com.github.javaparser.ast.expr.LambdaExpr;
+import com.github.javaparser.ast.expr.MarkerAnnotationExpr;
+import com.github.javaparser.ast.nodeTypes.NodeWithTypeParameters;
+import com.github.javaparser.ast.type.*;
+import com.github.javaparser.ast.visitor.VoidVisitorWithDefaults;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 
+/**
+ * Renders declaration signatures in a single pass over the declaration header.
+ * Everything is appended into one per-thread builder; modifier keywords come from a
+ * precomputed table and types are written directly instead of through the pretty printer.
+ */
 public class SignatureExtractor {
     private static final Logger logger = LoggerFactory.getLogger(SignatureExtractor.class);
 
+    private static final Map<Modifier.Keyword, String> KEYWORDS = new EnumMap<>(Modifier.Keyword.class);
+
+    static {
+        for (Modifier.Keyword keyword : Modifier.Keyword.values()) {
+            KEYWORDS.put(keyword, keyword.asString());
+        }
+    }
+
+    // Builders larger than this are dropped after use instead of being kept per thread
+    private static final int MAX_RETAINED_CAPACITY = 16 * 1024;
+    private static final ThreadLocal<StringBuilder> BUFFER = ThreadLocal.withInitial(() -> new StringBuilder(256));
+    private static final SignatureVisitor VISITOR = new SignatureVisitor();
+
     public static String getClassSignature(ClassOrInterfaceDeclaration classDecl) {
-        StringBuilder signature = new StringBuilder();
+        return render(classDecl);
+    }
+
+    /**
+     * Signature of any type declaration: class, interface, enum, record or annotation
+     */
+    public static String getTypeSignature(TypeDeclaration<?> typeDecl) {
+        return render(typeDecl);
+    }
+
+    public static String getMethodSignature(MethodDeclaration method) {
+        return render(method);
+    }
 
-        // Get modifiers
-        List<String> modifierList = new ArrayList<>();
-        classDecl.getModifiers().forEach(mod -> {
-            modifierList.add(mod.toString().trim());
-        });
+    public static String getConstructorSignature(ConstructorDeclaration constructor) {
+        return render(constructor);
+    }
 
-        if (!modifierList.isEmpty()) {
-            signature.append(String.join(" ", modifierList)).append(" ");
+    public static String getAnnotationMemberSignature(AnnotationMemberDeclaration member) {
+        return render(member);
+    }
+
+    public static String getLambdaSignature(LambdaExpr lambda) {
+        return render(lambda);
+    }
+
+    /**
+     * Parameter types of a method or constructor after erasure, comma separated without
+     * spaces, e.g. "List,int[],Object" for (List<String> a, int... b, T c). Type arguments and
+     * annotations are dropped, varargs become arrays and type variables of the method or an
+     * enclosing type are replaced by their first bound (Object when unbounded). Types are
+     * kept as written: names are not resolved against imports.
+     */
+    public static String getErasedParameters(CallableDeclaration<?> callable) {
+        StringBuilder erased = new StringBuilder();
+        for (Parameter parameter : callable.getParameters()) {
+            if (!erased.isEmpty()) erased.append(',');
+            appendErased(parameter.getType(), callable, erased);
+            if (parameter.isVarArgs()) {
+                erased.append("[]");
+            }
         }
+        return erased.toString();
+    }
 
-        // Add class or interface keyword
-        if (classDecl.isInterface()) {
-            signature.append("interface ");
-        } else {
-            signature.append("class ");
+    /**
+     * Erased parameter types from signature text, for members outlined without a syntax
+     * tree. Type variables cannot be told apart from classes here and are kept as written.
+     */
+    public static String getErasedParameters(String signature) {
+        int open = signature.indexOf('(');
+        int close = signature.lastIndexOf(')');
+        if (open < 0 || close < open) {
+            return "";
+        }
+        StringBuilder erased = new StringBuilder();
+        for (String parameter : splitTopLevel(signature.substring(open + 1, close))) {
+            String text = parameter.replaceAll("@[\\w.]+(\\([^)]*\\))?", " ")
+                    .replaceAll("\\bfinal\\b", " ")
+                    .replace("...", "[] ");
+            // Drop type arguments, innermost first
+            String previous;
+            do {
+                previous = text;
+                text = text.replaceAll("<[^<>]*>", "");
+            } while (!text.equals(previous));
+            String[] words = text.replaceAll("\\s*\\[\\s*]", "[]").trim().split("\\s+");
+            // The last word is the parameter name; C-style brackets after it belong to the type
+            String name = words[words.length - 1];
+            if (words.length < 2 || name.equals("this")) {
+                continue;
+            }
+            if (!erased.isEmpty()) erased.append(',');
+            erased.append(String.join("", Arrays.copyOf(words, words.length - 1)));
+            if (name.indexOf('[') >= 0) {
+                erased.append(name.substring(name.indexOf('[')));
+            }
         }
+        return erased.toString();
+    }
 
-        // Add class name
-        signature.append(classDecl.getNameAsString());
+    /**
+     * Modifier keywords as shared strings (no pretty printing of the modifier nodes)
+     */
+    public static List<String> getModifiers(NodeList<Modifier> modifiers) {
+        List<String> keywords = new ArrayList<>(modifiers.size());
+        for (Modifier modifier : modifiers) {
+            keywords.add(KEYWORDS.get(modifier.getKeyword()));
+        }
+        return keywords;
+    }
 
-        // Add type parameters
-        if (classDecl.getTypeParameters() != null && !classDecl.getTypeParameters().isEmpty()) {
-            signature.append("<");
-            for (int i = 0; i < classDecl.getTypeParameters().size(); i++) {
-                if (i > 0) signature.append(", ");
-                signature.append(classDecl.getTypeParameters().get(i).getNameAsString());
+    private static void appendErased(Type type, Node context, StringBuilder erased) {
+        if (type instanceof ArrayType arrayType) {
+            appendErased(arrayType.getComponentType(), context, erased);
+            erased.append("[]");
+        } else if (type instanceof ClassOrInterfaceType classType) {
+            TypeParameter typeParameter = classType.getScope().isPresent() ? null
+                    : findTypeParameter(classType.getName().getIdentifier(), context);
+            if (typeParameter != null) {
+                if (typeParameter.getTypeBound().isEmpty()) {
+                    erased.append("Object");
+                } else {
+                    appendErased(typeParameter.getTypeBound().get(0), typeParameter, erased);
+                }
+                return;
             }
-            signature.append(">");
+            classType.getScope().ifPresent(scope -> {
+                appendErased(scope, null, erased);
+                erased.append('.');
+            });
+            erased.append(classType.getName().getIdentifier());
+        } else if (type instanceof PrimitiveType primitiveType) {
+            erased.append(primitiveType.getType().asString());
+        } else {
+            erased.append(type.asString().replace(" ", ""));
         }
+    }
 
-        // Add extends clause
-        if (classDecl.getExtendedTypes() != null && !classDecl.getExtendedTypes().isEmpty()) {
-            signature.append(" extends ");
-            for (int i = 0; i < classDecl.getExtendedTypes().size(); i++) {
-                if (i > 0) signature.append(", ");
-                signature.append(classDecl.getExtendedTypes().get(i).getNameAsString());
+    /**
+     * The type parameter with this name declared by the context or its nearest enclosing declaration
+     */
+    private static TypeParameter findTypeParameter(String name, Node context) {
+        for (Node node = context; node != null; node = node.getParentNode().orElse(null)) {
+            if (node instanceof NodeWithTypeParameters<?> declaration) {
+                for (TypeParameter typeParameter : declaration.getTypeParameters()) {
+                    if (typeParameter.getName().getIdentifier().equals(name)) {
+                        return typeParameter;
+                    }
+                }
             }
         }
+        return null;
+    }
 
-        // Add implements clause
-        if (classDecl.getImplementedTypes() != null && !classDecl.getImplementedTypes().isEmpty()) {
-            signature.append(" implements ");
-            for (int i = 0; i < classDecl.getImplementedTypes().size(); i++) {
-                if (i > 0) signature.append(", ");
-                signature.append(classDecl.getImplementedTypes().get(i).getNameAsString());
+    /**
+     * Splits a parameter list at the commas that are not inside type arguments or annotation values
+     */
+    private static List<String> splitTopLevel(String parameters) {
+        List<String> parts = new ArrayList<>();
+        int depth = 0;
+        int start = 0;
+        for (int i = 0; i < parameters.length(); i++) {
+            char c = parameters.charAt(i);
+            if (c == '<' || c == '(') {
+                depth++;
+            } else if (c == '>' || c == ')') {
+                depth--;
+            } else if (c == ',' && depth == 0) {
+                parts.add(parameters.substring(start, i));
+                start = i + 1;
             }
         }
+        if (!parameters.isBlank()) {
+            parts.add(parameters.substring(start));
+        }
+        return parts;
+    }
 
-        return signature.toString();
+    private static String render(Node node) {
+        StringBuilder signature = BUFFER.get();
+        signature.setLength(0);
+        node.accept(VISITOR, signature);
+        String result = signature.toString();
+        if (signature.capacity() > MAX_RETAINED_CAPACITY) {
+            BUFFER.remove();
+        }
+        return result;
     }
 
-    public static String getMethodSignature(MethodDeclaration method) {
-        StringBuilder signature = new StringBuilder();
+    /**
+     * Appends declaration headers and types; bodies and other nodes are never visited
+     */
+    private static class SignatureVisitor extends VoidVisitorWithDefaults<StringBuilder> {
+
+        @Override
+        public void visit(ClassOrInterfaceDeclaration n, StringBuilder signature) {
+            appendModifiers(n.getModifiers(), signature);
 
-        // Add modifiers (public, private, static, etc.)
-//        method.getModifiers().forEach(mod -> {
-//            signature.append(mod.toString().toLowerCase()).append(" ");
-//        });
+            // Add class or interface keyword
+            signature.append(n.isInterface() ? "interface " : "class ");
+            signature.append(n.getNameAsString());
+            appendTypeParameters(n.getTypeParameters(), signature);
 
-        // Get modifiers
-        List<String> modifierList = new ArrayList<>();
+            appendTypeList(" extends ", n.getExtendedTypes(), signature);
+            appendTypeList(" implements ", n.getImplementedTypes(), signature);
+            appendTypeList(" permits ", n.getPermittedTypes(), signature);
+        }
 
-        method.getModifiers().forEach(mod -> {
-            modifierList.add(mod.toString().trim());
-        });
+        @Override
+        public void visit(RecordDeclaration n, StringBuilder signature) {
+            appendModifiers(n.getModifiers(), signature);
+            signature.append("record ").append(n.getNameAsString());
+            appendTypeParameters(n.getTypeParameters(), signature);
+            appendParameters(n.getParameters(), signature);
+            appendTypeList(" implements ", n.getImplementedTypes(), signature);
+        }
 
-        if (!modifierList.isEmpty()) {
-            signature.append(String.join(" ", modifierList)).append(" ");
+        @Override
+        public void visit(EnumDeclaration n, StringBuilder signature) {
+            appendModifiers(n.getModifiers(), signature);
+            signature.append("enum ").append(n.getNameAsString());
+            appendTypeList(" implements ", n.getImplementedTypes(), signature);
         }
 
-        // Add type parameters if present
-        if (!method.getTypeParameters().isEmpty()) {
-            signature.append("<");
-            for (int i = 0; i < method.getTypeParameters().size(); i++) {
-                if (i > 0) signature.append(", ");
-                signature.append(method.getTypeParameters().get(i).getNameAsString());
+        @Override
+        public void visit(AnnotationDeclaration n, StringBuilder signature) {
+            appendModifiers(n.getModifiers(), signature);
+            signature.append("@interface ").append(n.getNameAsString());
+        }
+
+        @Override
+        public void visit(MethodDeclaration n, StringBuilder signature) {
+            appendModifiers(n.getModifiers(), signature);
+
+            if (!n.getTypeParameters().isEmpty()) {
+                appendTypeParameters(n.getTypeParameters(), signature);
+                signature.append(' ');
             }
-            signature.append("> ");
+
+            n.getType().accept(this, signature);
+            signature.append(' ').append(n.getNameAsString());
+            appendParameters(n.getParameters(), signature);
+            appendTypeList(" throws ", n.getThrownExceptions(), signature);
+        }
+
+        @Override
+        public void visit(ConstructorDeclaration n, StringBuilder signature) {
+            appendModifiers(n.getModifiers(), signature);
+
+            if (!n.getTypeParameters().isEmpty()) {
+                appendTypeParameters(n.getTypeParameters(), signature);
+                signature.append(' ');
+            }
+
+            signature.append(n.getNameAsString());
+            appendParameters(n.getParameters(), signature);
+            appendTypeList(" throws ", n.getThrownExceptions(), signature);
         }
 
-        // Add return type
-        signature.append(method.getType()).append(" ");
+        @Override
+        public void visit(CompactConstructorDeclaration n, StringBuilder signature) {
+            appendModifiers(n.getModifiers(), signature);
+            signature.append(n.getNameAsString());
+        }
 
-        // Add method name
-        signature.append(method.getNameAsString());
+        @Override
+        public void visit(AnnotationMemberDeclaration n, StringBuilder signature) {
+            appendModifiers(n.getModifiers(), signature);
+            n.getType().accept(this, signature);
+            signature.append(' ').append(n.getNameAsString()).append("()");
+            // Default values are usually short literals; fall back to the printer for them
+            n.getDefaultValue().ifPresent(value -> signature.append(" default ").append(value));
+        }
 
-        // Add parameters
-        signature.append("(");
-        List<Parameter> parameters = method.getParameters();
-        for (int i = 0; i < parameters.size(); i++) {
-            if (i > 0) signature.append(", ");
-            Parameter param = parameters.get(i);
+        @Override
+        public void visit(LambdaExpr n, StringBuilder signature) {
+            if (n.isEnclosingParameters()) {
+                appendParameters(n.getParameters(), signature);
+            } else if (n.getParameters().isNonEmpty()) {
+                signature.append(n.getParameter(0).getNameAsString());
+            }
+            signature.append(" ->");
+        }
 
-            // Check if parameter is varargs
-            if (param.isVarArgs()) {
-                // Remove array brackets and add ...
-                String type = param.getType().toString();
-                type = type.replace("[]", "");
-                signature.append(type).append("...");
-            } else {
-                signature.append(param.getType());
+        @Override
+        public void visit(Parameter n, StringBuilder signature) {
+            n.getType().accept(this, signature);
+            if (n.isVarArgs()) {
+                signature.append("...");
+            }
+            if (!(n.getType() instanceof UnknownType)) {
+                signature.append(' ');
             }
+            signature.append(n.getNameAsString());
+        }
 
-            signature.append(" ").append(param.getNameAsString());
+        @Override
+        public void visit(ClassOrInterfaceType n, StringBuilder signature) {
+            n.getScope().ifPresent(scope -> {
+                scope.accept(this, signature);
+                signature.append('.');
+            });
+            appendAnnotations(n.getAnnotations(), signature);
+            signature.append(n.getName().getIdentifier());
+            n.getTypeArguments().ifPresent(arguments -> {
+                // An empty list is the diamond operator
+                signature.append('<');
+                appendNodes(arguments, ", ", signature);
+                signature.append('>');
+            });
         }
-        signature.append(")");
 
-        // Add throws clause if present
-        if (!method.getThrownExceptions().isEmpty()) {
-            signature.append(" throws ");
-            for (int i = 0; i < method.getThrownExceptions().size(); i++) {
-                if (i > 0) signature.append(", ");
-                signature.append(method.getThrownExceptions().get(i));
+        @Override
+        public void visit(TypeParameter n, StringBuilder signature) {
+            appendAnnotations(n.getAnnotations(), signature);
+            signature.append(n.getName().getIdentifier());
+            if (n.getTypeBound().isNonEmpty()) {
+                signature.append(" extends ");
+                appendNodes(n.getTypeBound(), " & ", signature);
             }
         }
 
-        return signature.toString();
-    }
+        @Override
+        public void visit(PrimitiveType n, StringBuilder signature) {
+            appendAnnotations(n.getAnnotations(), signature);
+            signature.append(n.getType().asString());
+        }
 
-    public static String getConstructorSignature(ConstructorDeclaration constructor) {
-        StringBuilder signature = new StringBuilder();
+        @Override
+        public void visit(ArrayType n, StringBuilder signature) {
+            n.getComponentType().accept(this, signature);
+            appendAnnotations(n.getAnnotations(), signature);
+            signature.append("[]");
+        }
 
-        // Add modifiers
-//        constructor.getModifiers().forEach(mod -> {
-//            signature.append(mod.toString().toLowerCase()).append(" ");
-//        });
+        @Override
+        public void visit(VoidType n, StringBuilder signature) {
+            appendAnnotations(n.getAnnotations(), signature);
+            signature.append("void");
+        }
 
-        // Get modifiers
-        List<String> modifierList = new ArrayList<>();
+        @Override
+        public void visit(VarType n, StringBuilder signature) {
+            appendAnnotations(n.getAnnotations(), signature);
+            signature.append("var");
+        }
 
-        constructor.getModifiers().forEach(mod -> {
-            modifierList.add(mod.toString().trim());
-        });
+        @Override
+        public void visit(WildcardType n, StringBuilder signature) {
+            appendAnnotations(n.getAnnotations(), signature);
+            signature.append('?');
+            n.getExtendedType().ifPresent(bound -> {
+                signature.append(" extends ");
+                bound.accept(this, signature);
+            });
+            n.getSuperType().ifPresent(bound -> {
+                signature.append(" super ");
+                bound.accept(this, signature);
+            });
+        }
 
-        if (!modifierList.isEmpty()) {
-            signature.append(String.join(" ", modifierList)).append(" ");
+        @Override
+        public void visit(UnionType n, StringBuilder signature) {
+            appendNodes(n.getElements(), " | ", signature);
         }
 
-        // Add constructor name
-        signature.append(constructor.getNameAsString());
+        @Override
+        public void visit(IntersectionType n, StringBuilder signature) {
+            appendNodes(n.getElements(), " & ", signature);
+        }
 
-        // Add parameters
-        signature.append("(");
-        List<Parameter> parameters = constructor.getParameters();
-        for (int i = 0; i < parameters.size(); i++) {
-            if (i > 0) signature.append(", ");
-            Parameter param = parameters.get(i);
+        @Override
+        public void visit(UnknownType n, StringBuilder signature) {
+            // Implicitly typed lambda parameter: only the name is written
+        }
+
+        @Override
+        public void defaultAction(Node n, StringBuilder signature) {
+            // Not a declaration header or type: nothing to render
+            logger.debug("No signature rendering for {}", n.getClass().getSimpleName());
+        }
 
-            if (param.isVarArgs()) {
-                String type = param.getType().toString().replace("[]", "");
-                signature.append(type).append("...");
-            } else {
-                signature.append(param.getType());
+        private void appendModifiers(NodeList<Modifier> modifiers, StringBuilder signature) {
+            for (Modifier modifier : modifiers) {
+                signature.append(KEYWORDS.get(modifier.getKeyword())).append(' ');
             }
+        }
 
-            signature.append(" ").append(param.getNameAsString());
+        private void appendTypeParameters(NodeList<TypeParameter> typeParameters, StringBuilder signature) {
+            if (typeParameters.isEmpty()) {
+                return;
+            }
+            signature.append('<');
+            appendNodes(typeParameters, ", ", signature);
+            signature.append('>');
+        }
+
+        private void appendParameters(NodeList<Parameter> parameters, StringBuilder signature) {
+            signature.append('(');
+            appendNodes(parameters, ", ", signature);
+            signature.append(')');
+        }
+
+        private void appendTypeList(String keyword, NodeList<? extends Type> types, StringBuilder signature) {
+            if (types.isEmpty()) {
+                return;
+            }
+            signature.append(keyword);
+            appendNodes(types, ", ", signature);
         }
-        signature.append(")");
 
-        // Add throws clause if present
-        if (!constructor.getThrownExceptions().isEmpty()) {
-            signature.append(" throws ");
-            for (int i = 0; i < constructor.getThrownExceptions().size(); i++) {
-                if (i > 0) signature.append(", ");
-                signature.append(constructor.getThrownExceptions().get(i));
+        private void appendNodes(NodeList<? extends Node> nodes, String separator, StringBuilder signature) {
+            for (int i = 0; i < nodes.size(); i++) {
+                if (i > 0) signature.append(separator);
+                nodes.get(i).accept(this, signature);
             }
         }
 
-        return signature.toString();
+        private void appendAnnotations(NodeList<AnnotationExpr> annotations, StringBuilder signature) {
+            for (AnnotationExpr annotation : annotations) {
+                if (annotation instanceof MarkerAnnotationExpr) {
+                    signature.append('@').append(annotation.getNameAsString());
+                } else {
+                    signature.append(annotation);
+                }
+                signature.append(' ');
+            }
+        }
     }
 }
@@ -0,0 +1,86 @@
+package jp.co.jri.codechunker.util;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Opens source archives (e.g. *-sources.jar) as zip file systems so their entries are read
+ * in place, without extracting them to disk. Entry paths of an open archive work with the
+ * usual Files methods; describe() names them archive!/entry. Archives stay open until the
+ * application shuts down.
+ */
+@Component
+public class SourceArchives {
+
+    private static final Logger logger = LoggerFactory.getLogger(SourceArchives.class);
+
+    private final Map<Path, FileSystem> open = new ConcurrentHashMap<>();
+    private final Map<FileSystem, Path> archives = new ConcurrentHashMap<>();
+
+    public boolean isArchive(Path file) {
+        String name = file.getFileName() != null ? file.getFileName().toString().toLowerCase() : "";
+        return (name.endsWith(".jar") || name.endsWith(".zip")) && Files.isRegularFile(file);
+    }
+
+    /**
+     * Root directory of the archive's file system, opening the archive on first use
+     */
+    public Path open(Path archive) throws IOException {
+        Path key = archive.toAbsolutePath().normalize();
+        FileSystem fileSystem = open.get(key);
+        if (fileSystem == null) {
+            synchronized (open) {
+                fileSystem = open.get(key);
+                if (fileSystem == null) {
+                    fileSystem = FileSystems.newFileSystem(key);
+                    archives.put(fileSystem, key);
+                    open.put(key, fileSystem);
+                    logger.debug("Opened source archive: {}", key);
+                }
+            }
+        }
+        return fileSystem.getRootDirectories().iterator().next();
+    }
+
+    /**
+     * Absolute path of a source file, or archive!/entry for a file inside an archive
+     */
+    public String describe(Path file) {
+        Path archive = archives.get(file.getFileSystem());
+        return archive != null ? archive + "!" + file.toAbsolutePath() : file.toAbsolutePath().toString();
+    }
+
+    /**
+     * Size of a file in bytes, 0 when it cannot be read
+     */
+    public static long size(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        for (FileSystem fileSystem : open.values()) {
+            try {
+                fileSystem.close();
+            } catch (IOException e) {
+                logger.debug("Could not close source archive {}: {}", archives.get(fileSystem), e.getMessage());
+            }
+        }
+        open.clear();
+        archives.clear();
+    }
+}
@@ -8,6 +8,7 @@ import com.github.javaparser.ast.body.ConstructorDeclaration;
 import com.github.javaparser.ast.body.FieldDeclaration;
 import com.github.javaparser.ast.body.VariableDeclarator;
 
+import jp.co.jri.codechunker.jfr.SymbolsEvent;
 import jp.co.jri.codechunker.model.chunk.data.Symbols;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -16,12 +17,24 @@ public class SymbolsExtractor {
     private static final Logger logger = LoggerFactory.getLogger(SymbolsExtractor.class);
 
     public static void getClassSymbols(CompilationUnit cu, Symbols symbols) {
+        SymbolsEvent event = new SymbolsEvent();
+        event.begin();
         try {
             SymbolsVisitor visitor = new SymbolsVisitor(symbols);
             cu.accept(visitor, null);
         } catch (Exception e) {
             e.printStackTrace();
         }
+        if (event.shouldCommit()) {
+            event.file = cu.getStorage().map(storage -> storage.getPath().toString()).orElse(null);
+            event.symbolCount = count(symbols);
+            event.commit();
+        }
+    }
+
+    private static int count(Symbols symbols) {
+        return symbols.getClasses().size() + symbols.getMethods().size()
+                + symbols.getFields().size() + symbols.getVariables().size();
     }
 
     // Simple visitor that only collects names
@@ -0,0 +1,118 @@
+package jp.co.jri.codechunker.util;
+
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.ParseResult;
+import com.github.javaparser.ParseStart;
+import com.github.javaparser.Provider;
+import com.github.javaparser.Providers;
+import com.github.javaparser.ast.CompilationUnit;
+
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs JavaParser with a time limit.
+ * The parse runs on a daemon thread; on timeout the thread is interrupted, which aborts the
+ * parse at the next read from the source. A parse stuck without reading is abandoned on its
+ * daemon thread and the caller moves on.
+ */
+public class TimedParser {
+
+    private final Supplier<JavaParser> parsers;
+    private final ExecutorService executor;
+
+    /**
+     * @param parsers supplies the parser to use on the calling thread (e.g. a ThreadLocal getter)
+     */
+    public TimedParser(Supplier<JavaParser> parsers) {
+        this.parsers = parsers;
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "timed-parser-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Parses a file; a timeout of 0 or less parses on the calling thread without a limit
+     */
+    public ParseResult<CompilationUnit> parse(Path file, long timeoutMillis) throws IOException, TimeoutException {
+        if (timeoutMillis <= 0) {
+            return parsers.get().parse(file);
+        }
+        return runWithTimeout(() -> {
+            JavaParser parser = parsers.get();
+            Charset encoding = parser.getParserConfiguration().getCharacterEncoding();
+            ParseResult<CompilationUnit> result;
+            try (Provider provider = Providers.provider(
+                    new InterruptibleReader(Files.newBufferedReader(file, encoding)))) {
+                result = parser.parse(ParseStart.COMPILATION_UNIT, provider);
+            }
+            result.getResult().ifPresent(cu -> cu.setStorage(file, encoding));
+            return result;
+        }, timeoutMillis);
+    }
+
+    /**
+     * Parses source text; a timeout of 0 or less parses on the calling thread without a limit
+     */
+    public ParseResult<CompilationUnit> parse(String source, long timeoutMillis) throws IOException, TimeoutException {
+        if (timeoutMillis <= 0) {
+            return parsers.get().parse(source);
+        }
+        return runWithTimeout(() -> parsers.get().parse(ParseStart.COMPILATION_UNIT,
+                Providers.provider(new InterruptibleReader(new StringReader(source)))), timeoutMillis);
+    }
+
+    private ParseResult<CompilationUnit> runWithTimeout(Callable<ParseResult<CompilationUnit>> task,
+                                                        long timeoutMillis) throws IOException, TimeoutException {
+        Future<ParseResult<CompilationUnit>> future = executor.submit(task);
+        try {
+            return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw e;
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while parsing");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException ioException) {
+                throw ioException;
+            }
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Fails the next read once the parsing thread has been interrupted
+     */
+    private static class InterruptibleReader extends FilterReader {
+
+        InterruptibleReader(Reader in) {
+            super(in);
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) throws IOException {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedIOException("Parse cancelled");
+            }
+            return super.read(buffer, offset, length);
+        }
+    }
+}
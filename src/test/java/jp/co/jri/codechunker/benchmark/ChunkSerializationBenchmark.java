@@ -0,0 +1,112 @@
+package jp.co.jri.codechunker.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jp.co.jri.codechunker.config.JacksonConfig;
+import jp.co.jri.codechunker.model.chunk.ChunkData;
+import jp.co.jri.codechunker.model.chunk.data.*;
+import jp.co.jri.codechunker.util.ChunkDataSerializer;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares chunk serialization through ObjectMapper with the streaming ChunkDataSerializer.
+ * One operation serializes one chunk; the bytes counter reports output bytes per second.
+ * Run with: mvn -Pbenchmark test-compile exec:exec -Djmh.args="ChunkSerializationBenchmark -prof gc"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChunkSerializationBenchmark {
+
+    private ObjectMapper objectMapper;
+    private ChunkDataSerializer serializer;
+    private List<ChunkData> chunks;
+    private int next;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Output {
+        public long bytes;
+    }
+
+    @Setup
+    public void setUp() throws IOException {
+        objectMapper = new JacksonConfig().objectMapper();
+        serializer = new ChunkDataSerializer(objectMapper);
+        chunks = new ArrayList<>();
+        for (int i = 0; i < 64; i++) {
+            chunks.add(chunk(i));
+        }
+
+        // Both paths must produce the same bytes, otherwise the comparison is meaningless
+        for (ChunkData chunk : chunks) {
+            if (!Arrays.equals(objectMapper.writerWithDefaultPrettyPrinter().writeValueAsBytes(chunk),
+                    serializer.toBytes(chunk))) {
+                throw new IllegalStateException("Serializers differ for " + chunk.getName());
+            }
+        }
+    }
+
+    /**
+     * The previous path: a new pretty printing writer and a charset writer per chunk
+     */
+    @Benchmark
+    public int objectMapper(Output output) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (Writer writer = new OutputStreamWriter(bytes, StandardCharsets.UTF_8)) {
+            objectMapper.writerWithDefaultPrettyPrinter().writeValue(writer, nextChunk());
+        }
+        output.bytes += bytes.size();
+        return bytes.size();
+    }
+
+    @Benchmark
+    public int streaming(Output output) throws IOException {
+        byte[] bytes = serializer.toBytes(nextChunk());
+        output.bytes += bytes.length;
+        return bytes.length;
+    }
+
+    private ChunkData nextChunk() {
+        next = (next + 1) & (chunks.size() - 1);
+        return chunks.get(next);
+    }
+
+    private static ChunkData chunk(int i) {
+        StringBuilder code = new StringBuilder("public List<String> method").append(i).append("(Map<String, Integer> input) {\n");
+        for (int line = 0; line < 40; line++) {
+            code.append("    if (input.get(\"key").append(line).append("\") > ").append(line)
+                    .append(") { result.add(\"value \\\"").append(line).append("\\\"\"); }\n");
+        }
+        code.append("    return result;\n}\n");
+
+        return ChunkData.builder()
+                .language("java")
+                .filePath("/work/project/src/main/java/com/example/service/Service" + i + ".java")
+                .chunkId("com.example.service.Service" + i)
+                .kind(Kind.METHOD.ordinal())
+                .name("method" + i)
+                .parent(new ParentRef("com.example.service", List.of("BaseService", "Runnable")))
+                .signature("public List<String> method" + i + "(Map<String, Integer> input)")
+                .location(new Location(10 + i, 52 + i))
+                .imports(List.of("java.util.List", "java.util.Map", "java.util.ArrayList", "com.example.model.Entity"))
+                .modifiers(List.of("public"))
+                .symbols(new Symbols(new ArrayList<>(), List.of("method" + i, "helper"), List.of("result", "cache"), new ArrayList<>()))
+                .metrics(new Metrics(41, 40, 43, 43, 1, 1))
+                .code(code.toString())
+                .notes(new Notes(List.of("local variables won't be included in the analysis"), null))
+                .build();
+    }
+}
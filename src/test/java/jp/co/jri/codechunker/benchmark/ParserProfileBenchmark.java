@@ -0,0 +1,60 @@
+package jp.co.jri.codechunker.benchmark;
+
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.ast.CompilationUnit;
+import jp.co.jri.codechunker.config.ApplicationProperties;
+import jp.co.jri.codechunker.util.ParserProfile;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parse time and allocation per parser profile.
+ * Run with: mvn -Pbenchmark test-compile exec:exec -Djmh.args="ParserProfileBenchmark -prof gc"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParserProfileBenchmark {
+
+    @Param({"full", "lean"})
+    public String profile;
+
+    @Param({"JAVA_17", "RAW"})
+    public String languageLevel;
+
+    private JavaParser parser;
+    private String source;
+
+    @Setup
+    public void setUp() {
+        ApplicationProperties properties = new ApplicationProperties();
+        properties.getParser().setProfile(profile);
+        properties.getParser().setLanguageLevel(languageLevel);
+        parser = new JavaParser(new ParserProfile(properties).createConfiguration());
+
+        StringBuilder builder = new StringBuilder("package bench;\n\nimport java.util.*;\n\n");
+        builder.append("/**\n * Generated service\n */\npublic class Service {\n");
+        for (int i = 0; i < 300; i++) {
+            builder.append("    /**\n     * Handles request ").append(i).append("\n     */\n")
+                    .append("    public List<String> handle").append(i).append("(Map<String, Integer> input, int limit) {\n")
+                    .append("        List<String> result = new ArrayList<>(); // collected keys\n")
+                    .append("        for (Map.Entry<String, Integer> entry : input.entrySet()) {\n")
+                    .append("            if (entry.getValue() > limit && !entry.getKey().isEmpty()) {\n")
+                    .append("                result.add(entry.getKey().trim());\n")
+                    .append("            }\n")
+                    .append("        }\n")
+                    .append("        return result;\n")
+                    .append("    }\n\n");
+        }
+        source = builder.append("}\n").toString();
+    }
+
+    @Benchmark
+    public CompilationUnit parse() {
+        return parser.parse(source).getResult().orElseThrow();
+    }
+}
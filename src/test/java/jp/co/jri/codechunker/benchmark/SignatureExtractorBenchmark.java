@@ -0,0 +1,77 @@
+package jp.co.jri.codechunker.benchmark;
+
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
+import com.github.javaparser.ast.body.ConstructorDeclaration;
+import com.github.javaparser.ast.body.MethodDeclaration;
+import jp.co.jri.codechunker.util.SignatureExtractor;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares signature rendering of SignatureExtractor with the previous implementation.
+ * Run with: mvn -Pbenchmark test-compile exec:exec -Djmh.args="SignatureExtractorBenchmark -prof gc"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SignatureExtractorBenchmark {
+
+    private List<ClassOrInterfaceDeclaration> classes;
+    private List<MethodDeclaration> methods;
+    private List<ConstructorDeclaration> constructors;
+
+    @Setup
+    public void setUp() {
+        StringBuilder source = new StringBuilder("package bench;\n");
+        for (int i = 0; i < 20; i++) {
+            source.append("public abstract class Service").append(i)
+                    .append("<K extends Comparable<K>, V> extends Base<K> implements Runnable, java.io.Serializable {\n")
+                    .append("  public Service").append(i).append("(String name, int... sizes) throws java.io.IOException {}\n")
+                    .append("  protected Service").append(i).append("(java.util.Map<K, java.util.List<V>> seed) {}\n")
+                    .append("  public static final synchronized <T extends Number & Comparable<T>> java.util.List<T> ")
+                    .append("select(java.util.Map<String, ? extends T> input, T[] defaults, String... keys) throws Exception { return null; }\n")
+                    .append("  private int[] sizes(long a, double b) { return null; }\n")
+                    .append("  public abstract V get(K key);\n")
+                    .append("  void run() {}\n")
+                    .append("}\n");
+        }
+        CompilationUnit cu = new JavaParser().parse(source.toString()).getResult().orElseThrow();
+        classes = cu.findAll(ClassOrInterfaceDeclaration.class);
+        methods = cu.findAll(MethodDeclaration.class);
+        constructors = cu.findAll(ConstructorDeclaration.class);
+    }
+
+    @Benchmark
+    public void legacy(Blackhole blackhole) {
+        for (ClassOrInterfaceDeclaration classDecl : classes) {
+            blackhole.consume(LegacySignatureExtractor.getClassSignature(classDecl));
+        }
+        for (MethodDeclaration method : methods) {
+            blackhole.consume(LegacySignatureExtractor.getMethodSignature(method));
+        }
+        for (ConstructorDeclaration constructor : constructors) {
+            blackhole.consume(LegacySignatureExtractor.getConstructorSignature(constructor));
+        }
+    }
+
+    @Benchmark
+    public void singlePass(Blackhole blackhole) {
+        for (ClassOrInterfaceDeclaration classDecl : classes) {
+            blackhole.consume(SignatureExtractor.getClassSignature(classDecl));
+        }
+        for (MethodDeclaration method : methods) {
+            blackhole.consume(SignatureExtractor.getMethodSignature(method));
+        }
+        for (ConstructorDeclaration constructor : constructors) {
+            blackhole.consume(SignatureExtractor.getConstructorSignature(constructor));
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package jp.co.jri.codechunker.throughput;
+
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Generates a deterministic Java source tree: the same Spec always produces the same files,
+ * byte for byte. File sizes follow a log-normal distribution around medianLines; classes
+ * are mixed with interfaces, enums and records, types nest up to nestingDepth, and a few
+ * pathological files (huge switch tables, deeply nested lambdas) stress the parser.
+ */
+public class SyntheticRepository {
+
+    @Data
+    @Accessors(fluent = true, chain = true)
+    public static class Spec {
+        private long seed = 42;
+        private int files = 400;
+        private int medianLines = 120;
+        private double sizeSpread = 0.8; // sigma of the log-normal line count
+        private int maxLines = 4000;
+        private int nestingDepth = 3;
+        private int interfacePercent = 10;
+        private int enumPercent = 8;
+        private int recordPercent = 7;
+        private int hugeSwitchFiles = 2;
+        private int switchCases = 3000;
+        private int deepLambdaFiles = 2;
+        private int lambdaDepth = 30;
+    }
+
+    @Data
+    public static class Stats {
+        private int files;
+        private long bytes;
+        private long lines;
+    }
+
+    private final Spec spec;
+    private final Random random;
+    private final Stats stats = new Stats();
+
+    private SyntheticRepository(Spec spec) {
+        this.spec = spec;
+        this.random = new Random(spec.seed());
+    }
+
+    /**
+     * Writes the tree under root (src/main/java/...) and returns its size
+     */
+    public static Stats generate(Spec spec, Path root) throws IOException {
+        return new SyntheticRepository(spec).write(root.resolve("src/main/java"));
+    }
+
+    private Stats write(Path sourceRoot) throws IOException {
+        int packages = Math.max(1, spec.files() / 20);
+        for (int i = 0; i < spec.files(); i++) {
+            String packageName = "com.synthetic.p" + (i % packages);
+            String name;
+            String source;
+            if (i < spec.hugeSwitchFiles()) {
+                name = "SwitchTable" + i;
+                source = switchTable(packageName, name);
+            } else if (i < spec.hugeSwitchFiles() + spec.deepLambdaFiles()) {
+                name = "LambdaNest" + i;
+                source = lambdaNest(packageName, name);
+            } else {
+                int kind = random.nextInt(100);
+                name = "Type" + i;
+                if (kind < spec.interfacePercent()) {
+                    source = anInterface(packageName, name);
+                } else if (kind < spec.interfacePercent() + spec.enumPercent()) {
+                    source = anEnum(packageName, name);
+                } else if (kind < spec.interfacePercent() + spec.enumPercent() + spec.recordPercent()) {
+                    source = aRecord(packageName, name);
+                } else {
+                    source = aClass(packageName, name, lineCount());
+                }
+            }
+            Path file = sourceRoot.resolve(packageName.replace('.', '/')).resolve(name + ".java");
+            Files.createDirectories(file.getParent());
+            byte[] bytes = source.getBytes(StandardCharsets.UTF_8);
+            Files.write(file, bytes);
+            stats.setFiles(stats.getFiles() + 1);
+            stats.setBytes(stats.getBytes() + bytes.length);
+            stats.setLines(stats.getLines() + source.chars().filter(c -> c == '\n').count());
+        }
+        return stats;
+    }
+
+    private int lineCount() {
+        double lines = spec.medianLines() * Math.exp(random.nextGaussian() * spec.sizeSpread());
+        return (int) Math.max(20, Math.min(spec.maxLines(), lines));
+    }
+
+    private static StringBuilder header(String packageName) {
+        return new StringBuilder("package ").append(packageName).append(";\n\n")
+                .append("import java.util.ArrayList;\nimport java.util.List;\nimport java.util.Map;\n")
+                .append("import java.util.function.Function;\n\n");
+    }
+
+    private String aClass(String packageName, String name, int lines) {
+        StringBuilder out = header(packageName);
+        out.append("/**\n * Generated class ").append(name).append("\n */\n");
+        out.append("public class ").append(name).append(" {\n");
+        body(out, name, lines, 1, spec.nestingDepth());
+        return out.append("}\n").toString();
+    }
+
+    /**
+     * Fields, accessors and methods of about the given line count, with nested types down
+     * to depth
+     */
+    private void body(StringBuilder out, String name, int lines, int level, int depth) {
+        String indent = "    ".repeat(level);
+        int fields = 2 + random.nextInt(4);
+        for (int f = 0; f < fields; f++) {
+            out.append(indent).append("private int field").append(f).append(";\n");
+        }
+        out.append('\n');
+        for (int f = 0; f < fields; f++) {
+            out.append(indent).append("public int getField").append(f).append("() {\n")
+                    .append(indent).append("    return field").append(f).append(";\n")
+                    .append(indent).append("}\n\n");
+            out.append(indent).append("public void setField").append(f).append("(int field").append(f).append(") {\n")
+                    .append(indent).append("    this.field").append(f).append(" = field").append(f).append(";\n")
+                    .append(indent).append("}\n\n");
+        }
+        int written = 2 + fields * 9;
+        for (int m = 0; written < lines; m++) {
+            written += method(out, indent, m);
+            if (depth > 0 && m % 6 == 5) {
+                String nested = name + "Inner" + m;
+                out.append(indent).append("// Nested helper type\n");
+                out.append(indent).append("static class ").append(nested).append(" {\n");
+                body(out, nested, Math.min(60, lines - written), level + 1, depth - 1);
+                out.append(indent).append("}\n\n");
+                written += 20;
+            }
+        }
+    }
+
+    private int method(StringBuilder out, String indent, int m) {
+        out.append(indent).append("/**\n").append(indent).append(" * Computes value ").append(m).append("\n")
+                .append(indent).append(" */\n");
+        out.append(indent).append("public List<String> compute").append(m)
+                .append("(Map<String, Integer> input, int limit) {\n");
+        out.append(indent).append("    List<String> result = new ArrayList<>();\n");
+        out.append(indent).append("    for (Map.Entry<String, Integer> entry : input.entrySet()) {\n");
+        out.append(indent).append("        if (entry.getValue() > limit && entry.getKey().length() % ")
+                .append(2 + random.nextInt(5)).append(" == 0) {\n");
+        out.append(indent).append("            result.add(entry.getKey() + \"#").append(m).append("\");\n");
+        out.append(indent).append("        } else if (entry.getValue() < 0) {\n");
+        out.append(indent).append("            continue; // skip negatives\n");
+        out.append(indent).append("        }\n");
+        out.append(indent).append("    }\n");
+        out.append(indent).append("    return result;\n");
+        out.append(indent).append("}\n\n");
+        return 15;
+    }
+
+    private String anInterface(String packageName, String name) {
+        StringBuilder out = header(packageName);
+        out.append("public interface ").append(name).append(" {\n");
+        int methods = 3 + random.nextInt(10);
+        for (int m = 0; m < methods; m++) {
+            out.append("    List<String> operation").append(m).append("(Map<String, Integer> input);\n\n");
+        }
+        out.append("    default int size() {\n        return ").append(methods).append(";\n    }\n");
+        return out.append("}\n").toString();
+    }
+
+    private String anEnum(String packageName, String name) {
+        StringBuilder out = header(packageName);
+        out.append("public enum ").append(name).append(" {\n");
+        int constants = 3 + random.nextInt(30);
+        for (int c = 0; c < constants; c++) {
+            out.append("    CONSTANT_").append(c).append("(").append(c * 7).append(")")
+                    .append(c == constants - 1 ? ";\n\n" : ",\n");
+        }
+        out.append("    private final int code;\n\n");
+        out.append("    ").append(name).append("(int code) {\n        this.code = code;\n    }\n\n");
+        out.append("    public int code() {\n        return code;\n    }\n");
+        return out.append("}\n").toString();
+    }
+
+    private String aRecord(String packageName, String name) {
+        StringBuilder out = header(packageName);
+        int components = 1 + random.nextInt(6);
+        out.append("public record ").append(name).append("(");
+        for (int c = 0; c < components; c++) {
+            out.append(c > 0 ? ", " : "").append("String part").append(c);
+        }
+        out.append(") {\n");
+        out.append("    public String joined() {\n        return String.join(\"/\"");
+        for (int c = 0; c < components; c++) {
+            out.append(", part").append(c);
+        }
+        out.append(");\n    }\n");
+        return out.append("}\n").toString();
+    }
+
+    private String switchTable(String packageName, String name) {
+        StringBuilder out = header(packageName);
+        out.append("public class ").append(name).append(" {\n");
+        out.append("    public static String lookup(int key) {\n        switch (key) {\n");
+        for (int c = 0; c < spec.switchCases(); c++) {
+            out.append("            case ").append(c).append(":\n                return \"value")
+                    .append(c).append("\";\n");
+        }
+        out.append("            default:\n                return null;\n        }\n    }\n");
+        return out.append("}\n").toString();
+    }
+
+    private String lambdaNest(String packageName, String name) {
+        StringBuilder out = header(packageName);
+        out.append("public class ").append(name).append(" {\n");
+        out.append("    public Function<Integer, Integer> build() {\n        return ");
+        for (int d = 0; d < spec.lambdaDepth(); d++) {
+            out.append("x").append(d).append(" -> {\n").append("    ".repeat(d + 3))
+                    .append("Function<Integer, Integer> f").append(d).append(" = ");
+        }
+        out.append("y -> y + 1;\n");
+        for (int d = spec.lambdaDepth() - 1; d >= 0; d--) {
+            out.append("    ".repeat(d + 3)).append("return f").append(d).append(".apply(x").append(d).append(");\n")
+                    .append("    ".repeat(d + 2)).append("};\n");
+        }
+        out.append("    }\n");
+        return out.append("}\n").toString();
+    }
+}
@@ -0,0 +1,400 @@
+package jp.co.jri.codechunker.throughput;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jp.co.jri.codechunker.config.ApplicationProperties;
+import jp.co.jri.codechunker.config.JacksonConfig;
+import jp.co.jri.codechunker.engine.ChunkExtractor;
+import jp.co.jri.codechunker.model.batch.BatchManifest;
+import jp.co.jri.codechunker.model.batch.BatchProject;
+import jp.co.jri.codechunker.model.chunk.ChunkLevel;
+import jp.co.jri.codechunker.model.summary.AnalysisSummary;
+import jp.co.jri.codechunker.model.summary.BatchReport;
+import jp.co.jri.codechunker.service.BatchChunkerService;
+import jp.co.jri.codechunker.service.JavaCodeChunkerService;
+import jp.co.jri.codechunker.util.*;
+import lombok.Data;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * End-to-end throughput on a generated repository: each chunk level, a batch of two projects
+ * and a change-set run after a tenth of the files changed. Files per second, peak RSS and GC
+ * time are checked against the committed baseline (src/test/resources/throughput/baseline.json)
+ * with a relative tolerance.
+ *
+ * Throughput is normalized for the machine: right before each mode, a fixed CPU-bound
+ * calibration workload (hashing, sorting, string building) is timed, and the expected files
+ * per second are the baseline's scaled by this calibration score over the one recorded with
+ * the baseline. Modes run in a fixed order, so each sees the same JIT state as the baseline,
+ * and each is timed several times, keeping the fastest run relative to its calibration. The
+ * calibration does not capture memory bandwidth or neighbours on a shared VM; there,
+ * normalized runs still spread by about 30%, hence the default tolerance.
+ *
+ * Peak RSS and GC time depend on the JVM, collector and memory of the machine that recorded
+ * them, so they are only checked with -Dthroughput.gateMemory=true, on that machine. The
+ * suite is a local tool, not a CI gate: it is excluded from the default test run, and shared
+ * CI runners are too noisy for it.
+ *
+ * Run with: mvn -Pthroughput test
+ * Options: -Dthroughput.tolerance=0.35, -Dthroughput.repetitions=3, -Dthroughput.gateMemory=true,
+ * -Dthroughput.updateBaseline=true to record the measurements of this machine as the new
+ * baseline. Results also go to target/throughput-report.json.
+ */
+@Tag("throughput")
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+class ThroughputRegressionTest {
+
+    private static final Path BASELINE = Paths.get(
+            System.getProperty("throughput.baseline", "src/test/resources/throughput/baseline.json"));
+    private static final Path REPORT = Paths.get("target/throughput-report.json");
+    private static final double TOLERANCE = Double.parseDouble(System.getProperty("throughput.tolerance", "0.35"));
+    private static final boolean UPDATE = Boolean.getBoolean("throughput.updateBaseline");
+    private static final boolean GATE_MEMORY = Boolean.getBoolean("throughput.gateMemory");
+    // Timed runs per mode; the fastest relative to its calibration counts
+    private static final int REPETITIONS = Integer.getInteger("throughput.repetitions", 3);
+    // Files of the change-set run edited between its two runs: every CHANGED_EVERY-th
+    private static final int CHANGED_EVERY = 10;
+    // GC time of short runs is noisy: this much above the baseline always passes
+    private static final long GC_SLACK_MILLIS = 200;
+
+    private static final ObjectMapper objectMapper = new JacksonConfig().objectMapper();
+    private static final Map<String, Measurement> measured = new TreeMap<>();
+
+    @TempDir
+    static Path work;
+    private static Path project;
+    private static SyntheticRepository.Stats stats;
+    private static Map<String, Measurement> baseline;
+    // Keeps the calibration workload from being optimized away
+    private static volatile long calibrationSink;
+
+    @Data
+    static class Measurement {
+        private int files;
+        private double filesPerSecond;
+        private Long peakRssMb; // null where /proc is not available
+        private long gcMillis;
+        private double calibrationScore; // calibration rounds per second right before the run
+    }
+
+    @BeforeAll
+    static void generate() throws IOException {
+        project = work.resolve("repo");
+        stats = SyntheticRepository.generate(new SyntheticRepository.Spec(), project);
+
+        // One untimed run so every mode is measured with a warm JIT
+        newService(new ApplicationProperties()).generateFiles(ChunkLevel.ALL_LEVELS, project.toString(),
+                new ArrayList<>(), new ArrayList<>(), work.resolve("warmup").toString(), false);
+        baseline = UPDATE ? Map.of() : loadBaseline();
+    }
+
+    @ParameterizedTest
+    @EnumSource(ChunkLevel.class)
+    @Order(1)
+    void throughput(ChunkLevel level) throws IOException {
+        Measurement best = null;
+        for (int repetition = 0; repetition < REPETITIONS; repetition++) {
+            JavaCodeChunkerService service = newService(new ApplicationProperties());
+            String outputDir = work.resolve(level.name() + "-" + repetition).toString();
+
+            Run run = Run.start();
+            AnalysisSummary summary = service.generateFiles(level, project.toString(), new ArrayList<>(),
+                    new ArrayList<>(), outputDir, false);
+            best = faster(best, run.stop(summary.getProcessedFiles()));
+
+            assertEquals(stats.getFiles(), summary.getProcessedFiles(), "every generated file must be chunked");
+        }
+        check(level.name(), best);
+    }
+
+    /**
+     * Two projects on the shared worker pool of batch mode
+     */
+    @Test
+    @Order(2)
+    void batch() throws IOException, InterruptedException {
+        Measurement best = null;
+        for (int repetition = 0; repetition < REPETITIONS; repetition++) {
+            ApplicationProperties properties = new ApplicationProperties();
+            BatchChunkerService service = newBatchService(properties);
+            Path outputDir = work.resolve("batch-" + repetition);
+            BatchManifest manifest = new BatchManifest();
+            for (String name : List.of("first", "second")) {
+                BatchProject batchProject = new BatchProject();
+                batchProject.setName(name);
+                batchProject.setProjectPath(project.toString());
+                batchProject.setOutputDir(outputDir.resolve(name).toString());
+                batchProject.setLevel(ChunkLevel.ALL_LEVELS.getValue());
+                manifest.getProjects().add(batchProject);
+            }
+
+            Run run = Run.start();
+            BatchReport report = service.runBatch(manifest, 2, outputDir.toString());
+            best = faster(best, run.stop(report.getProcessedFiles()));
+
+            assertEquals(0, report.getFailedProjects());
+            assertEquals(2 * stats.getFiles(), report.getProcessedFiles(), "every generated file must be chunked");
+        }
+        check("BATCH", best);
+    }
+
+    /**
+     * A second run with change-set output after every tenth file changed; the first run,
+     * which only records the manifest, is not timed
+     */
+    @Test
+    @Order(3)
+    void changeSet() throws IOException {
+        Measurement best = null;
+        for (int repetition = 0; repetition < REPETITIONS; repetition++) {
+            Path changedProject = work.resolve("changed-repo-" + repetition);
+            SyntheticRepository.generate(new SyntheticRepository.Spec(), changedProject);
+            ApplicationProperties properties = new ApplicationProperties();
+            properties.getOutput().setChangeSet(true);
+            String outputDir = work.resolve("change-set-" + repetition).toString();
+            newService(properties).generateFiles(ChunkLevel.ALL_LEVELS, changedProject.toString(), new ArrayList<>(),
+                    new ArrayList<>(), outputDir, false);
+            int changed = changeFiles(changedProject);
+
+            JavaCodeChunkerService service = newService(properties);
+            Run run = Run.start();
+            AnalysisSummary summary = service.generateFiles(ChunkLevel.ALL_LEVELS, changedProject.toString(),
+                    new ArrayList<>(), new ArrayList<>(), outputDir, false);
+            best = faster(best, run.stop(summary.getProcessedFiles()));
+
+            assertEquals(stats.getFiles(), summary.getProcessedFiles(), "every generated file must be chunked");
+            JsonNode changes = objectMapper.readTree(Paths.get(outputDir, OutputLayout.CHANGE_SET_FILE).toFile());
+            assertTrue(changes.get("modified").asInt() >= changed,
+                    () -> "change set misses edits: " + changes.get("modified"));
+            assertEquals(0, changes.get("deleted").asInt());
+        }
+        check("CHANGE_SET", best);
+    }
+
+    /**
+     * The run with more files per second for its calibration score
+     */
+    private static Measurement faster(Measurement best, Measurement measurement) {
+        return best == null || measurement.getFilesPerSecond() / measurement.getCalibrationScore()
+                > best.getFilesPerSecond() / best.getCalibrationScore() ? measurement : best;
+    }
+
+    /**
+     * Adds a constant to the last type of every CHANGED_EVERY-th file, valid in any kind of type
+     */
+    private static int changeFiles(Path root) throws IOException {
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(root)) {
+            files = walk.filter(file -> file.toString().endsWith(".java")).sorted().toList();
+        }
+        int changed = 0;
+        for (int i = 0; i < files.size(); i += CHANGED_EVERY) {
+            String source = Files.readString(files.get(i));
+            int close = source.lastIndexOf('}');
+            Files.writeString(files.get(i), source.substring(0, close)
+                    + "    static final int CHANGED = " + i + ";\n" + source.substring(close));
+            changed++;
+        }
+        return changed;
+    }
+
+    private static void check(String mode, Measurement measurement) {
+        measured.put(mode, measurement);
+        Measurement expected = baseline.get(mode);
+        if (expected == null) {
+            return;
+        }
+        double scale = expected.getCalibrationScore() > 0
+                ? measurement.getCalibrationScore() / expected.getCalibrationScore() : 1;
+        double minimum = expected.getFilesPerSecond() * scale * (1 - TOLERANCE);
+        assertTrue(measurement.getFilesPerSecond() >= minimum,
+                () -> String.format("%s: %.1f files/s, baseline %.1f scaled by calibration %.2f to minimum %.1f",
+                        mode, measurement.getFilesPerSecond(), expected.getFilesPerSecond(), scale, minimum));
+        if (!GATE_MEMORY) {
+            return;
+        }
+        if (measurement.getPeakRssMb() != null && expected.getPeakRssMb() != null) {
+            assertTrue(measurement.getPeakRssMb() <= expected.getPeakRssMb() * (1 + TOLERANCE),
+                    () -> mode + ": peak RSS " + measurement.getPeakRssMb() + " MB, baseline "
+                            + expected.getPeakRssMb());
+        }
+        assertTrue(measurement.getGcMillis() <= expected.getGcMillis() * (1 + TOLERANCE) + GC_SLACK_MILLIS,
+                () -> mode + ": GC " + measurement.getGcMillis() + " ms, baseline " + expected.getGcMillis());
+    }
+
+    /**
+     * Clock, GC time and peak RSS from the start of a timed run, and the calibration score
+     * measured right before it, so both see the same load on the machine
+     */
+    private static class Run {
+        private final double calibrationScore;
+        private final long gcBefore;
+        private final long start;
+
+        private Run(double calibrationScore, long gcBefore, long start) {
+            this.calibrationScore = calibrationScore;
+            this.gcBefore = gcBefore;
+            this.start = start;
+        }
+
+        static Run start() {
+            double calibrationScore = calibrate();
+            resetPeakRss();
+            return new Run(calibrationScore, gcMillis(), System.nanoTime());
+        }
+
+        Measurement stop(int files) {
+            double seconds = (System.nanoTime() - start) / 1e9;
+            Measurement measurement = new Measurement();
+            measurement.setFiles(files);
+            measurement.setFilesPerSecond(Math.round(files / seconds * 10) / 10.0);
+            measurement.setPeakRssMb(peakRssMb());
+            measurement.setGcMillis(gcMillis() - gcBefore);
+            measurement.setCalibrationScore(calibrationScore);
+            return measurement;
+        }
+    }
+
+    /**
+     * Rounds per second of a fixed single-threaded workload, best of ten: SHA-256 over a
+     * buffer, sorting, and building and hashing strings, which is what chunking spends its
+     * time on. Depends only on the JDK, so it moves with the machine, not with this code.
+     */
+    static double calibrate() {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        byte[] buffer = new byte[64 * 1024];
+        new Random(7).nextBytes(buffer);
+        int rounds = 200;
+        long sink = 0;
+        double best = 0;
+        for (int attempt = 0; attempt < 10; attempt++) {
+            long start = System.nanoTime();
+            for (int round = 0; round < rounds; round++) {
+                digest.update(buffer);
+                sink += digest.digest()[0];
+                int[] values = new Random(round).ints(20_000).toArray();
+                Arrays.sort(values);
+                sink += values[round];
+                StringBuilder text = new StringBuilder();
+                for (int i = 0; i < 2_000; i++) {
+                    text.append("int m").append(i).append("() { return ").append(round).append("; }\n");
+                }
+                sink += text.toString().getBytes(StandardCharsets.UTF_8).length + text.toString().hashCode();
+            }
+            best = Math.max(best, rounds / ((System.nanoTime() - start) / 1e9));
+        }
+        calibrationSink = sink;
+        return Math.round(best * 10) / 10.0;
+    }
+
+    @AfterAll
+    static void report() throws IOException {
+        Files.createDirectories(REPORT.toAbsolutePath().getParent());
+        objectMapper.writeValue(REPORT.toFile(), measured);
+        if (UPDATE) {
+            Files.createDirectories(BASELINE.toAbsolutePath().getParent());
+            objectMapper.writeValue(BASELINE.toFile(), measured);
+        }
+    }
+
+    /**
+     * The service wired by hand: a Spring context would also start the command line runner
+     */
+    private static JavaCodeChunkerService newService(ApplicationProperties properties) {
+        SourceArchives sourceArchives = new SourceArchives();
+        ChunkDataSerializer serializer = new ChunkDataSerializer(objectMapper);
+        return new JavaCodeChunkerService(
+                new FileFinder(properties, new BuildModuleResolver(properties), sourceArchives),
+                objectMapper,
+                properties,
+                new RunStateStore(objectMapper),
+                new OutputLayout(properties, objectMapper),
+                serializer,
+                sourceArchives,
+                new ChunkManifestStore(objectMapper, serializer),
+                new ChunkExtractor(properties, new MetricsCalculator(), new ParserProfile(properties), sourceArchives),
+                new ShardPartitioner(sourceArchives),
+                new FileEventLog(properties, objectMapper));
+    }
+
+    private static BatchChunkerService newBatchService(ApplicationProperties properties) {
+        return new BatchChunkerService(newService(properties),
+                new FileFinder(properties, new BuildModuleResolver(properties), new SourceArchives()),
+                objectMapper, properties, new BuildModuleResolver(properties));
+    }
+
+    private static Map<String, Measurement> loadBaseline() throws IOException {
+        if (!Files.isRegularFile(BASELINE)) {
+            return Map.of();
+        }
+        return objectMapper.readValue(BASELINE.toFile(), new TypeReference<Map<String, Measurement>>() { });
+    }
+
+    private static long gcMillis() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, gc.getCollectionTime());
+        }
+        return total;
+    }
+
+    /**
+     * Resets the peak resident set size of this process (Linux), so each mode gets its own
+     */
+    private static void resetPeakRss() {
+        try {
+            Files.writeString(Paths.get("/proc/self/clear_refs"), "5");
+        } catch (IOException | UnsupportedOperationException e) {
+            // Not Linux or not permitted: the peak then covers the whole test run
+        }
+    }
+
+    private static Long peakRssMb() {
+        try {
+            List<String> status = Files.readAllLines(Paths.get("/proc/self/status"));
+            for (String line : status) {
+                if (line.startsWith("VmHWM:")) {
+                    return Long.parseLong(line.replaceAll("\\D", "")) / 1024;
+                }
+            }
+        } catch (IOException e) {
+            // Not available on this platform
+        }
+        return null;
+    }
+}
@@ -0,0 +1,150 @@
+package jp.co.jri.codechunker.util;
+
+import com.github.javaparser.StaticJavaParser;
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
+import com.github.javaparser.ast.body.MethodDeclaration;
+import jp.co.jri.codechunker.config.ApplicationProperties;
+import jp.co.jri.codechunker.model.summary.CodeSize;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CodeNormalizerTest {
+
+    private static ApplicationProperties.ChunkConfig config(boolean stripComments, boolean stripJavadoc,
+                                                            boolean collapseWhitespace) {
+        ApplicationProperties.ChunkConfig config = new ApplicationProperties.ChunkConfig();
+        config.setStripComments(stripComments);
+        config.setStripJavadoc(stripJavadoc);
+        config.setCollapseWhitespace(collapseWhitespace);
+        return config;
+    }
+
+    @Test
+    void returnsTheSameStringWhenNothingIsConfigured() {
+        String code = "int a; // note\n";
+        assertSame(code, CodeNormalizer.normalize(code, config(false, false, false)));
+    }
+
+    @Test
+    void keepsCommentMarkersInsideStringLiterals() {
+        String code = "String url = \"http://host/*path*/\"; // drop\n";
+        assertEquals("String url = \"http://host/*path*/\";\n",
+                CodeNormalizer.normalize(code, config(true, false, false)));
+    }
+
+    @Test
+    void keepsEscapedQuotesAndCharLiterals() {
+        String code = "String s = \"a\\\"//b\"; char q = '\"'; char e = '\\''; /* x */ int y;";
+        assertEquals("String s = \"a\\\"//b\"; char q = '\"'; char e = '\\'';  int y;",
+                CodeNormalizer.normalize(code, config(true, false, false)));
+    }
+
+    @Test
+    void keepsTextBlocksUnchanged() {
+        String code = "String t = \"\"\"\n    // not a comment\n    /* nor this */   spaced\n    \"\"\";";
+        assertEquals(code, CodeNormalizer.normalize(code, config(true, true, true)));
+    }
+
+    @Test
+    void keepsTokensApartWhenAnInlineCommentIsRemoved() {
+        assertEquals("int y;", CodeNormalizer.normalize("int/*x*/y;", config(true, false, false)));
+        assertEquals("a +b;", CodeNormalizer.normalize("a +/*x*/b;", config(true, false, false)));
+    }
+
+    @Test
+    void removesCommentOnlyLinesWithoutLeavingBlankLines() {
+        String code = "int a;\n    // note\n    /* block\n       comment */\nint b;\n";
+        assertEquals("int a;\nint b;\n", CodeNormalizer.normalize(code, config(true, false, false)));
+    }
+
+    @Test
+    void stripsJavadocSeparatelyFromComments() {
+        String code = "/** Doc */\n/* plain */\nvoid m() {}\n";
+        assertEquals("/* plain */\nvoid m() {}\n", CodeNormalizer.normalize(code, config(false, true, false)));
+        assertEquals("/** Doc */\nvoid m() {}\n", CodeNormalizer.normalize(code, config(true, false, false)));
+        // An empty block comment is not Javadoc
+        assertEquals("int a;\n", CodeNormalizer.normalize("/**/\nint a;\n", config(true, false, false)));
+    }
+
+    @Test
+    void keepsCrlfLineEndsWhenStrippingComments() {
+        String code = "int a; // trailing\r\n// alone\r\nint b;\r\n";
+        assertEquals("int a;\r\nint b;\r\n", CodeNormalizer.normalize(code, config(true, false, false)));
+    }
+
+    @Test
+    void collapsesWhitespaceAndCrlf() {
+        String code = "class A {\r\n\r\n    int   a;\t\r\n\r\n}\r\n";
+        assertEquals("class A {\nint a;\n}", CodeNormalizer.normalize(code, config(false, false, true)));
+    }
+
+    @ParameterizedTest
+    @CsvSource(delimiter = '|', value = {
+            "int getA() { return a; }                | true",
+            "int getA() { return this.a; }           | true",
+            "boolean isOn() { return on; }           | true",
+            "void setA(int a) { this.a = a; }        | true",
+            "void setA(int value) { a = value; }     | true",
+            "int getA() { return compute(); }        | false",
+            "int getA(int i) { return a; }           | false",
+            "void setA(int a) { this.a += a; }       | false",
+            "void setA(int a) { this.a = a + 1; }    | false",
+            "int getA() { log(); return a; }         | false",
+            "int sum() { return a; }                 | false",
+            "abstract int getA();                    | false"
+    })
+    void detectsTrivialAccessors(String method, boolean accessor) {
+        assertEquals(accessor, CodeNormalizer.isTrivialAccessor(StaticJavaParser.parseMethodDeclaration(method)));
+    }
+
+    @Test
+    void stubsMemberBodiesOfACopy() {
+        ClassOrInterfaceDeclaration type = StaticJavaParser.parseTypeDeclaration(
+                "class A { int a; A() { a = 1; } int getA() { return a; } int twice() { return a * 2; } }")
+                .asClassOrInterfaceDeclaration();
+        ApplicationProperties.ChunkConfig config = config(false, false, false);
+        config.setStubMemberBodies(true);
+
+        Node stub = CodeNormalizer.stub(type, config);
+        String printed = stub.toString();
+        assertTrue(printed.contains("int twice();"), printed);
+        assertTrue(printed.contains("A() {\n    }"), printed);
+        // The parsed tree itself is not changed
+        assertTrue(type.toString().contains("return a * 2;"));
+    }
+
+    @Test
+    void dropsOnlyAccessorBodies() {
+        ClassOrInterfaceDeclaration type = StaticJavaParser.parseTypeDeclaration(
+                "class A { int a; int getA() { return a; } int twice() { return a * 2; } }")
+                .asClassOrInterfaceDeclaration();
+        ApplicationProperties.ChunkConfig config = config(false, false, false);
+        config.setDropAccessorBodies(true);
+
+        String printed = CodeNormalizer.stub(type, config).toString();
+        assertTrue(printed.contains("int getA();"), printed);
+        assertTrue(printed.contains("return a * 2;"), printed);
+
+        MethodDeclaration getter = type.getMethodsByName("getA").get(0);
+        assertFalse(((MethodDeclaration) CodeNormalizer.stub(getter, config)).getBody().isPresent());
+        MethodDeclaration twice = type.getMethodsByName("twice").get(0);
+        assertSame(twice, CodeNormalizer.stub(twice, config));
+    }
+
+    @Test
+    void measuresBytesAndTokens() {
+        String raw = "int é; // x";
+        CodeSize size = CodeNormalizer.measure(raw, "int é;");
+        assertEquals(12, size.getRawBytes());
+        assertEquals(7, size.getBytes());
+        assertTrue(size.getTokens() < size.getRawTokens());
+        assertEquals(size.getRawBytes(), CodeNormalizer.measure(raw, raw).getBytes());
+    }
+}
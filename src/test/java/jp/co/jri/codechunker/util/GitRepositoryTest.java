@@ -0,0 +1,223 @@
+package jp.co.jri.codechunker.util;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Reads repositories written by the git binary: all objects loose, packed with offset deltas,
+ * and packed with reference deltas. Skipped when git is not installed.
+ */
+class GitRepositoryTest {
+
+    private static final List<String> REVISIONS = List.of(
+            "HEAD", "HEAD~2", "HEAD^", "HEAD^^", "HEAD~1^", "HEAD~0", "main", "feature", "feature~1", "v1", "v2");
+
+    @TempDir
+    Path dir;
+
+    @BeforeAll
+    static void requireGit() {
+        boolean available;
+        try {
+            available = new ProcessBuilder("git", "--version").start().waitFor() == 0;
+        } catch (IOException | InterruptedException e) {
+            available = false;
+        }
+        assumeTrue(available, "git is not installed");
+    }
+
+    /**
+     * Three commits on main: the first tagged v1 (annotated) and v2 (lightweight), the second
+     * also the head of branch feature. A.java is large and changes a little each time, so
+     * repacking stores it as deltas.
+     */
+    private void createFixture(String storage) throws Exception {
+        git("init", "-q", "-b", "main");
+        write("A.java", source(0));
+        write("B.java", "class B { int b() { return 2; } }\n");
+        write("dir/C.java", "class C { }\n");
+        git("add", "-A");
+        git("commit", "-q", "-m", "first");
+        git("tag", "-a", "v1", "-m", "annotated");
+        git("tag", "v2");
+
+        write("A.java", source(1));
+        git("mv", "B.java", "dir/B2.java");
+        write("D.java", "class D { }\n");
+        git("add", "-A");
+        git("commit", "-q", "-m", "second");
+        git("branch", "feature");
+
+        write("A.java", source(2));
+        git("rm", "-q", "dir/C.java");
+        git("add", "-A");
+        git("commit", "-q", "-m", "third");
+
+        switch (storage) {
+            case "loose" -> { }
+            case "ofs-delta" -> repack("true");
+            case "ref-delta" -> repack("false");
+            default -> throw new IllegalArgumentException(storage);
+        }
+    }
+
+    private void repack(String deltaBaseOffset) throws Exception {
+        git("-c", "repack.useDeltaBaseOffset=" + deltaBaseOffset, "repack", "-q", "-a", "-d", "-f");
+        git("pack-refs", "--all");
+        try (Stream<Path> objects = Files.list(dir.resolve(".git/objects"))) {
+            assertTrue(objects.noneMatch(path -> path.getFileName().toString().matches("[0-9a-f]{2}")),
+                    "loose objects left after repack");
+        }
+        String pack;
+        try (Stream<Path> packs = Files.list(dir.resolve(".git/objects/pack"))) {
+            pack = packs.filter(path -> path.toString().endsWith(".idx")).findFirst().orElseThrow().toString();
+        }
+        assertTrue(git("verify-pack", "-v", pack).contains("chain length = 1"), "pack has no deltas");
+    }
+
+    private static String source(int version) {
+        StringBuilder source = new StringBuilder("class A {\n");
+        for (int i = 0; i < 200; i++) {
+            source.append("    int m").append(i).append("() { return ").append(i).append("; }\n");
+        }
+        for (int i = 0; i < version; i++) {
+            source.append("    int v").append(i).append("() { return -1; }\n");
+        }
+        return source.append("}\n").toString();
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"loose", "ofs-delta", "ref-delta"})
+    void resolvesRevisionsLikeGit(String storage) throws Exception {
+        createFixture(storage);
+        try (GitRepository repository = GitRepository.open(dir.resolve("dir"))) {
+            for (String revision : REVISIONS) {
+                assertEquals(revParse(revision + "^{commit}"), repository.resolve(revision), revision);
+            }
+            String first = revParse("HEAD~2");
+            assertEquals(first, repository.resolve(first.substring(0, 7)));
+            assertEquals(first, repository.resolve(first.substring(0, 7).toUpperCase()));
+            assertEquals(first, repository.resolve(first + "~0"));
+
+            assertThrows(IOException.class, () -> repository.resolve("HEAD~3"));
+            assertThrows(IOException.class, () -> repository.resolve("missing"));
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"loose", "ofs-delta", "ref-delta"})
+    void readsTreesAndBlobsLikeGit(String storage) throws Exception {
+        createFixture(storage);
+        try (GitRepository repository = GitRepository.open(dir)) {
+            for (String revision : List.of("HEAD", "HEAD~1", "HEAD~2")) {
+                Map<String, String> files = repository.listFiles(repository.resolve(revision));
+                assertEquals(lsTree(revision), files, revision);
+                for (String blob : files.values()) {
+                    assertArrayEquals(gitBytes("cat-file", "blob", blob), repository.readBlob(blob), blob);
+                }
+            }
+            String commit = repository.resolve("HEAD");
+            assertThrows(IOException.class, () -> repository.readBlob(commit));
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"loose", "ofs-delta", "ref-delta"})
+    void diffsWithRenames(String storage) throws Exception {
+        createFixture(storage);
+        try (GitRepository repository = GitRepository.open(dir)) {
+            String first = repository.resolve("HEAD~2");
+            String second = repository.resolve("HEAD~1");
+            String third = repository.resolve("HEAD");
+
+            assertEquals(List.of(
+                    "MODIFIED A.java A.java",
+                    "ADDED null D.java",
+                    "RENAMED B.java dir/B2.java"), describe(repository.diff(first, second)));
+            assertEquals(List.of(
+                    "MODIFIED A.java A.java",
+                    "DELETED dir/C.java null"), describe(repository.diff(second, third)));
+            assertEquals(List.of(), repository.diff(third, third));
+
+            GitRepository.DiffEntry renamed = repository.diff(first, second).get(2);
+            assertEquals(renamed.getOldId(), renamed.getNewId());
+        }
+    }
+
+    @Test
+    void failsOutsideARepository() {
+        assertThrows(IOException.class, () -> GitRepository.open(dir));
+    }
+
+    private static List<String> describe(List<GitRepository.DiffEntry> entries) {
+        List<String> lines = new ArrayList<>();
+        for (GitRepository.DiffEntry entry : entries) {
+            lines.add(entry.getChangeType() + " " + entry.getOldPath() + " " + entry.getNewPath());
+        }
+        return lines;
+    }
+
+    private Map<String, String> lsTree(String revision) throws Exception {
+        Map<String, String> files = new TreeMap<>();
+        for (String line : git("ls-tree", "-r", revision).split("\n")) {
+            // <mode> blob <id>\t<path>
+            String[] fields = line.split("\t", 2);
+            files.put(fields[1], fields[0].split(" ")[2]);
+        }
+        return files;
+    }
+
+    private String revParse(String revision) throws Exception {
+        return git("rev-parse", revision).trim();
+    }
+
+    private void write(String path, String content) throws IOException {
+        Path file = dir.resolve(path);
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, content);
+    }
+
+    private String git(String... args) throws Exception {
+        return new String(gitBytes(args), StandardCharsets.UTF_8);
+    }
+
+    private byte[] gitBytes(String... args) throws Exception {
+        List<String> command = new ArrayList<>(List.of("git"));
+        command.addAll(List.of(args));
+        ProcessBuilder builder = new ProcessBuilder(command).directory(dir.toFile());
+        // Independent of the user's git configuration
+        Map<String, String> env = builder.environment();
+        env.put("GIT_CONFIG_NOSYSTEM", "1");
+        env.put("GIT_CONFIG_GLOBAL", "/dev/null");
+        env.put("GIT_AUTHOR_NAME", "test");
+        env.put("GIT_AUTHOR_EMAIL", "test@example.com");
+        env.put("GIT_COMMITTER_NAME", "test");
+        env.put("GIT_COMMITTER_EMAIL", "test@example.com");
+        Process process = builder.redirectErrorStream(false).start();
+        byte[] output = process.getInputStream().readAllBytes();
+        String error = new String(process.getErrorStream().readAllBytes(), StandardCharsets.UTF_8);
+        if (process.waitFor() != 0) {
+            throw new IOException("git " + String.join(" ", args) + " failed: " + error);
+        }
+        return output;
+    }
+}
@@ -0,0 +1,174 @@
+package jp.co.jri.codechunker.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LexicalChunkerTest {
+
+    private static List<String> memberNames(LexicalChunker.TypeBlock type) {
+        return type.getMembers().stream().map(LexicalChunker.MemberBlock::getName).toList();
+    }
+
+    private static List<String> typeNames(LexicalChunker.SourceOutline outline) {
+        return outline.getTypes().stream().map(LexicalChunker.TypeBlock::getName).toList();
+    }
+
+    @Test
+    void readsPackageAndImports() {
+        LexicalChunker.SourceOutline outline = LexicalChunker.scan(
+                "package a.b;\nimport java.util.List;\nimport static x.Y.z;\nimport c.d.*;\nclass A {}\n");
+        assertEquals("a.b", outline.getPackageName());
+        assertEquals(List.of("java.util.List", "x.Y.z", "c.d"), outline.getImports());
+    }
+
+    @Test
+    void findsMethodsConstructorsAndNestedTypes() {
+        String source = """
+                public class A extends Base implements Runnable, Comparable<A> {
+                    private int count = 0;
+
+                    public A(int count) {
+                        this.count = count;
+                    }
+
+                    @Override
+                    public void run() {
+                        Runnable r = new Runnable() {
+                            public void run() { }
+                        };
+                        list.forEach(x -> { count++; });
+                    }
+
+                    static class Inner {
+                        <T> T pick(T a) throws Exception { return a; }
+                    }
+                }
+                """;
+        LexicalChunker.SourceOutline outline = LexicalChunker.scan(source);
+
+        assertEquals(List.of("A", "Inner"), typeNames(outline));
+        LexicalChunker.TypeBlock a = outline.getTypes().get(0);
+        assertEquals("class", a.getKeyword());
+        assertEquals(List.of("public"), a.getModifiers());
+        assertEquals(List.of("Base"), a.getExtendedTypes());
+        // Simple names without type arguments, as JavaParser gives them
+        assertEquals(List.of("Runnable", "Comparable"), a.getImplementedTypes());
+        // The anonymous class and the lambda stay inside run()
+        assertEquals(List.of("A", "run"), memberNames(a));
+        assertTrue(a.getMembers().get(0).isConstructor());
+        assertFalse(a.getMembers().get(1).isConstructor());
+        assertEquals(List.of("pick"), memberNames(outline.getTypes().get(1)));
+    }
+
+    @Test
+    void reportsMemberLinesAndOffsets() {
+        String source = "class A {\n    int one() {\n        return 1;\n    }\n}\n";
+        LexicalChunker.TypeBlock type = LexicalChunker.scan(source).getTypes().get(0);
+        LexicalChunker.MemberBlock one = type.getMembers().get(0);
+
+        assertEquals(2, one.getStartLine());
+        assertEquals(4, one.getEndLine());
+        assertEquals("int one() {\n        return 1;\n    }", source.substring(one.getStartOffset(), one.getEndOffset()));
+        assertEquals(1, type.getStartLine());
+        assertEquals(5, type.getEndLine());
+        assertEquals(source.trim(), source.substring(type.getStartOffset(), type.getEndOffset()));
+    }
+
+    @Test
+    void ignoresBracesInCommentsAndLiterals() {
+        String source = """
+                class A {
+                    // a stray } in a comment
+                    String s = "}";
+                    char c = '{';
+                    /* { */
+                    String t = \"""
+                        }
+                        \""";
+                    void after() { }
+                }
+                """;
+        LexicalChunker.TypeBlock type = LexicalChunker.scan(source).getTypes().get(0);
+        assertEquals(List.of("after"), memberNames(type));
+        assertEquals(10, type.getEndLine());
+    }
+
+    @Test
+    void findsBodilessInterfaceAndAbstractMethods() {
+        LexicalChunker.SourceOutline outline = LexicalChunker.scan("""
+                interface I {
+                    int LIMIT = 3;
+                    void one();
+                    default int two() { return 2; }
+                }
+                abstract class B {
+                    abstract void ab() throws java.io.IOException;
+                }
+                """);
+        assertEquals(List.of("one", "two"), memberNames(outline.getTypes().get(0)));
+        assertEquals(List.of("ab"), memberNames(outline.getTypes().get(1)));
+    }
+
+    @Test
+    void findsAnnotationMembersWithDefaults() {
+        LexicalChunker.TypeBlock type = LexicalChunker.scan("""
+                @interface Ann {
+                    String value() default "";
+                    String[] names() default {"a", "b"};
+                    int size();
+                    int LIMIT = 3;
+                    Class<?> type() default Object.class;
+                }
+                """).getTypes().get(0);
+        assertEquals("@interface", type.getKeyword());
+        assertEquals(List.of("value", "names", "size", "type"), memberNames(type));
+        assertEquals(3, type.getMembers().get(1).getStartLine());
+    }
+
+    @Test
+    void findsEnumMembersAfterConstantBodies() {
+        LexicalChunker.TypeBlock type = LexicalChunker.scan("""
+                enum Op {
+                    PLUS { int apply(int a) { return a; } },
+                    MINUS;
+                    abstract int apply(int a);
+                    static Op parse(String s) { return PLUS; }
+                }
+                """).getTypes().get(0);
+        assertEquals(List.of("apply", "parse"), memberNames(type));
+    }
+
+    @Test
+    void findsRecordCompactConstructor() {
+        LexicalChunker.TypeBlock type = LexicalChunker.scan("""
+                public record Point(int x, int y) {
+                    public Point {
+                        if (x < 0) throw new IllegalArgumentException();
+                    }
+                    int sum() { return x + y; }
+                }
+                """).getTypes().get(0);
+        assertEquals("record", type.getKeyword());
+        assertEquals(List.of("Point", "sum"), memberNames(type));
+        assertTrue(type.getMembers().get(0).isConstructor());
+    }
+
+    @Test
+    void closesUnbalancedTypesAtEndOfFile() {
+        String source = "class A {\n    void one() { }\n    void two() {\n";
+        LexicalChunker.TypeBlock type = LexicalChunker.scan(source).getTypes().get(0);
+        assertEquals(source.length(), type.getEndOffset());
+        assertEquals("one", type.getMembers().get(0).getName());
+    }
+
+    @Test
+    void stripsAnnotationsButKeepsAtInterface() {
+        assertEquals("public void run()", LexicalChunker.stripAnnotations("@Override @SuppressWarnings(\"x\") public void run()"));
+        assertEquals("public @interface Ann", LexicalChunker.stripAnnotations("@Retention(RUNTIME) public @interface Ann"));
+    }
+}
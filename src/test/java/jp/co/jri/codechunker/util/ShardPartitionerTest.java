@@ -0,0 +1,175 @@
+package jp.co.jri.codechunker.util;
+
+import jp.co.jri.codechunker.model.batch.Shard;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ShardPartitionerTest {
+
+    private final ShardPartitioner partitioner = new ShardPartitioner(new SourceArchives());
+
+    private static List<Path> files(Path root, int count) {
+        List<Path> files = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            files.add(root.resolve("src/main/java/p" + i % 7 + "/C" + i + ".java"));
+        }
+        return files;
+    }
+
+    private static Map<Path, Long> sizes(List<Path> files, long seed) {
+        Random random = new Random(seed);
+        Map<Path, Long> sizes = new HashMap<>();
+        for (Path file : files) {
+            // A few equal sizes, so the tie-break on the path hash is exercised
+            sizes.put(file, (long) (random.nextInt(20) * 1000));
+        }
+        return sizes;
+    }
+
+    private List<List<Path>> partition(Path root, List<Path> files, Map<Path, Long> sizes, int count) {
+        List<List<Path>> shards = new ArrayList<>();
+        for (int i = 1; i <= count; i++) {
+            shards.add(partitioner.select(root, files, sizes, new Shard(i, count)));
+        }
+        return shards;
+    }
+
+    private static List<String> relative(Path root, List<Path> files) {
+        return files.stream().map(file -> root.relativize(file).toString()).toList();
+    }
+
+    @Test
+    void shardsCoverEveryFileExactlyOnce() {
+        Path root = Path.of("/work/project");
+        List<Path> files = files(root, 100);
+        Map<Path, Long> sizes = sizes(files, 1);
+
+        Set<Path> seen = new HashSet<>();
+        int total = 0;
+        for (List<Path> shard : partition(root, files, sizes, 4)) {
+            seen.addAll(shard);
+            total += shard.size();
+        }
+        assertEquals(files.size(), total);
+        assertEquals(new HashSet<>(files), seen);
+    }
+
+    @Test
+    void keepsDiscoveryOrderWithinAShard() {
+        Path root = Path.of("/work/project");
+        List<Path> files = files(root, 50);
+        for (List<Path> shard : partition(root, files, sizes(files, 2), 3)) {
+            List<Path> ordered = new ArrayList<>(shard);
+            ordered.sort((a, b) -> Integer.compare(files.indexOf(a), files.indexOf(b)));
+            assertEquals(ordered, shard);
+        }
+    }
+
+    @Test
+    void sameAssignmentInAnyCheckoutDirectoryAndDiscoveryOrder() {
+        Path rootA = Path.of("/home/a/checkout");
+        Path rootB = Path.of("/srv/build/other-name");
+        List<Path> filesA = files(rootA, 60);
+        List<Path> filesB = new ArrayList<>(files(rootB, 60));
+        Collections.shuffle(filesB, new Random(3));
+        Map<Path, Long> sizesA = sizes(filesA, 4);
+        Map<Path, Long> sizesB = new HashMap<>();
+        for (Path file : filesB) {
+            sizesB.put(file, sizesA.get(rootA.resolve(rootB.relativize(file))));
+        }
+
+        List<List<Path>> shardsA = partition(rootA, filesA, sizesA, 5);
+        List<List<Path>> shardsB = partition(rootB, filesB, sizesB, 5);
+        for (int i = 0; i < 5; i++) {
+            assertEquals(new HashSet<>(relative(rootA, shardsA.get(i))), new HashSet<>(relative(rootB, shardsB.get(i))));
+        }
+    }
+
+    @Test
+    void balancesBytesLargestFirst() {
+        Path root = Path.of("/work/project");
+        List<Path> files = files(root, 6);
+        Map<Path, Long> sizes = new HashMap<>();
+        long[] bytes = {700, 600, 500, 400, 300, 100};
+        for (int i = 0; i < files.size(); i++) {
+            sizes.put(files.get(i), bytes[i]);
+        }
+
+        // 700 | 600 | 500, then 400 -> 500, 300 -> 600, 100 -> 700
+        List<List<Path>> shards = partition(root, files, sizes, 3);
+        assertEquals(List.of(files.get(0), files.get(5)), shards.get(0));
+        assertEquals(List.of(files.get(1), files.get(4)), shards.get(1));
+        assertEquals(List.of(files.get(2), files.get(3)), shards.get(2));
+    }
+
+    @Test
+    void spreadsEmptyFilesToo() {
+        Path root = Path.of("/work/project");
+        List<Path> files = files(root, 9);
+        Map<Path, Long> sizes = new HashMap<>();
+        files.forEach(file -> sizes.put(file, 0L));
+
+        for (List<Path> shard : partition(root, files, sizes, 3)) {
+            assertEquals(3, shard.size());
+        }
+    }
+
+    @Test
+    void singleShardSelectsEverything() {
+        Path root = Path.of("/work/project");
+        List<Path> files = files(root, 20);
+        assertEquals(files, partitioner.select(root, files, sizes(files, 5), new Shard(1, 1)));
+    }
+
+    @Test
+    void moreShardsThanFilesLeavesSomeEmpty() {
+        Path root = Path.of("/work/project");
+        List<Path> files = files(root, 2);
+        List<List<Path>> shards = partition(root, files, sizes(files, 6), 4);
+        assertEquals(2, shards.stream().filter(List::isEmpty).count());
+    }
+
+    @Test
+    void fingerprintIgnoresCheckoutDirectoryAndOrderButNotContent() {
+        Path rootA = Path.of("/home/a/checkout");
+        Path rootB = Path.of("/srv/build/other-name");
+        List<Path> filesA = files(rootA, 30);
+        List<Path> filesB = new ArrayList<>(files(rootB, 30));
+        Collections.reverse(filesB);
+        Map<Path, Long> sizesA = new HashMap<>();
+        Map<Path, Long> sizesB = new HashMap<>();
+        filesA.forEach(file -> sizesA.put(file, 10L));
+        filesB.forEach(file -> sizesB.put(file, 10L));
+
+        String fingerprint = partitioner.fingerprint(rootA, filesA, sizesA);
+        assertEquals(64, fingerprint.length());
+        assertEquals(fingerprint, partitioner.fingerprint(rootB, filesB, sizesB));
+
+        sizesB.put(filesB.get(0), 11L);
+        assertNotEquals(fingerprint, partitioner.fingerprint(rootB, filesB, sizesB));
+        assertNotEquals(fingerprint, partitioner.fingerprint(rootA, filesA.subList(1, filesA.size()), sizesA));
+    }
+
+    @Test
+    void parsesShardSpecs() {
+        assertEquals(new Shard(2, 4), Shard.parse(" 2/4 "));
+        for (String spec : List.of("0/4", "5/4", "1/0", "a/b", "1")) {
+            assertThrows(IllegalArgumentException.class, () -> Shard.parse(spec), spec);
+        }
+        assertEquals("project-summary.shard-2-of-4.json", Shard.fileName(new Shard(2, 4), "project-summary.json"));
+        assertEquals(new Shard(2, 4), Shard.ofFileName("chunk-manifest.shard-2-of-4.json"));
+    }
+}